@@ -0,0 +1,81 @@
+package com.bushnell;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bundle transactions: one unit of every SUB whose children are all raw.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleBenchmark {
+    @Param({"3", "4"})
+    public int depth;
+
+    @Param({"6"})
+    public int fanOut;
+
+    private BomGraph graph;
+    private final Map<String, Integer> builds = new LinkedHashMap<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        File file = File.createTempFile("mrp-bundle-", ".db");
+        file.delete();
+        file.deleteOnExit();
+        // Stock to spare, so committed bundles never run short however many iterations run
+        new DatasetGenerator().parts(5_000).depth(depth).fanOut(fanOut)
+                .stock(DatasetGenerator.StockDistribution.FULL, 100_000_000).seed(42).write(file);
+        // Each parameter set runs in its own fork, so the pooled database is this one
+        System.setProperty("mrp.db", file.getAbsolutePath());
+        graph = BomGraph.get();
+        for (int id = 0; id < graph.partCount(); id++) {
+            if (!graph.isRaw(id) && graph.lowLevelCode(id) == depth - 1) {
+                builds.put(graph.sku(id), 1);
+            }
+        }
+    }
+
+    /** In-memory: folding the build list into per-SKU deltas. */
+    @Benchmark
+    public Map<String, Integer> stockDeltas() {
+        return Bundler.stockDeltas(graph, builds);
+    }
+
+    /** SQLite-backed: the conditional update and ledger batches, rolled back so stock never drifts. */
+    @Benchmark
+    public void applyAndRollBack() throws Exception {
+        Map<String, Integer> deltas = Bundler.stockDeltas(graph, builds);
+        try (Database.Handle db = Database.get().open()) {
+            Connection conn = db.connection();
+            conn.setAutoCommit(false);
+            Bundler.applyDeltas(db, deltas, Bundler.movements(graph, builds, "benchmark"));
+            conn.rollback();
+        }
+    }
+
+    /** SQLite-backed: the full committed bundle, including the catalog refresh it triggers. */
+    @Benchmark
+    public void bundleCommitted() throws Exception {
+        Bundler.bundle(builds);
+    }
+}
@@ -0,0 +1,103 @@
+package com.bushnell;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Demand-analysis style explosion of the whole BOM under the root SUB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplosionBenchmark {
+    // Raw requirements via a recursive query, the way the database alone would do it
+    private static final String RECURSIVE_EXPLOSION =
+        "WITH RECURSIVE tree(sku, qty) AS ("
+            + " SELECT ?, ?"
+            + " UNION ALL"
+            + " SELECT b.sku, t.qty * b.quantity FROM bom b JOIN tree t ON b.parent_sku = t.sku)"
+            + " SELECT tree.sku, SUM(qty) FROM tree"
+            + " WHERE NOT EXISTS (SELECT 1 FROM bom c WHERE c.parent_sku = tree.sku)"
+            + " GROUP BY tree.sku";
+
+    @Param({"3", "5"})
+    public int depth;
+
+    @Param({"4", "8"})
+    public int fanOut;
+
+    private Connection conn;
+    private PreparedStatement recursive;
+    private BomGraph graph;
+    private int root;
+
+    @Setup
+    public void setUp() throws Exception {
+        File file = File.createTempFile("mrp-explosion-", ".db");
+        file.delete();
+        file.deleteOnExit();
+        // Nothing in stock, so explosions walk everything under the root
+        new DatasetGenerator().parts(20_000).depth(depth).fanOut(fanOut)
+                .stock(DatasetGenerator.StockDistribution.ZERO, 0).seed(42).write(file);
+        conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        recursive = conn.prepareStatement(RECURSIVE_EXPLOSION);
+        graph = BomGraph.load(conn);
+        root = graph.indexOf(DatasetGenerator.rootSku());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    /** SQLite-backed: reading parts and edges into a fresh graph. */
+    @Benchmark
+    public BomGraph loadGraph() throws Exception {
+        return BomGraph.load(conn);
+    }
+
+    /** SQLite-backed: the explosion done entirely in SQL. */
+    @Benchmark
+    public int explodeRecursiveSql() throws Exception {
+        recursive.setString(1, DatasetGenerator.rootSku());
+        recursive.setInt(2, 10);
+        int rows = 0;
+        try (ResultSet rs = recursive.executeQuery()) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /** In-memory: one netting pass over the cached graph. */
+    @Benchmark
+    public Map<String, Integer> explodeInMemory() {
+        int[] nodes = graph.reachable(root);
+        MrpRun run = new MrpRun(graph);
+        run.addDemand(root, 10);
+        run.run(nodes);
+        return run.rawRequirements(nodes);
+    }
+}
@@ -0,0 +1,123 @@
+package com.bushnell;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock report loading and PDF export over catalogs of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBenchmark {
+    @Param({"10000", "100000"})
+    public int parts;
+
+    private PagedPartModel.Query query;
+    private BomGraph graph;
+    private Object keyValue; // the row just before the last page, where a keyset read of it starts
+    private String keySku;
+
+    /** Discards everything written to it. */
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        File file = File.createTempFile("mrp-report-", ".db");
+        file.delete();
+        file.deleteOnExit();
+        new DatasetGenerator().parts(parts).seed(42).write(file);
+        System.setProperty("mrp.db", file.getAbsolutePath());
+        query = new PagedPartModel(Database.get()).currentQuery();
+        graph = BomGraph.get();
+        try (Database.Handle db = Database.get().open();
+             ResultSet rs = query.rows(db, parts - PagedPartModel.PAGE_SIZE - 1, 1)) {
+            rs.next();
+            keySku = rs.getString(1);
+            keyValue = query.sortValue(rs);
+        }
+    }
+
+    /** SQLite-backed: the first page the table shows. */
+    @Benchmark
+    public void firstPage(Blackhole bh) throws Exception {
+        readPage(0, bh);
+    }
+
+    /** SQLite-backed: the last page, where OFFSET has to skip the rest. */
+    @Benchmark
+    public void lastPage(Blackhole bh) throws Exception {
+        readPage(parts - PagedPartModel.PAGE_SIZE, bh);
+    }
+
+    /** SQLite-backed: the last page by keyset from the row before it, as scrolling reaches it. */
+    @Benchmark
+    public void lastPageKeyset(Blackhole bh) throws Exception {
+        try (Database.Handle db = Database.get().open()) {
+            consume(query.rowsAfter(db, keyValue, keySku, PagedPartModel.PAGE_SIZE), bh);
+        }
+    }
+
+    /** In-memory: every row formatted from the cached graph, as the eager report did. */
+    @Benchmark
+    public void allRowsInMemory(Blackhole bh) {
+        for (int id = 0; id < graph.partCount(); id++) {
+            bh.consume(new Object[]{graph.sku(id), graph.description(id),
+                    String.format(Locale.ROOT, "%.3f", graph.price(id)), graph.stock(id)});
+        }
+    }
+
+    /** SQLite-backed: the full streamed PDF export. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int exportPdf() throws Exception {
+        try (Database.Handle db = Database.get().open(); ResultSet rows = query.rows(db, 0, -1)) {
+            return new ReportRenderer("Benchmark", "SKU", "Description", "Price", "Stock")
+                    .render(rows, new NullOutputStream(), null);
+        }
+    }
+
+    private void readPage(int offset, Blackhole bh) throws Exception {
+        try (Database.Handle db = Database.get().open()) {
+            consume(query.rows(db, offset, PagedPartModel.PAGE_SIZE), bh);
+        }
+    }
+
+    private static void consume(ResultSet rows, Blackhole bh) throws Exception {
+        try (ResultSet rs = rows) {
+            while (rs.next()) {
+                bh.consume(rs.getString(1));
+                bh.consume(rs.getDouble(3));
+            }
+        }
+    }
+}
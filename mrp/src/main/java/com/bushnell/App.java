@@ -1,20 +1,403 @@
 package com.bushnell;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Main application class.
+ *
+ * With no arguments the GUI is started. Otherwise the first argument names a
+ * command that runs headless and exits, so planning jobs can be scripted:
+ *
+ * <pre>
+ * mrp [--db file] [--metrics file] explode SKU QTY [-o file]
+ * mrp [--db file] batch ORDERS.csv|- [--by-order] [-o file]
+ * mrp [--db file] where-used SKU [-o file]
+ * mrp [--db file] capacity [-o file]
+ * mrp [--db file] bundle SKU UNITS [--through]
+ * mrp [--db file] import [--delta] PARTS.csv|- BOM.txt|-
+ * mrp [--db file] import [--delta] --no-parts BOM.txt|-
+ * mrp [--db file] import [--delta] --no-bom PARTS.csv|-
+ * mrp [--db file] stock [-o file]
+ * mrp [--db file] bom SKU|--all [--sql] [-o file]
+ * mrp [--db file] serve [--port n]
+ * mrp generate FILE [generator options]
+ * mrp gui
+ * </pre>
+ *
+ * Reports go to standard output as CSV, or to the {@code -o} file in the
+ * format its extension names (.csv, .txt or .pdf). An input file named
+ * {@code -} is read from standard input. The exit status is 0 on success, 1
+ * if the command failed and 2 for a usage error. Headless commands run with
+ * {@code java.awt.headless} set and never start the AWT toolkit, e.g.
+ * {@code mrp batch orders.csv -o shortages.pdf} from cron. With
+ * {@code --metrics file}, the {@link Metrics} latency table is written to
+ * that file on exit, for any command including the GUI.
  */
 public final class App {
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join("\n",
+            "usage: mrp [--db file] [--metrics file] <command> [args]",
+            "  explode SKU QTY [-o file]                 what QTY of SKU needs from stock",
+            "  batch ORDERS.csv|- [--by-order] [-o file] shortages for a sku,quantity order book",
+            "  where-used SKU [-o file]                  assemblies that use SKU",
+            "  capacity [-o file]                        units of every assembly stock can build",
+            "  bundle SKU UNITS [--through]              build UNITS of an assembly",
+            "  import [--delta] PARTS.csv|- BOM.txt|-    load the part list and BOM",
+            "  import [--delta] --no-parts BOM.txt|-     load only the BOM",
+            "  import [--delta] --no-bom PARTS.csv|-     load only the part list",
+            "  stock [-o file]                           stock report",
+            "  bom SKU|--all [--sql] [-o file]           indented bill of materials",
+            "  serve [--port n]                          HTTP API on localhost",
+            "  generate FILE [options]                   synthetic test database",
+            "  gui                                       start the GUI (the default)",
+            "Reports are CSV on stdout unless -o names a .csv, .txt or .pdf file.",
+            "An input file named - is read from stdin.");
+
     // Private constructor to prevent instantiation
     private App() {
     }
 
+    /** A command line that doesn't match any command's usage. */
+    static final class UsageException extends IllegalArgumentException {
+        UsageException(String message) {
+            super(message);
+        }
+    }
+
     /**
      * Entry point of the application.
-     * Prints the current working directory.
-     * 
-     * @param args Command-line arguments (not used here).
+     *
+     * @param args command and its arguments; none starts the GUI
      */
     public static void main(String[] args) {
-        System.out.println("Current working dir: " + System.getProperty("user.dir"));
+        List<String> rest = new ArrayList<>(Arrays.asList(args));
+        while (rest.size() >= 2 && (rest.get(0).equals("--db") || rest.get(0).equals("--metrics"))) {
+            if (rest.get(0).equals("--db")) {
+                System.setProperty("mrp.db", rest.get(1));
+            } else {
+                dumpMetricsOnExit(rest.get(1));
+            }
+            rest = rest.subList(2, rest.size());
+        }
+        if (rest.isEmpty() || rest.get(0).equals("gui")) {
+            MRPSystemUI.main(args);
+            return;
+        }
+        System.setProperty("java.awt.headless", "true");
+        int status = run(rest, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // Writes the latency table to file when the JVM exits, however the command ends
+    private static void dumpMetricsOnExit(String file) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                Metrics.dump(out);
+            } catch (IOException e) {
+                System.err.println("mrp: could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, "mrp-metrics-dump"));
+    }
+
+    /**
+     * Runs one headless command; {@code --db} and {@code --metrics} have already been applied.
+     *
+     * @return the exit status
+     */
+    static int run(List<String> args, PrintStream out, PrintStream err) {
+        try {
+            if (args.isEmpty()) {
+                throw new UsageException("no command given");
+            }
+            String command = args.get(0);
+            List<String> rest = new ArrayList<>(args.subList(1, args.size()));
+            switch (command) {
+                case "explode":
+                    explode(rest, out);
+                    break;
+                case "batch":
+                    batch(rest, out);
+                    break;
+                case "where-used":
+                    whereUsed(rest, out);
+                    break;
+                case "capacity":
+                    capacity(rest, out);
+                    break;
+                case "bundle":
+                    bundle(rest, out);
+                    break;
+                case "import":
+                    return CatalogImporter.run(rest.toArray(new String[0]), out, err);
+                case "stock":
+                    stock(rest, out);
+                    break;
+                case "bom":
+                    bom(rest, out);
+                    break;
+                case "serve":
+                    return MrpHttpServer.run(rest.toArray(new String[0]), out, err);
+                case "generate":
+                    return DatasetGenerator.run(rest.toArray(new String[0]), out, err);
+                case "help":
+                case "--help":
+                    out.println(USAGE);
+                    break;
+                default:
+                    throw new UsageException("unknown command '" + command + "'");
+            }
+            return 0;
+        } catch (UsageException e) {
+            err.println("mrp: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        } catch (Exception e) {
+            err.println("mrp: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+
+    // explode SKU QTY [-o file]
+    private static void explode(List<String> args, PrintStream stdout) throws Exception {
+        String file = option(args, "-o");
+        expect(args, 2, "explode SKU QTY [-o file]");
+        String sku = args.get(0);
+        int qty = number(args.get(1), "QTY");
+        if (MrpService.get().part(sku) == null) {
+            throw new IllegalArgumentException("unknown SKU " + sku);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (MrpService.Requirement line : MrpService.get().explode(sku, qty)) {
+            rows.add(new Object[]{line.getSku(), line.getNeed(), line.getStock(), line.getDescription()});
+        }
+        report("Demand Analysis: " + qty + " x " + sku, rows, file, stdout, "SKU", "Need", "Stock", "Description");
+    }
+
+    // batch ORDERS.csv|- [--by-order] [-o file]
+    private static void batch(List<String> args, PrintStream stdout) throws Exception {
+        String file = option(args, "-o");
+        boolean byOrder = args.remove("--by-order");
+        expect(args, 1, "batch ORDERS.csv|- [--by-order] [-o file]");
+        List<BatchDemand.Order> orders;
+        try (Reader in = args.get(0).equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8) : new FileReader(args.get(0))) {
+            orders = BatchDemand.readOrders(in);
+        }
+        BatchDemand batch = MrpService.get().batch(orders);
+        BomGraph graph = batch.getGraph();
+
+        List<Object[]> rows = new ArrayList<>();
+        if (byOrder) {
+            for (BatchDemand.Line line : batch.getLines()) {
+                rows.add(new Object[]{line.getOrderNumber(), line.getOrder().getSku(), line.getOrder().getQuantity(),
+                        graph.sku(line.getComponent()), line.getNeed(), line.getShortage()});
+            }
+            report("Shortages by Order", rows, file, stdout,
+                    "Order", "Order SKU", "Order Qty", "Component", "Need", "Short");
+            return;
+        }
+        MrpRun total = batch.getConsolidated();
+        for (int pos = 0; pos < graph.size(); pos++) {
+            int id = graph.levelOrder(pos);
+            if (total.gross(id) > 0 && graph.isRaw(id)) {
+                rows.add(new Object[]{graph.sku(id), total.gross(id), graph.stock(id), total.net(id),
+                        graph.description(id)});
+            }
+        }
+        report("Shortages for " + orders.size() + " Orders", rows, file, stdout,
+                "SKU", "Need", "Stock", "Short", "Description");
+    }
+
+    // where-used SKU [-o file]
+    private static void whereUsed(List<String> args, PrintStream stdout) throws Exception {
+        String file = option(args, "-o");
+        expect(args, 1, "where-used SKU [-o file]");
+        String sku = args.get(0);
+        if (MrpService.get().part(sku) == null) {
+            throw new IllegalArgumentException("unknown SKU " + sku);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (MrpService.Usage usage : MrpService.get().whereUsed(sku)) {
+            rows.add(new Object[]{usage.getSku(), usage.getQuantityPer(), usage.getStock(),
+                    usage.isTopLevel() ? "yes" : "", usage.getCovers(), usage.getDescription()});
+        }
+        report("Where Used: " + sku, rows, file, stdout,
+                "SKU", "Qty Per", "Stock", "Top Level", "Covers", "Description");
+    }
+
+    // capacity [-o file]
+    private static void capacity(List<String> args, PrintStream stdout) throws Exception {
+        String file = option(args, "-o");
+        expect(args, 0, "capacity [-o file]");
+        List<Object[]> rows = new ArrayList<>();
+        for (MrpService.Capacity line : MrpService.get().capacity()) {
+            rows.add(new Object[]{line.getSku(), line.getMaxBuildable(), line.getStock(),
+                    line.getBottleneck() == null ? "" : line.getBottleneck(),
+                    line.getBottleneck() == null ? "" : line.getBottleneckStock(), line.getDescription()});
+        }
+        report("Build Capacity", rows, file, stdout,
+                "SKU", "Max Buildable", "Stock", "Bottleneck", "Bottleneck Stock", "Description");
+    }
+
+    // bundle SKU UNITS [--through]
+    private static void bundle(List<String> args, PrintStream stdout) throws Exception {
+        boolean through = args.remove("--through");
+        expect(args, 2, "bundle SKU UNITS [--through]");
+        String sku = args.get(0);
+        int units = number(args.get(1), "UNITS");
+        BuildPlan plan = MrpService.get().bundle(sku, units, through);
+        if (plan == null) {
+            stdout.println("Built " + units + " x " + sku);
+        } else {
+            for (BuildPlan.Step step : plan.getSteps()) {
+                stdout.println("Built " + step.getUnits() + " x " + step.getSku());
+            }
+        }
+        stdout.println(sku + " stock: " + MrpService.get().part(sku).getStock());
+    }
+
+    // stock [-o file]
+    private static void stock(List<String> args, PrintStream stdout) throws Exception {
+        String file = option(args, "-o");
+        expect(args, 0, "stock [-o file]");
+        try (OutputStream out = open(file, stdout)) {
+            MrpService.get().stockReport(format(file), out);
+        }
+    }
+
+    // bom SKU|--all [--sql] [-o file]; --sql walks the BOM with the recursive query instead of the graph
+    private static void bom(List<String> args, PrintStream stdout) throws Exception {
+        String file = option(args, "-o");
+        boolean sql = args.remove("--sql");
+        expect(args, 1, "bom SKU|--all [--sql] [-o file]");
+        String sku = args.get(0).equals("--all") ? null : args.get(0);
+        BomExporter.Format format = format(file);
+        try (OutputStream out = open(file, stdout)) {
+            if (sql) {
+                try (Database.Handle db = Database.get().open()) {
+                    BomExporter.exportSql(db.connection(), sku, format, out);
+                }
+            } else {
+                MrpService.get().bomReport(sku, format, out);
+            }
+        }
+    }
+
+    // Writes rows as CSV or text, or through the PDF renderer
+    private static void report(String title, List<Object[]> rows, String file, PrintStream stdout,
+                               String... headers) throws Exception {
+        BomExporter.Format format = format(file);
+        try (OutputStream out = open(file, stdout)) {
+            if (format == BomExporter.Format.PDF) {
+                new ReportRenderer(title, headers).render(new ListRows(rows, headers.length), out, null);
+                return;
+            }
+            String separator = format == BomExporter.Format.CSV ? "," : "\t";
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(String.join(separator, headers) + "\n");
+            for (Object[] row : rows) {
+                for (int c = 0; c < row.length; c++) {
+                    if (c > 0) {
+                        writer.write(separator);
+                    }
+                    writer.write(format == BomExporter.Format.CSV ? BomExporter.csv(row[c]) : String.valueOf(row[c]));
+                }
+                writer.write("\n");
+            }
+            writer.flush();
+        }
+    }
+
+    /** In-memory rows for {@link ReportRenderer}. */
+    private static final class ListRows implements ReportRenderer.Rows {
+        private final List<Object[]> rows;
+        private final int columns;
+        private int next;
+
+        ListRows(List<Object[]> rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        @Override
+        public int columnCount() {
+            return columns;
+        }
+
+        @Override
+        public boolean next() {
+            return ++next <= rows.size();
+        }
+
+        @Override
+        public Object value(int column) {
+            return rows.get(next - 1)[column - 1];
+        }
+    }
+
+    // Standard output (left open) unless a file is named
+    private static OutputStream open(String file, PrintStream stdout) throws IOException {
+        if (file != null) {
+            return new BufferedOutputStream(new FileOutputStream(file));
+        }
+        return new BufferedOutputStream(stdout) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private static BomExporter.Format format(String file) {
+        return file == null ? BomExporter.Format.CSV : BomExporter.Format.forFile(file);
+    }
+
+    // Removes "name value" from args and returns the value, or null if absent
+    private static String option(List<String> args, String name) {
+        int at = args.indexOf(name);
+        if (at < 0) {
+            return null;
+        }
+        if (at + 1 >= args.size()) {
+            throw new UsageException(name + " needs a value");
+        }
+        String value = args.remove(at + 1);
+        args.remove(at);
+        return value;
+    }
+
+    private static void expect(List<String> args, int count, String usage) {
+        if (args.size() != count) {
+            throw new UsageException("usage: mrp " + usage);
+        }
+    }
+
+    private static int number(String text, String name) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new UsageException(name + " must be a positive whole number");
     }
 }
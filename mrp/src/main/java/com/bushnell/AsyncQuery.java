@@ -0,0 +1,89 @@
+package com.bushnell;
+
+import javax.swing.SwingWorker;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work off the Swing event dispatch thread.
+ *
+ * Each panel keeps one instance per kind of query. Submitting a new query
+ * cancels the one still in flight, and a superseded query never delivers its
+ * result, so only the latest request ever reaches the table model. Both
+ * {@link #submit} and the callbacks run on the event dispatch thread. A named
+ * query records in {@link Metrics} how long each delivered request took, from
+ * submit until its callback returned: the wait the operator actually sees.
+ *
+ * @param <T> result type of the query
+ */
+public final class AsyncQuery<T> {
+    private final Metrics.Timer timer;
+    private SwingWorker<T, Void> current;
+
+    /** Creates an untimed query. */
+    public AsyncQuery() {
+        this(null);
+    }
+
+    /**
+     * @param operation panel action to time as {@code ui <operation>}, or null
+     */
+    public AsyncQuery(String operation) {
+        this.timer = operation == null ? null : Metrics.timer("ui " + operation);
+    }
+
+    /**
+     * Starts {@code query} in the background, cancelling any earlier one.
+     *
+     * @param query work to run off the EDT
+     * @param onResult receives the result on the EDT
+     * @param onError receives any failure on the EDT
+     */
+    public void submit(Callable<T> query, Consumer<? super T> onResult, Consumer<? super Exception> onError) {
+        cancel();
+        long submitted = System.nanoTime();
+        SwingWorker<T, Void> worker = new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return query.call();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || current != this) {
+                    return; // superseded by a newer request
+                }
+                current = null;
+                try {
+                    onResult.accept(get());
+                } catch (InterruptedException | CancellationException e) {
+                    // cancelled between the check above and get(); nothing to deliver
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    onError.accept(cause instanceof Exception ? (Exception) cause : e);
+                } finally {
+                    if (timer != null) {
+                        timer.stop(submitted);
+                    }
+                }
+            }
+        };
+        current = worker;
+        worker.execute();
+    }
+
+    /** Cancels the query in flight, if any. Its callbacks will not run. */
+    public void cancel() {
+        if (current != null) {
+            current.cancel(true);
+            current = null;
+        }
+    }
+
+    /** @return true while a submitted query has not yet delivered its result */
+    public boolean isRunning() {
+        return current != null;
+    }
+}
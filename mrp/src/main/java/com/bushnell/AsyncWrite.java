@@ -0,0 +1,86 @@
+package com.bushnell;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs database writes off the Swing event dispatch thread.
+ *
+ * Unlike {@link AsyncQuery}, a write is never cancelled or superseded: once
+ * submitted it runs to completion and exactly one of its callbacks runs, so
+ * the operator always hears whether a change was committed. Each instance is
+ * single-flight; {@link #submit} refuses a second write while the first is
+ * still running, and callers keep their controls disabled until a callback
+ * arrives. Writes from every panel share one background thread, since SQLite
+ * only takes one writer at a time anyway. {@link #submit} and the callbacks
+ * run on the event dispatch thread. A named write records in {@link Metrics}
+ * how long it took from submit until its callback returned.
+ *
+ * @param <T> result type of the write
+ */
+public final class AsyncWrite<T> {
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mrp-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Metrics.Timer timer;
+    private boolean running;
+
+    /**
+     * @param operation panel action to time as {@code ui <operation>}, or null
+     */
+    public AsyncWrite(String operation) {
+        this.timer = operation == null ? null : Metrics.timer("ui " + operation);
+    }
+
+    /**
+     * Starts {@code write} in the background unless one is already running.
+     *
+     * @param write work to run off the EDT
+     * @param onResult receives the result on the EDT
+     * @param onError receives any failure on the EDT
+     * @return false, and nothing is run, if an earlier write hasn't finished
+     */
+    public boolean submit(Callable<T> write, Consumer<? super T> onResult, Consumer<? super Exception> onError) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        long submitted = System.nanoTime();
+        WRITER.execute(() -> {
+            T result;
+            try {
+                result = write.call();
+            } catch (Throwable t) {
+                // Errors too, or the caller's controls would stay disabled for good
+                Exception e = t instanceof Exception ? (Exception) t : new ExecutionException(t);
+                SwingUtilities.invokeLater(() -> deliver(submitted, () -> onError.accept(e)));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> deliver(submitted, () -> onResult.accept(result)));
+        });
+        return true;
+    }
+
+    private void deliver(long submitted, Runnable callback) {
+        running = false;
+        try {
+            callback.run();
+        } finally {
+            if (timer != null) {
+                timer.stop(submitted);
+            }
+        }
+    }
+
+    /** @return true while a submitted write has not yet delivered its result */
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,198 @@
+package com.bushnell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Demand analysis for a whole order book at once.
+ *
+ * All orders are netted together for the consolidated shortage list, and then
+ * one after another against a shared copy of stock for the per-order
+ * breakdown, so an order only sees the stock earlier orders left behind.
+ */
+public final class BatchDemand {
+    private static final Metrics.Timer RUN = Metrics.timer("op batch demand");
+
+    /** One (SKU, quantity) line of an order book. */
+    public static final class Order {
+        private final String sku;
+        private final int quantity;
+
+        public Order(String sku, int quantity) {
+            this.sku = sku;
+            this.quantity = quantity;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+
+    /** Requirement for one raw component of one order. */
+    public static final class Line {
+        private final int orderNumber;
+        private final Order order;
+        private final int component;
+        private final int need;
+        private final int shortage;
+
+        Line(int orderNumber, Order order, int component, int need, int shortage) {
+            this.orderNumber = orderNumber;
+            this.order = order;
+            this.component = component;
+            this.need = need;
+            this.shortage = shortage;
+        }
+
+        /** @return 1-based position of the order in the book */
+        public int getOrderNumber() {
+            return orderNumber;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+
+        /** @return graph id of the raw component */
+        public int getComponent() {
+            return component;
+        }
+
+        public int getNeed() {
+            return need;
+        }
+
+        public int getShortage() {
+            return shortage;
+        }
+    }
+
+    private final BomGraph graph;
+    private final MrpRun consolidated;
+    private final List<Line> lines = new ArrayList<>();
+
+    private BatchDemand(BomGraph graph) {
+        this.graph = graph;
+        this.consolidated = new MrpRun(graph);
+    }
+
+    /**
+     * Reads an order book in {@code sku,quantity} CSV form. Blank lines are
+     * skipped, and so is a header on the first line, recognised by having no
+     * digits in either column. Every other line needs a positive quantity.
+     *
+     * @param in source of the CSV text
+     * @return orders in file order
+     * @throws IOException if reading fails or a data line is malformed
+     */
+    public static List<Order> readOrders(Reader in) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int comma = line.lastIndexOf(',');
+            if (comma < 0) {
+                throw new IOException("Line " + lineNumber + ": expected sku,quantity");
+            }
+            String sku = line.substring(0, comma).trim();
+            String qty = line.substring(comma + 1).trim();
+            if (first && isHeader(sku, qty)) {
+                first = false;
+                continue;
+            }
+            first = false;
+            int quantity;
+            try {
+                quantity = Integer.parseInt(qty);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": bad quantity '" + qty + "'");
+            }
+            if (quantity <= 0) {
+                throw new IOException("Line " + lineNumber + ": quantity must be positive, got " + quantity);
+            }
+            orders.add(new Order(sku, quantity));
+        }
+        return orders;
+    }
+
+    // Column titles such as "sku,quantity"; SKUs and quantities always carry a digit
+    private static boolean isHeader(String sku, String qty) {
+        return !qty.isEmpty() && !(sku + qty).chars().anyMatch(Character::isDigit);
+    }
+
+    /**
+     * Explodes every order against one graph.
+     *
+     * @param graph BOM and stock snapshot
+     * @param orders order book
+     * @return the analysis
+     * @throws IllegalArgumentException if an order names an unknown SKU or
+     *         a quantity that is not positive
+     */
+    public static BatchDemand run(BomGraph graph, List<Order> orders) {
+        long start = System.nanoTime();
+        try {
+            BatchDemand batch = new BatchDemand(graph);
+            int[] onHand = graph.stockSnapshot();
+            MrpRun perOrder = new MrpRun(graph, onHand);
+            for (int i = 0; i < orders.size(); i++) {
+                Order order = orders.get(i);
+                int id = graph.indexOf(order.getSku());
+                if (id < 0) {
+                    throw new IllegalArgumentException("Unknown SKU on order " + (i + 1) + ": " + order.getSku());
+                }
+                if (order.getQuantity() <= 0) {
+                    // A negative order would cancel out other orders' demand in the consolidated run
+                    throw new IllegalArgumentException("Quantity on order " + (i + 1) + " must be positive: "
+                            + order.getQuantity());
+                }
+                batch.consolidated.addDemand(id, order.getQuantity());
+
+                // Each order only touches the sub-graph below its SKU
+                int[] nodes = graph.reachable(id);
+                perOrder.addDemand(id, order.getQuantity());
+                perOrder.run(nodes);
+                for (int part : nodes) {
+                    if (perOrder.gross(part) > 0 && graph.isRaw(part)) {
+                        batch.lines.add(new Line(i + 1, order, part, perOrder.gross(part), perOrder.net(part)));
+                    }
+                }
+                perOrder.allocate(nodes);
+                perOrder.reset(nodes);
+            }
+            batch.consolidated.run();
+            return batch;
+        } finally {
+            RUN.stop(start);
+        }
+    }
+
+    public BomGraph getGraph() {
+        return graph;
+    }
+
+    /** @return the netting pass over all orders combined */
+    public MrpRun getConsolidated() {
+        return consolidated;
+    }
+
+    /** @return raw component requirements of each order, in order */
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+}
@@ -0,0 +1,184 @@
+package com.bushnell;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Panel for running demand analysis over a whole order book.
+ * Orders are typed into the table or loaded from a {@code sku,quantity} CSV
+ * file, exploded together, and shown as one consolidated shortage list plus
+ * a per-order breakdown.
+ */
+public class BatchDemandPanel extends JPanel {
+    private static final Color SHORT_COLOR = new Color(255, 102, 102);
+
+    private final DefaultTableModel orderModel;
+    private final DefaultTableModel shortageModel;
+    private final DefaultTableModel breakdownModel;
+    private final JTable orderTable;
+    private final JLabel statusLabel;
+    private final AsyncQuery<BatchDemand> batchQuery = new AsyncQuery<>("batch demand");
+
+    public BatchDemandPanel() {
+        setLayout(new BorderLayout(10, 10));
+
+        // Title label
+        JLabel title = new JLabel("Batch Demand", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        add(title, BorderLayout.NORTH);
+
+        // Order book on the left: SKU and quantity, both editable
+        orderModel = new DefaultTableModel(new String[]{"SKU", "Qty"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 1 ? Integer.class : String.class;
+            }
+        };
+        orderTable = new JTable(orderModel);
+        JScrollPane orderScroll = new JScrollPane(orderTable);
+        orderScroll.setPreferredSize(new Dimension(260, 400));
+
+        JPanel orderButtons = new JPanel(new GridLayout(0, 1, 5, 5));
+        JButton loadBtn = new JButton("Load CSV...");
+        loadBtn.addActionListener(e -> loadCsv());
+        JButton addBtn = new JButton("Add Row");
+        addBtn.addActionListener(e -> orderModel.addRow(new Object[]{"", 1}));
+        JButton removeBtn = new JButton("Remove Row");
+        removeBtn.addActionListener(e -> removeSelectedRows());
+        JButton runBtn = new JButton("Run Batch");
+        runBtn.addActionListener(e -> runBatch());
+        orderButtons.add(loadBtn);
+        orderButtons.add(addBtn);
+        orderButtons.add(removeBtn);
+        orderButtons.add(runBtn);
+
+        JPanel orderPanel = new JPanel(new BorderLayout(5, 5));
+        orderPanel.add(orderScroll, BorderLayout.CENTER);
+        orderPanel.add(orderButtons, BorderLayout.SOUTH);
+        add(orderPanel, BorderLayout.WEST);
+
+        // Results: consolidated shortages and per-order breakdown
+        shortageModel = readOnlyModel("SKU", "Need", "Stock", "Short", "Description");
+        breakdownModel = readOnlyModel("Order", "Order SKU", "Order Qty", "Component", "Need", "Short");
+        JTabbedPane results = new JTabbedPane();
+        results.addTab("Shortages", new JScrollPane(shortageTable(shortageModel, 3)));
+        results.addTab("By Order", new JScrollPane(shortageTable(breakdownModel, 5)));
+        add(results, BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ");
+        add(statusLabel, BorderLayout.SOUTH);
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    // Table whose rows turn red when the value in shortColumn is positive
+    private static JTable shortageTable(DefaultTableModel model, int shortColumn) {
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                if (!isSelected) {
+                    Object shortage = table.getValueAt(row, shortColumn);
+                    boolean isShort = shortage instanceof Integer && (Integer) shortage > 0;
+                    c.setBackground(isShort ? SHORT_COLOR : Color.WHITE);
+                }
+                return c;
+            }
+        });
+        return table;
+    }
+
+    private void loadCsv() {
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setDialogTitle("Load Order Book");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try (Reader in = new FileReader(chooser.getSelectedFile())) {
+            List<BatchDemand.Order> orders = BatchDemand.readOrders(in);
+            orderModel.setRowCount(0);
+            for (BatchDemand.Order order : orders) {
+                orderModel.addRow(new Object[]{order.getSku(), order.getQuantity()});
+            }
+            statusLabel.setText("Loaded " + orders.size() + " orders from " + chooser.getSelectedFile().getName());
+        } catch (IOException e) {
+            showError("Failed to load order book", e);
+        }
+    }
+
+    private void removeSelectedRows() {
+        int[] rows = orderTable.getSelectedRows();
+        for (int i = rows.length - 1; i >= 0; i--) {
+            orderModel.removeRow(rows[i]);
+        }
+    }
+
+    // Read the order table, explode everything in one pass and fill both result tables
+    private void runBatch() {
+        if (orderTable.isEditing()) {
+            orderTable.getCellEditor().stopCellEditing();
+        }
+        List<BatchDemand.Order> orders = new ArrayList<>();
+        for (int i = 0; i < orderModel.getRowCount(); i++) {
+            Object sku = orderModel.getValueAt(i, 0);
+            Object qty = orderModel.getValueAt(i, 1);
+            if (sku == null || sku.toString().trim().isEmpty() || !(qty instanceof Integer)) continue;
+            orders.add(new BatchDemand.Order(sku.toString().trim(), (Integer) qty));
+        }
+
+        statusLabel.setText("Analysing " + orders.size() + " orders...");
+        long start = System.nanoTime();
+        batchQuery.submit(() -> BatchDemand.run(BomGraph.get(), orders), batch -> {
+            long micros = (System.nanoTime() - start) / 1000;
+            showResults(batch);
+            statusLabel.setText(orders.size() + " orders analysed in " + micros + " µs");
+        }, e -> {
+            statusLabel.setText(" ");
+            showError("Batch analysis failed", e);
+        });
+    }
+
+    private void showResults(BatchDemand batch) {
+        BomGraph graph = batch.getGraph();
+        MrpRun total = batch.getConsolidated();
+
+        shortageModel.setRowCount(0);
+        for (int pos = 0; pos < graph.size(); pos++) {
+            int id = graph.levelOrder(pos);
+            if (total.gross(id) > 0 && graph.isRaw(id)) {
+                shortageModel.addRow(new Object[]{graph.sku(id), total.gross(id), graph.stock(id),
+                        total.net(id), graph.description(id)});
+            }
+        }
+
+        breakdownModel.setRowCount(0);
+        for (BatchDemand.Line line : batch.getLines()) {
+            breakdownModel.addRow(new Object[]{line.getOrderNumber(), line.getOrder().getSku(),
+                    line.getOrder().getQuantity(), graph.sku(line.getComponent()), line.getNeed(), line.getShortage()});
+        }
+    }
+
+    // Show error message dialog and print stack trace
+    private void showError(String msg, Exception e) {
+        e.printStackTrace();
+        Metrics.error(msg);
+        JOptionPane.showMessageDialog(this, msg + ":\n" + e.getMessage());
+    }
+}
@@ -0,0 +1,327 @@
+package com.bushnell;
+
+import com.itextpdf.text.DocumentException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exports indented BOM trees in the {@code bom-query} layout.
+ *
+ * Rows are produced depth-first with siblings in SKU order, either by one
+ * {@code WITH RECURSIVE} query or by walking a {@link BomGraph}, and are
+ * written out as they are produced, so only the current path is ever held in
+ * memory. Each row carries the level, SKU, per-parent quantity, serialized
+ * flag and the rolled-up total: how many are needed for one of the top SKU.
+ */
+public final class BomExporter {
+    private static final Metrics.Timer EXPORT = Metrics.timer("op BOM export");
+
+    /** Output format. */
+    public enum Format {
+        /** Tab separated, SKUs indented with dashes as in bom-query-qty-serial.txt, plus the total. */
+        TEXT,
+        CSV,
+        PDF;
+
+        /** @return the format matching a file name's extension, TEXT if none does */
+        public static Format forFile(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            return lower.endsWith(".pdf") ? PDF : TEXT;
+        }
+    }
+
+    // Deeper than any real BOM; stops runaway recursion through a cycle
+    private static final int MAX_DEPTH = 64;
+
+    // Depth-first: the queue always yields the deepest row first, smallest SKU among siblings.
+    // Self-references are skipped and the depth is capped so a bad row can't recurse forever.
+    private static final String TREE_QUERY =
+        "WITH RECURSIVE tree(sku, level, quantity, serialized, total) AS ("
+            + " %s"
+            + " UNION ALL"
+            + " SELECT bom.sku, tree.level + 1, bom.quantity, bom.serialized, tree.total * bom.quantity"
+            + " FROM bom JOIN tree ON bom.parent_sku = tree.sku"
+            + " WHERE bom.sku <> bom.parent_sku AND tree.level < " + MAX_DEPTH
+            + " ORDER BY tree.level + 1 DESC, bom.sku)"
+            + " SELECT level, sku, quantity, serialized, total FROM tree";
+    private static final String ONE_ROOT = "VALUES(?, 0, NULL, NULL, 1)";
+    // Every SKU that has children but is nobody's child
+    private static final String ALL_ROOTS =
+        "SELECT DISTINCT b.parent_sku, 0, NULL, NULL, 1 FROM bom b WHERE b.parent_sku <> b.sku"
+            + " AND NOT EXISTS (SELECT 1 FROM bom c WHERE c.sku = b.parent_sku"
+            + " AND c.parent_sku IS NOT NULL AND c.parent_sku <> c.sku)";
+
+    private static final String[] HEADERS = {"Level", "SKU", "Qty", "Ser", "Total"};
+
+    private BomExporter() {
+    }
+
+    /**
+     * Exports the tree under {@code sku}, or every top-level assembly if
+     * {@code sku} is null, using one recursive query.
+     *
+     * @return number of rows written
+     */
+    public static int exportSql(Connection conn, String sku, Format format, OutputStream out)
+            throws SQLException, IOException {
+        String sql = String.format(TREE_QUERY, sku == null ? ALL_ROOTS : ONE_ROOT);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (sku != null) {
+                stmt.setString(1, sku);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return write(new ReportRenderer.Rows() {
+                    @Override
+                    public int columnCount() {
+                        return HEADERS.length;
+                    }
+
+                    @Override
+                    public boolean next() throws SQLException {
+                        return rs.next();
+                    }
+
+                    @Override
+                    public Object value(int column) throws SQLException {
+                        return rs.getObject(column);
+                    }
+                }, sku == null ? "All assemblies" : sku, format, out);
+            }
+        }
+    }
+
+    /**
+     * Exports the tree under {@code sku}, or every top-level assembly if
+     * {@code sku} is null, from the in-memory graph.
+     *
+     * @return number of rows written
+     * @throws IllegalArgumentException if the SKU is unknown
+     */
+    public static int exportGraph(BomGraph graph, String sku, Format format, OutputStream out)
+            throws SQLException, IOException {
+        long start = System.nanoTime();
+        try {
+            int[] roots;
+            if (sku == null) {
+                roots = topLevel(graph);
+            } else {
+                int id = graph.indexOf(sku);
+                if (id < 0) {
+                    throw new IllegalArgumentException("Unknown SKU " + sku);
+                }
+                roots = new int[]{id};
+            }
+            int rows = write(new GraphRows(graph, roots), sku == null ? "All assemblies" : sku, format, out);
+            return rows;
+        } finally {
+            EXPORT.stop(start);
+        }
+    }
+
+    // Nodes with children that no other node uses, in SKU order
+    private static int[] topLevel(BomGraph graph) {
+        boolean[] used = new boolean[graph.size()];
+        for (int id = 0; id < graph.size(); id++) {
+            for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+                used[graph.childId(e)] = true;
+            }
+        }
+        List<Integer> roots = new ArrayList<>();
+        for (int id = 0; id < graph.size(); id++) {
+            if (!used[id] && !graph.isRaw(id)) {
+                roots.add(id);
+            }
+        }
+        roots.sort((a, b) -> graph.sku(a).compareTo(graph.sku(b)));
+        int[] result = new int[roots.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = roots.get(i);
+        }
+        return result;
+    }
+
+    private static int write(ReportRenderer.Rows rows, String title, Format format, OutputStream out)
+            throws SQLException, IOException {
+        if (format == Format.PDF) {
+            try {
+                return new ReportRenderer("Bill of Materials: " + title, HEADERS).render(indented(rows), out, null);
+            } catch (DocumentException e) {
+                throw new IOException("Failed to write PDF", e);
+            }
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        int count = 0;
+        if (format == Format.CSV) {
+            writer.write("level,sku,quantity,serialized,total\n");
+        }
+        while (rows.next()) {
+            int level = ((Number) rows.value(1)).intValue();
+            String sku = (String) rows.value(2);
+            Object qty = rows.value(3);
+            Object serialized = rows.value(4);
+            Object total = rows.value(5);
+            if (format == Format.CSV) {
+                writer.write(level + "," + csv(sku) + "," + blank(qty) + "," + blank(serialized) + "," + total + "\n");
+            } else {
+                writer.write(level + "\t" + dashes(level) + sku + "\t" + blank(qty) + "\t" + blank(serialized)
+                        + "\t" + total + "\n");
+            }
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    // Same rows with the SKU column indented, for the PDF table
+    private static ReportRenderer.Rows indented(ReportRenderer.Rows rows) {
+        return new ReportRenderer.Rows() {
+            @Override
+            public int columnCount() throws SQLException {
+                return rows.columnCount();
+            }
+
+            @Override
+            public boolean next() throws SQLException {
+                return rows.next();
+            }
+
+            @Override
+            public Object value(int column) throws SQLException {
+                if (column != 2) {
+                    return rows.value(column);
+                }
+                return dashes(((Number) rows.value(1)).intValue()) + rows.value(2);
+            }
+        };
+    }
+
+    // bom-query.txt indents three dashes per level, with a single dash on the top line
+    private static String dashes(int level) {
+        char[] dashes = new char[Math.max(1, level * 3)];
+        Arrays.fill(dashes, '-');
+        return new String(dashes);
+    }
+
+    private static String blank(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    /** @return {@code value} as one CSV field, quoted only when it has to be; null is empty */
+    static String csv(Object value) {
+        String text = value == null ? "" : value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            return text;
+        }
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Depth-first walk of the graph holding only the current path: one frame
+     * per level with that node's child edges sorted by SKU.
+     */
+    private static final class GraphRows implements ReportRenderer.Rows {
+        private final BomGraph graph;
+        private final int[] roots;
+        private int nextRoot;
+
+        private final List<int[]> edges = new ArrayList<>(); // sorted child edges per open level
+        private int[] position = new int[16];                 // next edge to visit per open level
+        private long[] totals = new long[16];                 // rolled-up quantity per open level
+
+        private int level;
+        private int node;
+        private int edge = -1; // edge leading to the current row, -1 for a root
+        private long total;
+
+        GraphRows(BomGraph graph, int[] roots) {
+            this.graph = graph;
+            this.roots = roots;
+        }
+
+        @Override
+        public int columnCount() {
+            return HEADERS.length;
+        }
+
+        @Override
+        public boolean next() {
+            // Descend into the row just returned, then climb until a level has an unvisited edge
+            if (nextRoot > 0 || !edges.isEmpty()) {
+                push(node, total);
+            }
+            while (!edges.isEmpty()) {
+                int top = edges.size() - 1;
+                int[] children = edges.get(top);
+                if (position[top] < children.length) {
+                    edge = children[position[top]++];
+                    node = graph.childId(edge);
+                    level = top + 1;
+                    total = totals[top] * graph.childQty(edge);
+                    return true;
+                }
+                edges.remove(top);
+            }
+            if (nextRoot == roots.length) {
+                return false;
+            }
+            node = roots[nextRoot++];
+            edge = -1;
+            level = 0;
+            total = 1;
+            return true;
+        }
+
+        private void push(int id, long rolledUp) {
+            int depth = edges.size();
+            if (depth == position.length) {
+                position = Arrays.copyOf(position, depth * 2);
+                totals = Arrays.copyOf(totals, depth * 2);
+            }
+            Integer[] sorted = new Integer[graph.endChild(id) - graph.firstChild(id)];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = graph.firstChild(id) + i;
+            }
+            Arrays.sort(sorted, (a, b) -> graph.sku(graph.childId(a)).compareTo(graph.sku(graph.childId(b))));
+            int[] children = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                children[i] = sorted[i];
+            }
+            edges.add(children);
+            position[depth] = 0;
+            totals[depth] = rolledUp;
+        }
+
+        @Override
+        public Object value(int column) {
+            switch (column) {
+                case 1:
+                    return level;
+                case 2:
+                    return graph.sku(node);
+                case 3:
+                    return edge < 0 ? null : graph.childQty(edge);
+                case 4:
+                    return edge < 0 ? null : (graph.childSerialized(edge) ? 1 : 0);
+                default:
+                    return total;
+            }
+        }
+    }
+}
@@ -0,0 +1,627 @@
+package com.bushnell;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory snapshot of the part and bom tables.
+ *
+ * Every SKU is given an int id (part rows first, in SKU order) and the BOM is
+ * stored as a compressed adjacency list: the children of node {@code id} are the
+ * edges {@code firstChild(id)} up to {@code endChild(id)}. Quantities, prices and
+ * stock live in primitive arrays so an explosion never touches the database.
+ *
+ * Nodes are also ranked by low-level code (the deepest level a SKU appears at
+ * in any BOM), which gives the processing order for {@link MrpRun}.
+ *
+ * The same edges are kept a second time grouped by child, so the assemblies
+ * that use a part ({@code firstParent(id)} up to {@code endParent(id)}) can be
+ * walked upward without a scan; {@link #implode(int)} uses them to answer
+ * where-used queries.
+ */
+public final class BomGraph {
+    private static final Metrics.Timer LOAD = Metrics.timer("op graph load");
+
+    private static BomGraph shared;
+
+    private final String[] skus;
+    private final String[] descriptions;
+    private final double[] prices;
+    private final int[] stock;
+    private final long[] versions;               // row version of each part row, 0 before schema 3
+    private final int partCount;
+    private final Map<String, Integer> ids;
+
+    // Compressed child adjacency: edges of node i are childStart[i] .. childStart[i + 1] - 1
+    private final int[] childStart;
+    private final int[] childIds;
+    private final int[] childQty;
+    private final boolean[] childSerialized;
+
+    // The same edges grouped by child: the parents of node i are parentStart[i] .. parentStart[i + 1] - 1
+    private final int[] parentStart;
+    private final int[] parentIds;
+    private final int[] parentQty;
+
+    // Node ids sorted by low-level code, so every parent comes before its children
+    private final int[] levelOrder;
+    private final int[] lowLevelCode;
+
+    // Per-SKU sub-graphs in level order, filled on first use by reachable()
+    private final Map<Integer, int[]> reachableCache = new HashMap<>();
+
+    private BomGraph(String[] skus, String[] descriptions, double[] prices, int[] stock, long[] versions,
+                     int partCount, Map<String, Integer> ids, int[] childStart, int[] childIds, int[] childQty,
+                     boolean[] childSerialized) throws SQLException {
+        this.skus = skus;
+        this.descriptions = descriptions;
+        this.prices = prices;
+        this.stock = stock;
+        this.versions = versions;
+        this.partCount = partCount;
+        this.ids = ids;
+        this.childStart = childStart;
+        this.childIds = childIds;
+        this.childQty = childQty;
+        this.childSerialized = childSerialized;
+        this.parentStart = new int[skus.length + 1];
+        this.parentIds = new int[childIds.length];
+        this.parentQty = new int[childIds.length];
+        invertEdges();
+        this.lowLevelCode = new int[skus.length];
+        this.levelOrder = rankByLevel();
+    }
+
+    // Same structure as base with new part columns; the arrays passed in are owned by the copy
+    private BomGraph(BomGraph base, String[] descriptions, double[] prices, int[] stock, long[] versions) {
+        this.skus = base.skus;
+        this.descriptions = descriptions;
+        this.prices = prices;
+        this.stock = stock;
+        this.versions = versions;
+        this.partCount = base.partCount;
+        this.ids = base.ids;
+        this.childStart = base.childStart;
+        this.childIds = base.childIds;
+        this.childQty = base.childQty;
+        this.childSerialized = base.childSerialized;
+        this.parentStart = base.parentStart;
+        this.parentIds = base.parentIds;
+        this.parentQty = base.parentQty;
+        this.lowLevelCode = base.lowLevelCode;
+        this.levelOrder = base.levelOrder;
+    }
+
+    // Buckets the child edges by child node, the same way load() buckets them by parent
+    private void invertEdges() {
+        int n = skus.length;
+        for (int e = 0; e < childIds.length; e++) {
+            parentStart[childIds[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            parentStart[i + 1] += parentStart[i];
+        }
+        int[] fill = Arrays.copyOf(parentStart, n);
+        for (int parent = 0; parent < n; parent++) {
+            for (int e = childStart[parent]; e < childStart[parent + 1]; e++) {
+                int slot = fill[childIds[e]]++;
+                parentIds[slot] = parent;
+                parentQty[slot] = childQty[e];
+            }
+        }
+    }
+
+    /**
+     * Computes low-level codes with a topological sweep (Kahn's algorithm) and
+     * returns the node ids bucketed by code.
+     */
+    private int[] rankByLevel() throws SQLException {
+        int n = skus.length;
+        int[] parentsLeft = new int[n];
+        for (int e = 0; e < childIds.length; e++) {
+            parentsLeft[childIds[e]]++;
+        }
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (parentsLeft[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        int maxLevel = 0;
+        while (head < tail) {
+            int id = queue[head++];
+            for (int e = childStart[id]; e < childStart[id + 1]; e++) {
+                int child = childIds[e];
+                lowLevelCode[child] = Math.max(lowLevelCode[child], lowLevelCode[id] + 1);
+                maxLevel = Math.max(maxLevel, lowLevelCode[child]);
+                if (--parentsLeft[child] == 0) {
+                    queue[tail++] = child;
+                }
+            }
+        }
+        if (tail < n) {
+            for (int i = 0; i < n; i++) {
+                if (parentsLeft[i] > 0) {
+                    throw new SQLException("BOM contains a cycle through " + skus[i]);
+                }
+            }
+        }
+
+        // Counting sort by level keeps the order stable within a level
+        int[] levelStart = new int[maxLevel + 2];
+        for (int i = 0; i < n; i++) {
+            levelStart[lowLevelCode[i] + 1]++;
+        }
+        for (int l = 0; l <= maxLevel; l++) {
+            levelStart[l + 1] += levelStart[l];
+        }
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[levelStart[lowLevelCode[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the shared graph, loading it from the application database on
+     * first use. Commits made through other connections since the last call
+     * are applied first, by {@link SkuCatalog#sync()}.
+     *
+     * @return the cached graph
+     * @throws SQLException if loading fails
+     */
+    public static BomGraph get() throws SQLException {
+        SkuCatalog.get().sync(); // first pick up commits made by other processes
+        return loadShared();
+    }
+
+    private static synchronized BomGraph loadShared() throws SQLException {
+        if (shared == null) {
+            try (Database.Handle db = Database.get().open()) {
+                shared = load(db.connection());
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Drops the shared graph so the next {@link #get()} reloads it.
+     * Call this after committing any change to part or bom.
+     */
+    public static synchronized void invalidate() {
+        shared = null;
+    }
+
+    /** @return true if the shared graph is loaded */
+    static synchronized boolean isLoaded() {
+        return shared != null;
+    }
+
+    /**
+     * Compares the shared graph's part rows with the part table.
+     *
+     * @param versions every SKU in the part table with its row version
+     * @return SKUs added, removed or changed since the graph read them; empty
+     *         if no graph is loaded
+     */
+    static synchronized Set<String> staleParts(Map<String, Long> versions) {
+        Set<String> stale = new HashSet<>();
+        if (shared == null) {
+            return stale;
+        }
+        for (int id = 0; id < shared.partCount; id++) {
+            Long version = versions.get(shared.skus[id]);
+            if (version == null || version != shared.versions[id]) {
+                stale.add(shared.skus[id]);
+            }
+        }
+        for (String sku : versions.keySet()) {
+            Integer id = shared.ids.get(sku);
+            if (id == null || id >= shared.partCount) {
+                stale.add(sku);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Swaps changed part rows into the shared graph without reloading it.
+     * The BOM structure is reused as is; if a SKU was added or removed the
+     * graph is dropped instead, as by {@link #invalidate()}. A row whose
+     * version is not newer than the one already held was read before a later
+     * commit that has been applied, so it is skipped. Graphs already handed
+     * out keep their old values.
+     *
+     * @param rows fresh part rows by SKU; a null value means the row is gone
+     */
+    static synchronized void updateParts(Map<String, SkuCatalog.Entry> rows) {
+        if (shared == null || rows.isEmpty()) {
+            return;
+        }
+        BomGraph base = shared;
+        String[] descriptions = base.descriptions.clone();
+        double[] prices = base.prices.clone();
+        int[] stock = base.stock.clone();
+        long[] versions = base.versions.clone();
+        for (Map.Entry<String, SkuCatalog.Entry> row : rows.entrySet()) {
+            int id = base.indexOf(row.getKey());
+            SkuCatalog.Entry entry = row.getValue();
+            if (id < 0 || id >= base.partCount || entry == null) {
+                shared = null; // the set of parts changed, so ids no longer line up
+                return;
+            }
+            if (versions[id] >= entry.getVersion()) {
+                continue; // a newer commit to this row is already in the graph
+            }
+            descriptions[id] = entry.getDescription();
+            prices[id] = entry.getPrice();
+            stock[id] = entry.getStock();
+            versions[id] = entry.getVersion();
+        }
+        shared = new BomGraph(base, descriptions, prices, stock, versions);
+    }
+
+    /**
+     * Loads the whole part and bom tables with two queries.
+     *
+     * @param conn open database connection
+     * @return a new graph
+     * @throws SQLException if either query fails
+     */
+    public static BomGraph load(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return read(conn);
+        } finally {
+            LOAD.stop(start);
+        }
+    }
+
+    private static BomGraph read(Connection conn) throws SQLException {
+        List<String> skuList = new ArrayList<>();
+        List<String> descList = new ArrayList<>();
+        double[] priceArr = new double[64];
+        int[] stockArr = new int[64];
+        long[] versionArr = new long[64];
+        Map<String, Integer> ids = new HashMap<>();
+
+        // Databases not yet at schema 3 have no row versions; every row counts as version 0
+        String version = hasColumn(conn, "part", "version") ? "version" : "0";
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT sku, description, price, stock, " + version + " FROM part ORDER BY sku");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int id = skuList.size();
+                if (id == priceArr.length) {
+                    priceArr = Arrays.copyOf(priceArr, id * 2);
+                    stockArr = Arrays.copyOf(stockArr, id * 2);
+                    versionArr = Arrays.copyOf(versionArr, id * 2);
+                }
+                String sku = rs.getString(1);
+                skuList.add(sku);
+                descList.add(rs.getString(2));
+                priceArr[id] = rs.getDouble(3);
+                stockArr[id] = rs.getInt(4);
+                versionArr[id] = rs.getLong(5);
+                ids.put(sku, id);
+            }
+        }
+        int partCount = skuList.size();
+        versionArr = Arrays.copyOf(versionArr, partCount);
+
+        // Edges are read into flat arrays first, then bucketed by parent
+        int[] parents = new int[64];
+        int[] children = new int[64];
+        int[] qtys = new int[64];
+        boolean[] serials = new boolean[64];
+        int edgeCount = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT parent_sku, sku, quantity, serialized FROM bom WHERE parent_sku IS NOT NULL");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (edgeCount == parents.length) {
+                    parents = Arrays.copyOf(parents, edgeCount * 2);
+                    children = Arrays.copyOf(children, edgeCount * 2);
+                    qtys = Arrays.copyOf(qtys, edgeCount * 2);
+                    serials = Arrays.copyOf(serials, edgeCount * 2);
+                }
+                parents[edgeCount] = intern(rs.getString(1), ids, skuList, descList);
+                children[edgeCount] = intern(rs.getString(2), ids, skuList, descList);
+                qtys[edgeCount] = rs.getInt(3);
+                serials[edgeCount] = rs.getInt(4) != 0;
+                // A part listed as its own component is a data-entry slip; skip it rather than loop
+                if (parents[edgeCount] != children[edgeCount]) {
+                    edgeCount++;
+                }
+            }
+        }
+
+        int n = skuList.size();
+        priceArr = Arrays.copyOf(priceArr, n);
+        stockArr = Arrays.copyOf(stockArr, n);
+
+        int[] childStart = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            childStart[parents[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            childStart[i + 1] += childStart[i];
+        }
+        int[] fill = Arrays.copyOf(childStart, n);
+        int[] childIds = new int[edgeCount];
+        int[] childQty = new int[edgeCount];
+        boolean[] childSerialized = new boolean[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = fill[parents[e]]++;
+            childIds[slot] = children[e];
+            childQty[slot] = qtys[e];
+            childSerialized[slot] = serials[e];
+        }
+
+        BomGraph graph = new BomGraph(skuList.toArray(new String[0]), descList.toArray(new String[0]),
+                priceArr, stockArr, versionArr, partCount, ids, childStart, childIds, childQty, childSerialized);
+        return graph;
+    }
+
+    // True if the table has a column of that name
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("PRAGMA table_info(" + table + ")");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // BOM rows may reference SKUs missing from part; they become stock-less nodes
+    private static int intern(String sku, Map<String, Integer> ids, List<String> skuList, List<String> descList) {
+        Integer id = ids.get(sku);
+        if (id != null) {
+            return id;
+        }
+        int newId = skuList.size();
+        skuList.add(sku);
+        descList.add("");
+        ids.put(sku, newId);
+        return newId;
+    }
+
+    /** @return number of nodes, including SKUs only referenced from bom */
+    public int size() {
+        return skus.length;
+    }
+
+    /** @return number of nodes backed by a row in the part table; their ids are 0 .. partCount - 1 */
+    public int partCount() {
+        return partCount;
+    }
+
+    /** @return the id of {@code sku}, or -1 if it is unknown */
+    public int indexOf(String sku) {
+        Integer id = ids.get(sku);
+        return id == null ? -1 : id;
+    }
+
+    public String sku(int id) {
+        return skus[id];
+    }
+
+    public String description(int id) {
+        return descriptions[id];
+    }
+
+    public double price(int id) {
+        return prices[id];
+    }
+
+    public int stock(int id) {
+        return stock[id];
+    }
+
+    /** @return a copy of the stock column, indexed by node id */
+    public int[] stockSnapshot() {
+        return stock.clone();
+    }
+
+    /** @return true if the node has no BOM children */
+    public boolean isRaw(int id) {
+        return childStart[id] == childStart[id + 1];
+    }
+
+    public int firstChild(int id) {
+        return childStart[id];
+    }
+
+    public int endChild(int id) {
+        return childStart[id + 1];
+    }
+
+    /** @return the child node of BOM edge {@code edge} */
+    public int childId(int edge) {
+        return childIds[edge];
+    }
+
+    /** @return the per-unit quantity of BOM edge {@code edge} */
+    public int childQty(int edge) {
+        return childQty[edge];
+    }
+
+    /** @return true if the child on BOM edge {@code edge} is tracked by serial number */
+    public boolean childSerialized(int edge) {
+        return childSerialized[edge];
+    }
+
+    /** @return true if no assembly uses the node, i.e. it is a top-level product or unused part */
+    public boolean isTopLevel(int id) {
+        return parentStart[id] == parentStart[id + 1];
+    }
+
+    public int firstParent(int id) {
+        return parentStart[id];
+    }
+
+    public int endParent(int id) {
+        return parentStart[id + 1];
+    }
+
+    /** @return the assembly on reverse edge {@code edge} */
+    public int parentId(int edge) {
+        return parentIds[edge];
+    }
+
+    /** @return how many of the child one unit of the assembly on reverse edge {@code edge} uses */
+    public int parentQty(int edge) {
+        return parentQty[edge];
+    }
+
+    /** @return the deepest level at which the node appears in any BOM */
+    public int lowLevelCode(int id) {
+        return lowLevelCode[id];
+    }
+
+    /** @return the node at {@code position} when nodes are ordered by low-level code */
+    public int levelOrder(int position) {
+        return levelOrder[position];
+    }
+
+    /**
+     * Returns {@code id} and every node below it, in low-level-code order.
+     * The structure never changes for a loaded graph, so the result is cached
+     * and netting a different quantity of the same SKU only walks this subset.
+     *
+     * @param id top node
+     * @return shared array; do not modify
+     */
+    public synchronized int[] reachable(int id) {
+        int[] nodes = reachableCache.get(id);
+        if (nodes != null) {
+            return nodes;
+        }
+        boolean[] seen = new boolean[skus.length];
+        int[] stack = new int[skus.length];
+        int count = 0;
+        int top = 0;
+        stack[top++] = id;
+        seen[id] = true;
+        while (top > 0) {
+            int node = stack[--top];
+            count++;
+            for (int e = childStart[node]; e < childStart[node + 1]; e++) {
+                if (!seen[childIds[e]]) {
+                    seen[childIds[e]] = true;
+                    stack[top++] = childIds[e];
+                }
+            }
+        }
+        // Walking levelOrder keeps the subset in the same order as a full run
+        nodes = new int[count];
+        int n = 0;
+        for (int pos = 0; pos < levelOrder.length && n < count; pos++) {
+            if (seen[levelOrder[pos]]) {
+                nodes[n++] = levelOrder[pos];
+            }
+        }
+        reachableCache.put(id, nodes);
+        return nodes;
+    }
+
+    /**
+     * Finds every assembly that uses {@code id}, directly or through
+     * sub-assemblies, and how many of it one unit of each assembly consumes
+     * in total over all paths. Only the ancestors are visited, so the cost
+     * depends on how widely the part is used, not on the size of the graph.
+     *
+     * @param id part to look up
+     * @return the ancestors, nearest first; empty if nothing uses the part
+     */
+    public Implosion implode(int id) {
+        // Collect the ancestors walking up the reverse edges
+        Map<Integer, Integer> slots = new HashMap<>();
+        int[] found = new int[16];
+        int count = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = id;
+        while (top > 0) {
+            int node = stack[--top];
+            for (int e = parentStart[node]; e < parentStart[node + 1]; e++) {
+                int parent = parentIds[e];
+                if (slots.putIfAbsent(parent, count) == null) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = parent;
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = parent;
+                }
+            }
+        }
+
+        // Deepest low-level code first: an assembly always sits above everything it uses
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) (Integer.MAX_VALUE - lowLevelCode[found[i]]) << 32 | found[i];
+        }
+        Arrays.sort(keys);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (int) keys[i];
+            slots.put(ids[i], i);
+        }
+
+        // Push each node's per-unit usage up to its parents; every node is final before it is pushed
+        long[] quantityPer = new long[count];
+        for (int e = parentStart[id]; e < parentStart[id + 1]; e++) {
+            quantityPer[slots.get(parentIds[e])] += parentQty[e];
+        }
+        for (int i = 0; i < count; i++) {
+            int node = ids[i];
+            for (int e = parentStart[node]; e < parentStart[node + 1]; e++) {
+                quantityPer[slots.get(parentIds[e])] += quantityPer[i] * parentQty[e];
+            }
+        }
+        return new Implosion(ids, quantityPer);
+    }
+
+    /** Result of {@link #implode(int)}: ancestor ids with the quantity of the part each uses per unit. */
+    public static final class Implosion {
+        private final int[] ids;
+        private final long[] quantityPer;
+
+        Implosion(int[] ids, long[] quantityPer) {
+            this.ids = ids;
+            this.quantityPer = quantityPer;
+        }
+
+        /** @return number of ancestors */
+        public int size() {
+            return ids.length;
+        }
+
+        /** @return node id of the ancestor at {@code index} */
+        public int id(int index) {
+            return ids[index];
+        }
+
+        /** @return units of the part one unit of the ancestor at {@code index} consumes */
+        public long quantityPer(int index) {
+            return quantityPer[index];
+        }
+    }
+}
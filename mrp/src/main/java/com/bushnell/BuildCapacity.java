@@ -0,0 +1,255 @@
+package com.bushnell;
+
+import java.util.Arrays;
+
+/**
+ * How many units of every assembly current stock can build, building
+ * intermediate assemblies from their own components where their stock runs
+ * out, and which part stops it going any higher.
+ *
+ * One pass over the graph from the deepest low-level code up gives every
+ * assembly the units its components allow: the smallest, over its direct
+ * components, of (stock + units buildable) / quantity-per. Like
+ * {@link BuildPlan}, the assembly's own stock is not counted, since the units
+ * are built. The pass is exact when no part is reached through two different
+ * components of the assembly. When one is, as with a screw used both in a
+ * sub-assembly and in the assembly itself, both paths count the same stock
+ * and the figure is only an upper bound; those assemblies are checked with
+ * {@link MrpRun} netting passes over their own sub-graph and lowered by
+ * binary search until the build is feasible. A part that other assemblies
+ * also use doesn't make this one shared; only two paths from it do.
+ */
+public final class BuildCapacity {
+    private static final Metrics.Timer COMPUTE = Metrics.timer("op build capacity");
+
+    private final BomGraph graph;
+    private final int[] units;
+    private final int[] bottleneck;
+    private boolean[] shared;
+
+    // Scratch for walking sub-graphs: visit stamps, the current walk's stamp, found nodes and one netting run
+    private int[] stamp;
+    private int mark;
+    private int[] found;
+    private MrpRun run;
+
+    private BuildCapacity(BomGraph graph) {
+        this.graph = graph;
+        this.units = new int[graph.size()];
+        this.bottleneck = new int[graph.size()];
+    }
+
+    /**
+     * Computes the capacity of every assembly in {@code graph}.
+     *
+     * @param graph BOM and stock snapshot
+     * @return the capacities; they don't change with later stock movements
+     */
+    public static BuildCapacity compute(BomGraph graph) {
+        long start = System.nanoTime();
+        try {
+            BuildCapacity capacity = new BuildCapacity(graph);
+            capacity.shared = capacity.bottomUp();
+            for (int id = 0; id < graph.size(); id++) {
+                if (capacity.shared[id]) {
+                    capacity.check(id);
+                }
+            }
+            capacity.stamp = null;
+            capacity.found = null;
+            capacity.run = null;
+            return capacity;
+        } finally {
+            COMPUTE.stop(start);
+        }
+    }
+
+    /** @return the graph the capacities were computed from */
+    public BomGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return units of the assembly current stock can build; 0 for raw parts
+     *         and assemblies whose components all have quantity 0
+     */
+    public int maxBuildable(int id) {
+        return units[id];
+    }
+
+    /**
+     * @return the raw part, or an assembly with no way to build more, that
+     *         would run short first if one more unit were built; -1 for raw
+     *         parts and assemblies whose components all have quantity 0
+     */
+    public int bottleneck(int id) {
+        return bottleneck[id];
+    }
+
+    /**
+     * @return whether the assembly reaches some part by two paths, so its
+     *         one-pass figure was checked by netting
+     */
+    boolean isShared(int id) {
+        return shared[id];
+    }
+
+    /**
+     * Fills units and bottleneck from the deepest level up and returns which
+     * assemblies reach a part by two paths, so the pass may overstate them.
+     */
+    private boolean[] bottomUp() {
+        int n = graph.size();
+        boolean[] shared = new boolean[n];
+        // Whether some part below has several parents; only then can two paths from here meet
+        boolean[] fanIn = new boolean[n];
+        Arrays.fill(bottleneck, -1);
+        for (int pos = n - 1; pos >= 0; pos--) {
+            int id = graph.levelOrder(pos);
+            if (graph.isRaw(id)) {
+                continue;
+            }
+            long best = Integer.MAX_VALUE;
+            int limit = -1;
+            for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+                int child = graph.childId(e);
+                int qty = graph.childQty(e);
+                shared[id] |= shared[child];
+                fanIn[id] |= fanIn[child] || graph.endParent(child) - graph.firstParent(child) > 1;
+                if (qty <= 0) {
+                    continue;
+                }
+                long allowed = supply(child) / qty;
+                if (allowed < best) {
+                    best = allowed;
+                    limit = child;
+                }
+            }
+            if (!shared[id] && fanIn[id]) {
+                // The other parents may all be outside this sub-graph
+                shared[id] = reachedTwice(id);
+            }
+            if (limit < 0) {
+                continue; // nothing to build it from; units stays 0
+            }
+            units[id] = (int) best;
+            // More of an assembly component is limited by whatever limits building it
+            bottleneck[id] = graph.isRaw(limit) || bottleneck[limit] < 0 ? limit : bottleneck[limit];
+        }
+        return shared;
+    }
+
+    // Units of a component on hand or buildable from its own components
+    private long supply(int id) {
+        return Math.max(graph.stock(id), 0) + (long) units[id];
+    }
+
+    // Verifies the one-pass figure of a shared assembly by netting, lowering it until the build is feasible
+    private void check(int id) {
+        int[] nodes = subGraph(id);
+        int bound = units[id];
+        if (bound == 0 || shortest(id, nodes, bound) < 0) {
+            return;
+        }
+        int low = 0;
+        int high = bound - 1;
+        while (low < high) {
+            int mid = low + (high - low + 1) / 2;
+            if (shortest(id, nodes, mid) < 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        units[id] = low;
+        bottleneck[id] = shortest(id, nodes, low + 1);
+    }
+
+    /**
+     * Nets a build of {@code count} units of {@code id} over its sub-graph as
+     * {@link BuildPlan} does.
+     *
+     * @return the part with the largest shortage, or -1 if stock covers the build
+     */
+    private int shortest(int id, int[] nodes, int count) {
+        for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+            if ((long) count * graph.childQty(e) > Integer.MAX_VALUE) {
+                // More than any int stock can cover, so this component runs short first
+                int child = graph.childId(e);
+                return graph.isRaw(child) || bottleneck[child] < 0 ? child : bottleneck[child];
+            }
+        }
+        for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+            run.addDemand(graph.childId(e), count * graph.childQty(e));
+        }
+        run.run(nodes);
+        int worst = -1;
+        for (int node : nodes) {
+            if (graph.isRaw(node) && run.net(node) > 0 && (worst < 0 || run.net(node) > run.net(worst))) {
+                worst = node;
+            }
+        }
+        run.reset(nodes);
+        return worst;
+    }
+
+    // Whether a walk of the sub-graph below id meets any part a second time
+    private boolean reachedTwice(int id) {
+        allocate();
+        mark++;
+        int count = 0;
+        found[count++] = id;
+        stamp[id] = mark;
+        for (int next = 0; next < count; next++) {
+            int node = found[next];
+            for (int e = graph.firstChild(node); e < graph.endChild(node); e++) {
+                int child = graph.childId(e);
+                if (stamp[child] == mark) {
+                    return true;
+                }
+                stamp[child] = mark;
+                found[count++] = child;
+            }
+        }
+        return false;
+    }
+
+    // Everything below id, in low-level-code order; visits only the sub-graph
+    private int[] subGraph(int id) {
+        allocate();
+        if (run == null) {
+            run = new MrpRun(graph);
+        }
+        mark++;
+        int count = 0;
+        found[count++] = id;
+        stamp[id] = mark;
+        for (int next = 0; next < count; next++) {
+            int node = found[next];
+            for (int e = graph.firstChild(node); e < graph.endChild(node); e++) {
+                int child = graph.childId(e);
+                if (stamp[child] != mark) {
+                    stamp[child] = mark;
+                    found[count++] = child;
+                }
+            }
+        }
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) graph.lowLevelCode(found[i]) << 32 | found[i];
+        }
+        Arrays.sort(keys);
+        int[] nodes = new int[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = (int) keys[i];
+        }
+        return nodes;
+    }
+
+    private void allocate() {
+        if (stamp == null) {
+            stamp = new int[graph.size()];
+            found = new int[graph.size()];
+        }
+    }
+}
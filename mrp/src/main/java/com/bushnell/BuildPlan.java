@@ -0,0 +1,118 @@
+package com.bushnell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build-through plan for one SUB SKU.
+ *
+ * One MRP pass over the SKU's sub-graph works out how many of every
+ * intermediate assembly must be built from its own components because stock
+ * doesn't cover it. The steps come out bottom-up (deepest assemblies first),
+ * so each build only consumes parts that are on hand or were built by an
+ * earlier step, and the final step is the requested SKU itself.
+ */
+public final class BuildPlan {
+
+    /** One bundle operation: build {@code units} of {@code sku}. */
+    public static final class Step {
+        private final String sku;
+        private final int units;
+
+        Step(String sku, int units) {
+            this.sku = sku;
+            this.units = units;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public int getUnits() {
+            return units;
+        }
+
+        @Override
+        public String toString() {
+            return units + " x " + sku;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final Map<String, Integer> shortages = new LinkedHashMap<>();
+
+    private BuildPlan() {
+    }
+
+    /**
+     * Plans building {@code units} of {@code sku}, together with every
+     * intermediate assembly it needs that isn't in stock.
+     *
+     * @param graph BOM and stock snapshot
+     * @param sku SUB SKU to build
+     * @param units number of units to build
+     * @return the plan; check {@link #isFeasible()} before running it
+     * @throws IllegalArgumentException if the SKU is unknown, raw, or units is not positive
+     */
+    public static BuildPlan plan(BomGraph graph, String sku, int units) {
+        int id = graph.indexOf(sku);
+        if (id < 0 || graph.isRaw(id)) {
+            throw new IllegalArgumentException(sku + " is not an assembly");
+        }
+        if (units <= 0) {
+            throw new IllegalArgumentException("Units for " + sku + " must be positive");
+        }
+
+        // The target is always built, so its own stock must not net the demand away:
+        // seed its children directly and let the pass net everything below it
+        MrpRun run = new MrpRun(graph);
+        for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+            run.addDemand(graph.childId(e), units * graph.childQty(e));
+        }
+        int[] nodes = graph.reachable(id);
+        run.run(nodes);
+
+        // nodes is in low-level-code order, so walking it backwards is bottom-up
+        BuildPlan plan = new BuildPlan();
+        for (int i = nodes.length - 1; i > 0; i--) {
+            int node = nodes[i];
+            if (run.net(node) == 0) {
+                continue;
+            }
+            if (graph.isRaw(node)) {
+                plan.shortages.put(graph.sku(node), run.net(node));
+            } else {
+                plan.steps.add(new Step(graph.sku(node), run.net(node)));
+            }
+        }
+        plan.steps.add(new Step(sku, units));
+        return plan;
+    }
+
+    /** @return true if raw stock covers every step */
+    public boolean isFeasible() {
+        return shortages.isEmpty();
+    }
+
+    /** @return builds in execution order, ending with the requested SKU */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /** @return raw SKUs that stock can't cover, with the quantity missing */
+    public Map<String, Integer> getShortages() {
+        return Collections.unmodifiableMap(shortages);
+    }
+
+    /** @return the steps as SKU to units, in execution order, for {@link Bundler} */
+    public Map<String, Integer> getBuilds() {
+        Map<String, Integer> builds = new LinkedHashMap<>();
+        for (Step step : steps) {
+            builds.put(step.getSku(), step.getUnits());
+        }
+        return builds;
+    }
+}
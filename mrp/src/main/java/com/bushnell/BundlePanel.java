@@ -14,12 +14,31 @@ import java.sql.*;
  */
 public class BundlePanel extends JPanel {
     // UI components
-    private JComboBox<String> skuComboBox;      // Dropdown to select SUB SKU
+    private SkuSearchBox skuSearch;             // Type-ahead search over SUB SKUs
+    private JComboBox<String> skuComboBox;      // Dropdown to select SUB SKU, fed by skuSearch
     private JLabel descLabel, stockLabel;       // Labels to show description and stock of selected SKU
     private JTable componentsTable;             // Table to list required components (child SKUs)
     private DefaultTableModel tableModel;       // Model backing the table
     private JButton bundleButton;               // Button to trigger the bundling process
-    private static final String DB_PATH = "jdbc:sqlite:VR-Factory.db"; // Path to SQLite database
+    private JButton listButton;                 // Button to bundle a whole build list
+    private JSpinner unitsSpinner;              // Number of units to build in one go
+    private JCheckBox buildThroughBox;          // Also build short intermediate SUBs
+    private JLabel planLabel;                   // Summary of the build-through plan
+
+    // Background work: component lookups supersede each other, bundles run one at a time and are never cancelled
+    private final AsyncQuery<Selection> selectionQuery = new AsyncQuery<>("bundle select SKU");
+    private final AsyncWrite<String> bundleWrite = new AsyncWrite<>("bundle");
+
+    /**
+     * Snapshot of a SUB SKU and its direct components, computed off the EDT.
+     */
+    private static final class Selection {
+        String description;
+        int stock;
+        boolean canBundle = true;
+        BuildPlan plan;                         // Only set in build-through mode
+        final java.util.List<Object[]> rows = new java.util.ArrayList<>();
+    }
 
     // Constructor sets up UI
     public BundlePanel() {
@@ -38,10 +57,10 @@ public class BundlePanel extends JPanel {
         // SKU selection row
         JPanel skuRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
         skuRow.add(new JLabel("Select SUB SKU:"));
-        skuComboBox = new JComboBox<>();
-        loadSubSKUs(); // Load SKUs from DB
-        skuComboBox.addActionListener(this::onSKUSelected); // Event when SKU is selected
-        skuRow.add(skuComboBox);
+        skuSearch = new SkuSearchBox();
+        skuComboBox = skuSearch.getComboBox();
+        loadSubSKUs(); // Load SKUs in the background; the selection listener is added once they arrive
+        skuRow.add(skuSearch);
         topPanel.add(skuRow);
 
         // Description row
@@ -56,6 +75,33 @@ public class BundlePanel extends JPanel {
         stockRow.add(stockLabel);
         topPanel.add(stockRow);
 
+        // Units row: how many of the selected SKU to build
+        JPanel unitsRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        unitsRow.add(new JLabel("Units:"));
+        unitsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 9999, 1));
+        unitsSpinner.addChangeListener(e -> onSKUSelected(null)); // Re-check stock for the new unit count
+        unitsRow.add(unitsSpinner);
+        topPanel.add(unitsRow);
+
+        // Build-through row: build short intermediate assemblies from raw parts first
+        JPanel throughRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buildThroughBox = new JCheckBox("Build through");
+        buildThroughBox.addActionListener(e -> onSKUSelected(null));
+        throughRow.add(buildThroughBox);
+        topPanel.add(throughRow);
+
+        JPanel planRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        planLabel = new JLabel(" ");
+        planRow.add(planLabel);
+        topPanel.add(planRow);
+
+        // Build list row: bundle several SUB SKUs from a sku,units CSV file
+        JPanel listRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        listButton = new JButton("Bundle List...");
+        listButton.addActionListener(e -> bundleList());
+        listRow.add(listButton);
+        topPanel.add(listRow);
+
         add(topPanel, BorderLayout.WEST); // Add the side panel to the left
 
         // Table setup for displaying components
@@ -96,25 +142,47 @@ public class BundlePanel extends JPanel {
      * Resets all UI components to their initial state.
      */
     public void resetSelection() {
+        selectionQuery.cancel();
+        skuSearch.clearQuery();
         skuComboBox.setSelectedItem(null);
         descLabel.setText("Description: ");
         stockLabel.setText("Stock: ");
+        unitsSpinner.setValue(1);
+        buildThroughBox.setSelected(false);
+        planLabel.setText(" ");
         tableModel.setRowCount(0);
         updateBundleButtonState(false); // Disable button and make it gray
     }
 
     /**
-     * Loads all SUB-SKUs from the database and populates the combo box.
+     * Loads the SUB-SKU search index from the shared catalog into the search box.
      */
     private void loadSubSKUs() {
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             PreparedStatement stmt = conn.prepareStatement("SELECT sku FROM part WHERE sku LIKE 'SUB-%'");
-             ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                skuComboBox.addItem(rs.getString("sku")); // Add each SUB SKU to dropdown
-            }
-        } catch (SQLException e) {
-            showError("Failed to load SUB SKUs", e);
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(true), index -> {
+            skuSearch.setIndex(index); // Dropdown now searches every SUB SKU
+            skuComboBox.addActionListener(this::onSKUSelected); // Event when SKU is selected
+            SkuCatalog.get().addListener(this::catalogChanged); // Keep the list and stock figures current
+        }, e -> showError("Failed to load SUB SKUs", e));
+    }
+
+    /**
+     * Follows catalog changes: picks up a rebuilt SUB index if SKUs were added
+     * or removed, and re-reads the selection if the SKU or one of its
+     * components changed.
+     */
+    private void catalogChanged(java.util.Set<String> changed) {
+        // Stock-only changes hand back the same index, which setIndex ignores
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(true), skuSearch::setIndex,
+            e -> showError("Failed to reload SUB SKUs", e));
+
+        Object selected = skuComboBox.getSelectedItem();
+        if (selected == null) return;
+        boolean affected = changed == null || changed.contains(selected);
+        for (int row = 0; row < tableModel.getRowCount() && !affected; row++) {
+            affected = changed.contains(tableModel.getValueAt(row, 0));
+        }
+        if (affected) {
+            onSKUSelected(null);
         }
     }
 
@@ -122,154 +190,200 @@ public class BundlePanel extends JPanel {
  * Triggered when a new SKU is selected from the dropdown.
  * 
  * This method:
- * 1. Retrieves the selected SKU's description and stock.
- * 2. Loads its associated child components from the BOM (Bill of Materials).
- * 3. For each child SKU, fetches the description and current stock.
- * 4. Populates the component table with this data.
- * 5. Enables or disables the bundle button based on stock availability.
+ * 1. Retrieves the selected SKU's description and stock from the in-memory BOM graph.
+ * 2. Walks its direct child components (Bill of Materials) in the graph.
+ * 3. Populates the component table with each child's description and current stock.
+ * 4. Enables or disables the bundle button based on stock availability.
  */
 private void onSKUSelected(ActionEvent e) {
     String selectedSKU = (String) skuComboBox.getSelectedItem();
     if (selectedSKU == null) return; // Exit if no SKU is selected
 
-    try (Connection conn = DriverManager.getConnection(DB_PATH)) {
-        // === Step 1: Get main part info ===
-        // SQL: SELECT description, stock FROM part WHERE sku = ?
-        // Explanation:
-        // - Retrieves the description and stock for the selected parent SKU
-        PreparedStatement partStmt = conn.prepareStatement(
-            "SELECT description, stock FROM part WHERE sku = ?"
-        );
-        partStmt.setString(1, selectedSKU);
-        ResultSet partRs = partStmt.executeQuery();
+    int units = (Integer) unitsSpinner.getValue();
+    boolean buildThrough = buildThroughBox.isSelected();
+    selectionQuery.submit(() -> loadSelection(selectedSKU, units, buildThrough), this::showSelection,
+        // Show a user-friendly error message if loading fails
+        ex -> showError("Failed to load SKU details", ex));
+}
 
-        // Display the description and stock in the UI if the SKU exists
-        if (partRs.next()) {
-            descLabel.setText("Description: " + partRs.getString("description"));
-            stockLabel.setText("Stock: " + partRs.getInt("stock"));
-        }
+/**
+ * Reads the SKU and its child edges from the in-memory BOM graph, scaled to
+ * the requested number of units. In build-through mode a short child SUB
+ * doesn't block the bundle as long as the plan can build it. Runs off the EDT.
+ */
+private static Selection loadSelection(String selectedSKU, int units, boolean buildThrough) throws SQLException {
+    // === Step 1: Get main part info ===
+    BomGraph graph = BomGraph.get();
+    int id = graph.indexOf(selectedSKU);
+    if (id < 0) return null;
+
+    Selection selection = new Selection();
+    selection.description = graph.description(id);
+    selection.stock = graph.stock(id);
+
+    // === Step 2: For each child edge, collect description and stock ===
+    for (int edge = graph.firstChild(id); edge < graph.endChild(id); edge++) {
+        int child = graph.childId(edge);
+        int qtyRequired = graph.childQty(edge) * units; // Quantity needed for the whole bundle
+        int stock = graph.stock(child);
+
+        // Check if there's enough stock of this component for bundling
+        if (stock < qtyRequired) selection.canBundle = false;
+
+        // Row layout: SKU | Description | Quantity Needed | Current Stock
+        selection.rows.add(new Object[]{graph.sku(child), graph.description(child), qtyRequired, stock});
+    }
 
-        // === Step 2: Clear previous component rows ===
-        tableModel.setRowCount(0); // Clears the table for fresh data
+    // === Step 3: In build-through mode only raw shortages block the bundle ===
+    if (buildThrough) {
+        selection.plan = BuildPlan.plan(graph, selectedSKU, units);
+        selection.canBundle = selection.plan.isFeasible();
+    }
+    return selection;
+}
 
-        // === Step 3: Get child components from BOM ===
-        // SQL: SELECT sku, quantity FROM bom WHERE parent_sku = ?
-        // Explanation:
-        // - Retrieves all child SKUs and quantities needed to assemble the selected parent SKU
-        PreparedStatement bomStmt = conn.prepareStatement(
-            "SELECT sku, quantity FROM bom WHERE parent_sku = ?"
-        );
-        bomStmt.setString(1, selectedSKU);
-        ResultSet bomRs = bomStmt.executeQuery();
-
-        boolean canBundle = true; // Flag to determine if bundling is possible
-
-        // === Step 4: For each child, get description and stock ===
-        while (bomRs.next()) {
-            String childSKU = bomRs.getString("sku");        // SKU of component part
-            int qtyRequired = bomRs.getInt("quantity");      // Quantity needed for bundle
-
-            // SQL: SELECT description, stock FROM part WHERE sku = ?
-            // Explanation:
-            // - Retrieves the child part's description and stock from the parts table
-            PreparedStatement childStmt = conn.prepareStatement(
-                "SELECT description, stock FROM part WHERE sku = ?"
-            );
-            childStmt.setString(1, childSKU);
-            ResultSet childRs = childStmt.executeQuery();
-
-            if (childRs.next()) {
-                String desc = childRs.getString("description");
-                int stock = childRs.getInt("stock");
-
-                // Check if there's enough stock of this component for bundling
-                if (stock < qtyRequired) canBundle = false;
-
-                // Add a row to the table: SKU | Description | Quantity Needed | Current Stock
-                tableModel.addRow(new Object[]{childSKU, desc, qtyRequired, stock});
-            }
-        }
+/**
+ * Shows a loaded selection: labels, component rows and bundle button state.
+ */
+private void showSelection(Selection selection) {
+    if (selection == null) return; // SKU no longer exists
+
+    descLabel.setText("Description: " + selection.description);
+    stockLabel.setText("Stock: " + selection.stock);
+
+    // Clear previous component rows and add the fresh ones
+    tableModel.setRowCount(0);
+    for (Object[] row : selection.rows) {
+        tableModel.addRow(row);
+    }
 
-        // === Step 5: Enable or disable bundle button ===
-        // If any child part doesn't have enough stock, disable the button
-        updateBundleButtonState(canBundle);
-        
-    } catch (SQLException ex) {
-        // Show a user-friendly error message if database query fails
-        showError("Failed to load SKU details", ex);
+    // Summarise the build-through plan, or what stops it
+    BuildPlan plan = selection.plan;
+    if (plan == null) {
+        planLabel.setText(" ");
+    } else if (plan.isFeasible()) {
+        planLabel.setText("Plan: " + plan.getSteps().size() + " build(s)");
+    } else {
+        planLabel.setText("Short: " + String.join(", ", plan.getShortages().keySet()));
     }
+
+    // If any child part doesn't have enough stock, disable the button; it also stays off while a bundle runs
+    updateBundleButtonState(selection.canBundle && !bundleWrite.isRunning());
 }
 
 
 /**
- * Performs the bundling operation for a selected parent SKU.
- * 
- * This method:
- * 1. Subtracts the required quantity of each component (child SKU) from inventory.
- * 2. Increases the inventory of the parent SKU (the bundled product) by 1.
- * 3. Executes all changes in a single database transaction to ensure data integrity.
+ * Performs the bundling operation for the selected parent SKU.
+ *
+ * The per-unit quantities come from the BOM graph, not from the table, and
+ * {@link Bundler} re-checks every component's stock inside the transaction,
+ * so the build either fully succeeds or leaves stock untouched.
  */
 private void bundle() {
     // Retrieve the selected parent SKU (the bundled product)
     String parentSKU = (String) skuComboBox.getSelectedItem();
     if (parentSKU == null) return; // Exit if no SKU is selected
+    int units = (Integer) unitsSpinner.getValue();
+
+    if (!buildThroughBox.isSelected()) {
+        runBundle(() -> {
+            Bundler.bundle(parentSKU, units);
+            return "Bundled " + units + " x " + parentSKU + ".";
+        });
+        return;
+    }
 
-    try (Connection conn = DriverManager.getConnection(DB_PATH)) {
-        // Start a transaction to ensure all-or-nothing update behavior
-        conn.setAutoCommit(false);
-
-        // Prepare a SQL statement to subtract stock from each component
-        // SQL: UPDATE part SET stock = stock - ? WHERE sku = ?
-        // Explanation:
-        // - "part" is the table that contains all SKUs
-        // - "stock = stock - ?" subtracts the required quantity from current stock
-        // - "WHERE sku = ?" ensures only the specific child SKU is updated
-        PreparedStatement updateChild = conn.prepareStatement(
-            "UPDATE part SET stock = stock - ? WHERE sku = ?"
-        );
-
-        // Loop through the component list (from the table model) to get each child SKU and required quantity
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            String childSKU = (String) tableModel.getValueAt(i, 0); // Column 0: SKU of the child component
-            int qty = (int) tableModel.getValueAt(i, 2);            // Column 2: Quantity needed for the bundle
+    // Build through: report every step that was run, in order
+    runBundle(() -> {
+        BuildPlan plan = Bundler.buildThrough(parentSKU, units);
+        StringBuilder message = new StringBuilder("Built in this order:\n");
+        int n = 1;
+        for (BuildPlan.Step step : plan.getSteps()) {
+            message.append("\n").append(n++).append(". ").append(step);
+        }
+        return message.toString();
+    });
+}
 
-            updateChild.setInt(1, qty);         // Set the quantity to subtract
-            updateChild.setString(2, childSKU); // Set the child SKU to update
-            updateChild.addBatch();             // Add to batch for efficient execution
+/**
+ * Loads a sku,units CSV file and bundles every line in one transaction.
+ */
+private void bundleList() {
+    JFileChooser chooser = new JFileChooser(new java.io.File("."));
+    chooser.setDialogTitle("Load Bundle List");
+    if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+    java.util.Map<String, Integer> builds = new java.util.LinkedHashMap<>();
+    try (java.io.Reader in = new java.io.FileReader(chooser.getSelectedFile())) {
+        for (BatchDemand.Order order : BatchDemand.readOrders(in)) {
+            builds.merge(order.getSku(), order.getQuantity(), Integer::sum);
         }
-        updateChild.executeBatch(); // Execute all updates in a single batch call
-
-        // Prepare a SQL statement to increase stock for the parent SKU
-        // SQL: UPDATE part SET stock = stock + 1 WHERE sku = ?
-        // Explanation:
-        // - This adds 1 to the stock of the bundled (parent) product
-        PreparedStatement updateParent = conn.prepareStatement(
-            "UPDATE part SET stock = stock + 1 WHERE sku = ?"
-        );
-        updateParent.setString(1, parentSKU); // Set the parent SKU to update
-        updateParent.executeUpdate();         // Apply the stock increment
+    } catch (java.io.IOException ex) {
+        showError("Failed to read bundle list", ex);
+        return;
+    }
+    if (builds.isEmpty()) return;
 
-        // Commit the transaction to permanently save changes
-        conn.commit();
+    StringBuilder summary = new StringBuilder("Bundle the following in one transaction?\n");
+    for (java.util.Map.Entry<String, Integer> build : builds.entrySet()) {
+        summary.append("\n").append(build.getValue()).append(" x ").append(build.getKey());
+    }
+    int answer = JOptionPane.showConfirmDialog(this, summary.toString(), "Bundle List",
+        JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, getVRIcon());
+    if (answer != JOptionPane.YES_OPTION) return;
+
+    runBundle(() -> {
+        Bundler.bundle(builds);
+        return "Bundled " + builds.size() + " SKUs.";
+    });
+}
 
+/**
+ * Runs a stock change in the background, then reports and refreshes on the EDT.
+ * Every bundle control stays disabled until the change has committed or
+ * failed, so the operator can't start a second one or lose its outcome.
+ *
+ * @param change does the work and returns the message to show on success
+ */
+private void runBundle(java.util.concurrent.Callable<String> change) {
+    if (!bundleWrite.submit(change, successMessage -> {
+        setBundleControlsEnabled(true);
         // Inform the user that bundling was successful using a custom icon
-        ImageIcon icon = new ImageIcon(getClass().getResource("/VisualRoboticsIcon.png"));
         JOptionPane.showMessageDialog(
             this,
-            "Bundling successful!",
+            successMessage,
             "Message",
             JOptionPane.INFORMATION_MESSAGE,
-            icon
+            getVRIcon()
         );
-
-        // Refresh the UI to reflect the updated stock values
+        // Re-check the button against the stock the commit left behind
         onSKUSelected(null);
-
-    } catch (SQLException ex) {
-        // If any SQL error occurs, rollback is automatic with try-with-resources,
-        // and we notify the user of the failure
+    }, ex -> {
+        // Nothing was written; tell the user why and show the current stock
+        setBundleControlsEnabled(true);
         showError("Bundling failed", ex);
+        onSKUSelected(null);
+    })) {
+        return; // an earlier bundle is still running
     }
+    setBundleControlsEnabled(false); // No double clicks while the transaction runs
+}
+
+/**
+ * Enables or disables everything that starts or shapes a bundle. The bundle
+ * button itself only comes back on once the selection has been re-checked.
+ */
+private void setBundleControlsEnabled(boolean enabled) {
+    unitsSpinner.setEnabled(enabled);
+    buildThroughBox.setEnabled(enabled);
+    listButton.setEnabled(enabled);
+    if (!enabled) {
+        updateBundleButtonState(false);
+    }
+}
+
+private ImageIcon getVRIcon() {
+    return new ImageIcon(getClass().getResource("/VisualRoboticsIcon.png"));
 }
 
 
@@ -279,6 +393,7 @@ private void bundle() {
      */
     private void showError(String msg, Exception e) {
         e.printStackTrace();
+        Metrics.error(msg);
         JOptionPane.showMessageDialog(this, msg + ":\n" + e.getMessage());
     }
 
@@ -0,0 +1,189 @@
+package com.bushnell;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies bundle (assembly) operations to stock.
+ *
+ * Any number of units of any number of SUB SKUs are folded into one net stock
+ * delta per SKU and written in a single transaction. Every write is a
+ * conditional {@code UPDATE ... WHERE stock + delta >= 0}, so availability is
+ * re-checked by SQLite at write time rather than trusted from whatever the
+ * screen showed; if any SKU would go negative the whole transaction is rolled
+ * back. Each build step is also appended to the {@link StockLedger} in the
+ * same transaction, as a BUILD row for the SUB and a CONSUME row per
+ * component, so an intermediate assembly that is built and used up again by
+ * build-through still leaves both movements even though its stock nets to 0.
+ */
+public final class Bundler {
+    private static final Metrics.Timer COMMIT = Metrics.timer("op bundle commit");
+    private static final String APPLY_DELTA =
+        "UPDATE part SET stock = stock + ?, version = version + 1 WHERE sku = ? AND stock + ? >= 0";
+
+    private Bundler() {
+    }
+
+    /**
+     * Thrown when a bundle would take a component's stock below zero.
+     */
+    public static final class InsufficientStockException extends SQLException {
+        private final List<String> skus;
+
+        InsufficientStockException(List<String> skus) {
+            super("Insufficient stock for " + String.join(", ", skus));
+            this.skus = skus;
+        }
+
+        /** @return the SKUs that were short */
+        public List<String> getSkus() {
+            return skus;
+        }
+    }
+
+    /**
+     * Builds {@code units} of one SUB SKU.
+     */
+    public static void bundle(String sku, int units) throws SQLException {
+        Map<String, Integer> builds = new LinkedHashMap<>();
+        builds.put(sku, units);
+        bundle(builds);
+    }
+
+    /**
+     * Builds every SKU in {@code builds} the given number of times, atomically.
+     *
+     * @param builds SUB SKU to number of units
+     * @throws InsufficientStockException if stock doesn't cover the whole list
+     * @throws SQLException on any other database failure
+     */
+    public static void bundle(Map<String, Integer> builds) throws SQLException {
+        String reference = builds.size() == 1
+                ? "bundle " + builds.values().iterator().next() + " x " + builds.keySet().iterator().next()
+                : "bundle list of " + builds.size() + " SKUs";
+        commit(BomGraph.get(), builds, reference);
+    }
+
+    /**
+     * Builds {@code units} of a SUB SKU, first building any intermediate
+     * assemblies that are short, all in one transaction.
+     *
+     * @return the plan that was executed
+     * @throws InsufficientStockException if raw stock can't cover the plan
+     * @throws SQLException on any other database failure
+     */
+    public static BuildPlan buildThrough(String sku, int units) throws SQLException {
+        BomGraph graph = BomGraph.get();
+        BuildPlan plan = BuildPlan.plan(graph, sku, units);
+        if (!plan.isFeasible()) {
+            throw new InsufficientStockException(new ArrayList<>(plan.getShortages().keySet()));
+        }
+        commit(graph, plan.getBuilds(), "build through " + units + " x " + sku);
+        return plan;
+    }
+
+    // Applies net deltas and per-step movements in one transaction, then refreshes the touched catalog entries
+    private static void commit(BomGraph graph, Map<String, Integer> builds, String reference) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Map<String, Integer> deltas = stockDeltas(graph, builds);
+            List<StockLedger.Movement> movements = movements(graph, builds, reference);
+            try (Database.Handle db = Database.get().open()) {
+                Connection conn = db.connection();
+                conn.setAutoCommit(false);
+                applyDeltas(db, deltas, movements);
+                conn.commit();
+            }
+            SkuCatalog.get().refresh(deltas.keySet()); // Re-read only the SKUs whose stock moved
+        } finally {
+            COMMIT.stop(start);
+        }
+    }
+
+    /**
+     * Folds a build list into one net stock change per SKU: each build adds its
+     * units to the SUB and takes units x quantity-per from every direct child.
+     *
+     * @throws IllegalArgumentException if a SKU is unknown, raw, or units is not positive
+     */
+    public static Map<String, Integer> stockDeltas(BomGraph graph, Map<String, Integer> builds) {
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> build : builds.entrySet()) {
+            int id = graph.indexOf(build.getKey());
+            int units = build.getValue();
+            if (id < 0 || graph.isRaw(id)) {
+                throw new IllegalArgumentException(build.getKey() + " is not an assembly");
+            }
+            if (units <= 0) {
+                throw new IllegalArgumentException("Units for " + build.getKey() + " must be positive");
+            }
+            deltas.merge(build.getKey(), units, Integer::sum);
+            for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+                deltas.merge(graph.sku(graph.childId(e)), -units * graph.childQty(e), Integer::sum);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Lists the ledger movements of a build list, step by step: each build
+     * adds its units to the SUB and takes units x quantity-per from every
+     * direct child. Summed per SKU they equal {@link #stockDeltas}.
+     *
+     * @param reference ledger note saying what the change was
+     */
+    public static List<StockLedger.Movement> movements(BomGraph graph, Map<String, Integer> builds, String reference) {
+        List<StockLedger.Movement> movements = new ArrayList<>();
+        for (Map.Entry<String, Integer> build : builds.entrySet()) {
+            int id = graph.indexOf(build.getKey());
+            int units = build.getValue();
+            movements.add(new StockLedger.Movement(build.getKey(), units, StockLedger.Kind.BUILD, reference));
+            for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+                movements.add(new StockLedger.Movement(graph.sku(graph.childId(e)), -units * graph.childQty(e),
+                        StockLedger.Kind.CONSUME, reference));
+            }
+        }
+        return movements;
+    }
+
+    /**
+     * Writes the net deltas as one batch of conditional updates on an open
+     * transaction, then logs the movements as one ledger batch.
+     *
+     * @param deltas net stock change per SKU, from {@link #stockDeltas}
+     * @param movements the same change step by step, from {@link #movements}
+     * @throws InsufficientStockException if any update was refused
+     */
+    static void applyDeltas(Database.Handle db, Map<String, Integer> deltas, List<StockLedger.Movement> movements)
+            throws SQLException {
+        PreparedStatement update = db.prepare(APPLY_DELTA);
+        List<String> order = new ArrayList<>(deltas.size());
+        for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+            if (delta.getValue() == 0) {
+                continue;
+            }
+            update.setInt(1, delta.getValue());
+            update.setString(2, delta.getKey());
+            update.setInt(3, delta.getValue());
+            update.addBatch();
+            order.add(delta.getKey());
+        }
+        int[] counts = update.executeBatch();
+
+        List<String> shortSkus = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                shortSkus.add(order.get(i));
+            }
+        }
+        if (!shortSkus.isEmpty()) {
+            throw new InsufficientStockException(shortSkus);
+        }
+        StockLedger.record(db.connection(), movements);
+    }
+}
@@ -0,0 +1,117 @@
+package com.bushnell;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Panel listing, for every SUB assembly, how many units current stock can
+ * build through its whole BOM, building intermediate assemblies on the way,
+ * and the part that would run short first. The table sorts by any column and
+ * opens sorted by Max Buildable, so the assemblies that can't be built come
+ * first; it recalculates whenever stock changes.
+ */
+public class CapacityPanel extends JPanel {
+    private final DefaultTableModel tableModel;
+    private final JLabel summaryLabel;
+
+    // Latest in-flight calculation; a new one cancels the previous
+    private final AsyncQuery<List<Object[]>> calculation = new AsyncQuery<>("build capacity");
+
+    public CapacityPanel() {
+        setLayout(new BorderLayout(10, 10));
+
+        // Title label
+        JLabel title = new JLabel("Build Capacity", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        add(title, BorderLayout.NORTH);
+
+        tableModel = new DefaultTableModel(
+                new String[]{"SKU", "Description", "Stock", "Max Buildable", "Bottleneck", "Bottleneck Stock"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 2 || column == 3 || column == 5 ? Integer.class : String.class;
+            }
+        };
+        JTable resultTable = new JTable(tableModel);
+        resultTable.setAutoCreateRowSorter(true);
+        resultTable.getRowSorter().setSortKeys(
+                Collections.singletonList(new RowSorter.SortKey(3, SortOrder.ASCENDING)));
+        resultTable.getColumnModel().getColumn(1).setPreferredWidth(300);
+
+        // Red where not even one unit can be built
+        DefaultTableCellRenderer buildableRenderer = new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                if (!isSelected) {
+                    c.setBackground((Integer) value == 0 ? new Color(255, 102, 102) : new Color(204, 255, 204));
+                }
+                return c;
+            }
+        };
+        buildableRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        resultTable.getColumnModel().getColumn(3).setCellRenderer(buildableRenderer);
+        add(new JScrollPane(resultTable), BorderLayout.CENTER);
+
+        summaryLabel = new JLabel();
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> calculate());
+        JPanel btnPanel = new JPanel();
+        btnPanel.add(summaryLabel);
+        btnPanel.add(refreshBtn);
+        add(btnPanel, BorderLayout.SOUTH);
+
+        SkuCatalog.get().addListener(this::catalogChanged);
+        calculate();
+    }
+
+    // Any stock movement can change what is buildable
+    private void catalogChanged(Set<String> changed) {
+        calculate();
+    }
+
+    private void calculate() {
+        calculation.submit(CapacityPanel::capacity, this::showRows,
+                e -> showError("Failed to calculate build capacity", e));
+    }
+
+    private static List<Object[]> capacity() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (MrpService.Capacity line : MrpService.get().capacity()) {
+            rows.add(new Object[]{line.getSku(), line.getDescription(), line.getStock(), line.getMaxBuildable(),
+                line.getBottleneck(), line.getBottleneck() == null ? null : line.getBottleneckStock()});
+        }
+        return rows;
+    }
+
+    private void showRows(List<Object[]> rows) {
+        tableModel.setRowCount(0);
+        int blocked = 0;
+        for (Object[] row : rows) {
+            tableModel.addRow(row);
+            if ((Integer) row[3] == 0) {
+                blocked++;
+            }
+        }
+        summaryLabel.setText(rows.size() + " assemblies, " + blocked + " can't be built");
+    }
+
+    // Show error message dialog and print stack trace
+    private void showError(String msg, Exception e) {
+        e.printStackTrace();
+        Metrics.error(msg);
+        JOptionPane.showMessageDialog(this, msg + ":\n" + e.getMessage());
+    }
+}
@@ -0,0 +1,440 @@
+package com.bushnell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loads {@code parts.csv} and the indented {@code bom.txt} into the database.
+ *
+ * Both files are streamed line by line and written through batched upserts
+ * inside a single transaction, so a failed import leaves the database as it
+ * was. In the BOM file each line's parent is the nearest line above it with
+ * less indentation. A full import replaces the {@code bom} table; a delta
+ * import only writes rows whose values changed and removes BOM rows that are
+ * no longer in the file. Parts are never deleted. Stock that the import
+ * changed is logged to the {@link StockLedger} as adjustments.
+ */
+public final class CatalogImporter {
+    private static final Metrics.Timer RUN = Metrics.timer("op import");
+    private static final int BATCH_SIZE = 5_000;
+
+    // ID, indentation, PART, QTY, optional S, DESCRIPTION; PART and DESCRIPTION may contain single spaces
+    private static final Pattern BOM_LINE =
+        Pattern.compile("^(\\S+)( +)(\\S.*?) {2,}(\\d+)(?: +(S))? {2,}(.*?)\\s*$");
+
+    private static final String UPSERT_PART =
+        "INSERT INTO part (sku, description, price, stock) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT(sku) DO UPDATE SET description = excluded.description, "
+            + "price = excluded.price, stock = excluded.stock";
+    private static final String PART_CHANGED =
+        " WHERE part.description IS NOT excluded.description OR part.price IS NOT excluded.price "
+            + "OR part.stock IS NOT excluded.stock";
+    private static final String UPSERT_BOM =
+        "INSERT INTO bom (bom_id, sku, parent_sku, quantity, serialized) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT(bom_id) DO UPDATE SET sku = excluded.sku, parent_sku = excluded.parent_sku, "
+            + "quantity = excluded.quantity, serialized = excluded.serialized";
+    private static final String BOM_CHANGED =
+        " WHERE bom.sku IS NOT excluded.sku OR bom.parent_sku IS NOT excluded.parent_sku "
+            + "OR bom.quantity IS NOT excluded.quantity OR bom.serialized IS NOT excluded.serialized";
+
+    private final Connection conn;
+    private boolean delta;
+
+    /**
+     * Counts from one import.
+     */
+    public static final class Summary {
+        private int partsRead;
+        private int partsWritten;
+        private int bomRead;
+        private int bomWritten;
+        private int bomDeleted;
+        private final List<String> warnings = new ArrayList<>();
+
+        public int getPartsRead() {
+            return partsRead;
+        }
+
+        /** @return parts inserted or changed; in a full import, every part read */
+        public int getPartsWritten() {
+            return partsWritten;
+        }
+
+        public int getBomRead() {
+            return bomRead;
+        }
+
+        /** @return BOM rows inserted or changed */
+        public int getBomWritten() {
+            return bomWritten;
+        }
+
+        /** @return BOM rows removed because the file no longer has them */
+        public int getBomDeleted() {
+            return bomDeleted;
+        }
+
+        /** @return problems that didn't stop the import, such as BOM parts missing from the catalog */
+        public List<String> getWarnings() {
+            return warnings;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("parts: %d read, %d written; bom: %d read, %d written, %d deleted; %d warnings",
+                    partsRead, partsWritten, bomRead, bomWritten, bomDeleted, warnings.size());
+        }
+    }
+
+    /**
+     * @param conn connection to import into; its auto-commit setting is restored afterwards
+     */
+    public CatalogImporter(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Selects delta mode: only changed rows are written and BOM rows missing
+     * from the file are deleted, instead of replacing the BOM outright.
+     */
+    public CatalogImporter setDelta(boolean delta) {
+        this.delta = delta;
+        return this;
+    }
+
+    /**
+     * Imports either or both files in one transaction.
+     *
+     * @param partsCsv {@code sku,description,price,stock} file, or null to skip
+     * @param bomTxt indented BOM listing, or null to skip
+     * @return what was read and written
+     * @throws IOException if a file can't be read or a line can't be parsed
+     * @throws SQLException if the database rejects the import; nothing is kept
+     */
+    public Summary run(Path partsCsv, Path bomTxt) throws IOException, SQLException {
+        try (BufferedReader parts = partsCsv == null ? null : Files.newBufferedReader(partsCsv, StandardCharsets.UTF_8);
+             BufferedReader bom = bomTxt == null ? null : Files.newBufferedReader(bomTxt, StandardCharsets.UTF_8)) {
+            return run(parts, partsCsv == null ? null : partsCsv.getFileName().toString(),
+                    bom, bomTxt == null ? null : bomTxt.getFileName().toString());
+        }
+    }
+
+    /**
+     * Imports either or both files from open readers, such as standard input,
+     * in one transaction. The readers are not closed.
+     *
+     * @param partsName what to call the parts file in messages and the ledger
+     * @param bomName what to call the BOM file in messages
+     * @see #run(Path, Path)
+     */
+    public Summary run(BufferedReader partsCsv, String partsName, BufferedReader bomTxt, String bomName)
+            throws IOException, SQLException {
+        long start = System.nanoTime();
+        try {
+            Summary summary = new Summary();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (partsCsv != null) {
+                    importParts(partsCsv, partsName, summary);
+                    // Imported stock counts go into the ledger as adjustments
+                    StockLedger.reconcile(conn, "import " + partsName);
+                }
+                if (bomTxt != null) {
+                    importBom(bomTxt, bomName, summary);
+                }
+                conn.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return summary;
+        } finally {
+            RUN.stop(start);
+        }
+    }
+
+    private void importParts(BufferedReader reader, String name, Summary summary)
+            throws IOException, SQLException {
+        try (PreparedStatement upsert = conn.prepareStatement(delta ? UPSERT_PART + PART_CHANGED : UPSERT_PART)) {
+            String line;
+            int lineNumber = 0;
+            int pending = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || (lineNumber == 1 && line.startsWith("sku,"))) {
+                    continue;
+                }
+                // sku,description,price,stock; the description may itself contain commas
+                int first = line.indexOf(',');
+                int last = line.lastIndexOf(',');
+                int middle = last > first ? line.lastIndexOf(',', last - 1) : -1;
+                if (first < 0 || middle <= first) {
+                    throw new IOException(name + " line " + lineNumber + ": expected 4 columns");
+                }
+                try {
+                    upsert.setString(1, line.substring(0, first).trim());
+                    upsert.setString(2, line.substring(first + 1, middle).trim());
+                    upsert.setDouble(3, Double.parseDouble(line.substring(middle + 1, last).trim()));
+                    upsert.setInt(4, Integer.parseInt(line.substring(last + 1).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException(name + " line " + lineNumber + ": " + e.getMessage());
+                }
+                upsert.addBatch();
+                summary.partsRead++;
+                if (++pending == BATCH_SIZE) {
+                    summary.partsWritten += written(upsert.executeBatch());
+                    pending = 0;
+                }
+            }
+            summary.partsWritten += written(upsert.executeBatch());
+        }
+    }
+
+    private void importBom(BufferedReader reader, String name, Summary summary)
+            throws IOException, SQLException {
+        Catalog catalog = new Catalog(conn);
+        try (Statement stmt = conn.createStatement()) {
+            if (delta) {
+                stmt.execute("CREATE TEMP TABLE IF NOT EXISTS import_bom_id (bom_id TEXT PRIMARY KEY)");
+                stmt.execute("DELETE FROM import_bom_id");
+            } else {
+                stmt.execute("DELETE FROM bom");
+            }
+        }
+
+        try (PreparedStatement upsert = conn.prepareStatement(delta ? UPSERT_BOM + BOM_CHANGED : UPSERT_BOM);
+             PreparedStatement seen = delta ? conn.prepareStatement("INSERT INTO import_bom_id VALUES (?)") : null) {
+            Deque<Integer> indents = new ArrayDeque<>(); // indentation of each open ancestor
+            Deque<String> parents = new ArrayDeque<>(); // SKU of each open ancestor, same order
+            String line;
+            int lineNumber = 0;
+            int pending = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("ID ")) {
+                    continue; // blank or header line
+                }
+                Matcher m = BOM_LINE.matcher(line);
+                if (!m.matches()) {
+                    throw new IOException(name + " line " + lineNumber + ": can't parse '" + line + "'");
+                }
+                String id = m.group(1).replaceFirst("^0+(?=.)", "");
+                int indent = m.group(1).length() + m.group(2).length();
+                String sku = catalog.resolve(m.group(3), m.group(6), summary.warnings);
+
+                // Close every ancestor at this depth or deeper; what's left on top is the parent
+                while (!indents.isEmpty() && indents.peek() >= indent) {
+                    indents.pop();
+                    parents.pop();
+                }
+                upsert.setString(1, id);
+                upsert.setString(2, sku);
+                upsert.setString(3, parents.peek());
+                upsert.setInt(4, Integer.parseInt(m.group(4)));
+                upsert.setInt(5, m.group(5) != null ? 1 : 0);
+                upsert.addBatch();
+                if (delta) {
+                    seen.setString(1, id);
+                    seen.addBatch();
+                }
+                indents.push(indent);
+                parents.push(sku);
+
+                summary.bomRead++;
+                if (++pending == BATCH_SIZE) {
+                    summary.bomWritten += written(upsert.executeBatch());
+                    if (delta) {
+                        seen.executeBatch();
+                    }
+                    pending = 0;
+                }
+            }
+            summary.bomWritten += written(upsert.executeBatch());
+            if (delta) {
+                seen.executeBatch();
+            }
+        }
+
+        if (delta) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM bom WHERE bom_id NOT IN (SELECT bom_id FROM import_bom_id)");
+                // The driver's update count includes rows the bom_revision triggers touch
+                try (ResultSet rs = stmt.executeQuery("SELECT changes()")) {
+                    summary.bomDeleted = rs.next() ? rs.getInt(1) : 0;
+                }
+                stmt.execute("DROP TABLE import_bom_id");
+            }
+        }
+    }
+
+    // Rows actually changed by a batch; an upsert whose WHERE is false counts 0
+    private static int written(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Maps BOM listing part names onto catalog SKUs.
+     *
+     * The listing writes variants as {@code "PCA-110-V01, Serialized"} where the
+     * catalog has {@code "PCA-110-V01 Serialized"}, and names some parts only
+     * by their base number when the catalog splits them into
+     * {@code "CMP-10062-V01 (o-ring)"} style variants; those are told apart by
+     * description.
+     */
+    private static final class Catalog {
+        private final Set<String> skus = new HashSet<>();
+        private final Map<String, List<String[]>> variants = new HashMap<>();
+
+        Catalog(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT sku, description FROM part")) {
+                while (rs.next()) {
+                    String sku = rs.getString(1);
+                    skus.add(sku);
+                    int paren = sku.indexOf(" (");
+                    if (paren > 0) {
+                        variants.computeIfAbsent(sku.substring(0, paren), k -> new ArrayList<>())
+                                .add(new String[]{sku, rs.getString(2)});
+                    }
+                }
+            }
+        }
+
+        String resolve(String part, String description, List<String> warnings) {
+            String sku = part.replace(", ", " ").trim();
+            if (skus.contains(sku)) {
+                return sku;
+            }
+            List<String[]> candidates = variants.get(sku);
+            if (candidates != null) {
+                for (String[] candidate : candidates) {
+                    if (candidate[1] != null && candidate[1].trim().equalsIgnoreCase(description.trim())) {
+                        return candidate[0];
+                    }
+                }
+            }
+            warnings.add("BOM part '" + part + "' (" + description + ") is not in the catalog");
+            return sku;
+        }
+    }
+
+    /**
+     * Command line entry point, importing into the application database
+     * ({@code mrp.db} property):
+     *
+     * <pre>
+     * CatalogImporter [--delta] &lt;parts.csv|-&gt; &lt;bom.txt|-&gt;
+     * CatalogImporter [--delta] --no-parts &lt;bom.txt|-&gt;
+     * CatalogImporter [--delta] --no-bom &lt;parts.csv|-&gt;
+     * </pre>
+     *
+     * A file named {@code -} is read from standard input, as {@code mrp batch}
+     * reads its order book; only one of the two can be. {@code --no-parts} and
+     * {@code --no-bom} leave that file out of the import.
+     */
+    public static void main(String[] args) throws Exception {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the command line import, reporting to {@code out} and {@code err}.
+     *
+     * @return 0 on success, 2 for a usage error
+     * @throws Exception if the import fails
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws Exception {
+        return run(args, System.in, out, err);
+    }
+
+    /**
+     * Runs the command line import, reading {@code -} from {@code in}.
+     *
+     * @return 0 on success, 2 for a usage error
+     * @throws Exception if the import fails
+     */
+    static int run(String[] args, InputStream in, PrintStream out, PrintStream err) throws Exception {
+        List<String> files = new ArrayList<>(Arrays.asList(args));
+        boolean delta = files.remove("--delta");
+        boolean noParts = files.remove("--no-parts");
+        boolean noBom = files.remove("--no-bom");
+        int expected = (noParts ? 0 : 1) + (noBom ? 0 : 1);
+        if (expected == 0 || files.size() != expected || Collections.frequency(files, "-") > 1
+                || files.stream().anyMatch(file -> file.startsWith("--"))) {
+            err.println("usage: CatalogImporter [--delta] <parts.csv|-> <bom.txt|->");
+            err.println("       CatalogImporter [--delta] --no-parts <bom.txt|->");
+            err.println("       CatalogImporter [--delta] --no-bom <parts.csv|->");
+            return 2;
+        }
+        String parts = noParts ? null : files.get(0);
+        String bom = noBom ? null : files.get(files.size() - 1);
+
+        long start = System.nanoTime();
+        try (Database.Handle db = Database.get().open();
+             BufferedReader partsReader = open(parts, in);
+             BufferedReader bomReader = open(bom, in)) {
+            Summary summary = new CatalogImporter(db.connection()).setDelta(delta)
+                    .run(partsReader, name(parts), bomReader, name(bom));
+            for (String warning : summary.getWarnings()) {
+                err.println("warning: " + warning);
+            }
+            out.printf("%s in %d ms%n", summary, (System.nanoTime() - start) / 1_000_000);
+        }
+        return 0;
+    }
+
+    // Opens a command line file; standard input is left open for the caller
+    private static BufferedReader open(String file, InputStream in) throws IOException {
+        if (file == null) {
+            return null;
+        }
+        if (file.equals("-")) {
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() {
+                }
+            };
+        }
+        return Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+    }
+
+    private static String name(String file) {
+        if (file == null) {
+            return null;
+        }
+        return file.equals("-") ? "stdin" : Paths.get(file).getFileName().toString();
+    }
+}
@@ -0,0 +1,232 @@
+package com.bushnell;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the SQLite database used by every panel.
+ *
+ * Connections are opened once, tuned with the pragmas below, and kept in a
+ * small pool; the first one also brings the schema up to date with
+ * {@link SchemaMigrator}. Each pooled connection caches its prepared
+ * statements by SQL text, so repeated queries are parsed only once, and
+ * every statement is timed in {@link Metrics}. The database file defaults to
+ * {@code VR-Factory.db} in the working directory and can be overridden with
+ * the {@code mrp.db} system property.
+ *
+ * One more connection, outside the pool, only ever reads
+ * {@code PRAGMA data_version}, which changes whenever any other connection
+ * in this process or another commits. {@link SkuCatalog} checks it before
+ * serving cached rows, so other operators' writes are not missed.
+ */
+public final class Database {
+    private static final int POOL_SIZE = 4;
+    private static final long BORROW_TIMEOUT_SECONDS = 10;
+    private static final String[] PRAGMAS = {
+        "PRAGMA journal_mode = WAL",       // readers don't block the writer
+        "PRAGMA synchronous = NORMAL",     // safe with WAL, far fewer fsyncs
+        "PRAGMA busy_timeout = 5000",      // wait for other writers instead of failing
+        "PRAGMA cache_size = -16000",      // 16 MB page cache per connection
+        "PRAGMA temp_store = MEMORY"
+    };
+
+    private static Database instance;
+
+    private final String path;
+    private final String url;
+    private final BlockingQueue<Handle> idle = new ArrayBlockingQueue<>(POOL_SIZE);
+    private int created;
+    private boolean migrated;
+    private Connection watcher;
+
+    private Database(String path) {
+        this.path = path;
+        this.url = "jdbc:sqlite:" + path;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+    }
+
+    /**
+     * @return the application database, created on first use
+     */
+    public static synchronized Database get() {
+        if (instance == null) {
+            String file = System.getProperty("mrp.db", "VR-Factory.db");
+            instance = new Database(Paths.get(file).toAbsolutePath().toString());
+        }
+        return instance;
+    }
+
+    /** @return absolute path of the database file */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Borrows a connection from the pool. Close the handle to give it back.
+     *
+     * @return a pooled connection
+     * @throws SQLException if a connection can't be opened or none frees up in time
+     */
+    public Handle open() throws SQLException {
+        Handle handle = idle.poll();
+        if (handle != null) {
+            return handle;
+        }
+        synchronized (this) {
+            if (created < POOL_SIZE) {
+                created++;
+                try {
+                    return new Handle(connect());
+                } catch (SQLException e) {
+                    created--;
+                    throw e;
+                }
+            }
+        }
+        try {
+            handle = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (handle == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+        return handle;
+    }
+
+    /**
+     * Returns a number that changes whenever a commit is made through any
+     * connection other than the watcher, pooled or in another process. Only
+     * equality is meaningful. Cheap enough to call before every cache read.
+     */
+    public synchronized long dataVersion() throws SQLException {
+        if (watcher == null) {
+            watcher = Metrics.wrap(DriverManager.getConnection(url));
+        }
+        try (Statement stmt = watcher.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Called with the monitor held, so the schema is migrated exactly once
+    private Connection connect() throws SQLException {
+        Properties props = new Properties();
+        // Transactions take the write lock up front, so concurrent writers queue on
+        // busy_timeout instead of failing when a read lock can't be upgraded
+        props.setProperty("transaction_mode", "IMMEDIATE");
+        Connection conn = Metrics.wrap(DriverManager.getConnection(url, props)); // times every statement
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : PRAGMAS) {
+                stmt.execute(pragma);
+            }
+            if (!migrated) {
+                SchemaMigrator.migrate(conn);
+                migrated = true;
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private void release(Handle handle) {
+        try {
+            if (!handle.conn.getAutoCommit()) {
+                handle.conn.rollback(); // never hand out a connection mid-transaction
+                handle.conn.setAutoCommit(true);
+            }
+            if (!handle.conn.isClosed() && idle.offer(handle)) {
+                return;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        handle.discard();
+        synchronized (this) {
+            created--;
+        }
+    }
+
+    /** Closes every idle connection and the data version watcher. */
+    public void shutdown() {
+        Handle handle;
+        while ((handle = idle.poll()) != null) {
+            handle.discard();
+        }
+        synchronized (this) {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+                watcher = null;
+            }
+        }
+    }
+
+    /**
+     * A borrowed connection plus its statement cache.
+     * Statements returned by {@link #prepare(String)} belong to the cache and
+     * must not be closed by the caller; their result sets should be.
+     */
+    public final class Handle implements AutoCloseable {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private Handle(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Connection connection() {
+            return conn;
+        }
+
+        /**
+         * Returns a cached statement for {@code sql}, preparing it on first use.
+         * Parameters from the previous use are cleared.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null || stmt.isClosed()) {
+                stmt = conn.prepareStatement(sql);
+                statements.put(sql, stmt);
+            } else {
+                stmt.clearParameters();
+                stmt.clearBatch();
+            }
+            return stmt;
+        }
+
+        /** Returns the connection to the pool, rolling back any open transaction. */
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        private void discard() {
+            try {
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.close();
+                }
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
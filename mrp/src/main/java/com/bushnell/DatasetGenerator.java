@@ -0,0 +1,307 @@
+package com.bushnell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes seeded synthetic {@code part} and {@code bom} tables at any scale.
+ *
+ * A tenth of the SKUs (by default) are SUB assemblies spread over
+ * {@code depth} levels, growing roughly geometrically towards the bottom; the
+ * rest are raw parts. Every SUB gets {@code fanOut} children from the level
+ * below, or raw parts on the bottom level. With probability
+ * {@code sharedRatio} a child is an assembly some other parent already uses,
+ * which turns the tree into the DAG shape real BOMs have. The same seed and
+ * settings always produce the same database.
+ *
+ * Rows go in through batched prepared statements in one transaction with
+ * journaling and syncing switched off, so a million parts take seconds. The
+ * indexes from {@link SchemaMigrator} are built afterwards, in one pass.
+ */
+public final class DatasetGenerator {
+
+    /** How stock levels are drawn. */
+    public enum StockDistribution {
+        /** Nothing in stock; every demand is a shortage. */
+        ZERO,
+        /** Evenly spread between 0 and the maximum. */
+        UNIFORM,
+        /** Most SKUs at or near zero, a few with lots. */
+        SKEWED,
+        /** Every SKU at the maximum, so builds don't run short. */
+        FULL
+    }
+
+    private static final String[] BULK_PRAGMAS = {
+        "PRAGMA journal_mode = OFF",
+        "PRAGMA synchronous = OFF",
+        "PRAGMA locking_mode = EXCLUSIVE",
+        "PRAGMA temp_store = MEMORY",
+        "PRAGMA cache_size = -65536"
+    };
+    private static final int BATCH_SIZE = 10_000;
+
+    // Share of a non-bottom SUB's children that are raw parts (screws, cables...)
+    private static final double RAW_CHILD_RATIO = 0.25;
+
+    private int parts = 100_000;
+    private int depth = 5;
+    private int fanOut = 5;
+    private double subRatio = 0.1;
+    private double sharedRatio = 0.2;
+    private StockDistribution stock = StockDistribution.UNIFORM;
+    private int maxStock = 1000;
+    private long seed = 42;
+
+    /** Total number of SKUs, SUBs and raw parts together. */
+    public DatasetGenerator parts(int parts) {
+        this.parts = parts;
+        return this;
+    }
+
+    /** Number of SUB levels above the raw parts. */
+    public DatasetGenerator depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /** Children per SUB. */
+    public DatasetGenerator fanOut(int fanOut) {
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /** Share of SKUs that are SUB assemblies. */
+    public DatasetGenerator subRatio(double subRatio) {
+        this.subRatio = subRatio;
+        return this;
+    }
+
+    /** Chance that a child assembly is shared with another parent. */
+    public DatasetGenerator sharedRatio(double sharedRatio) {
+        this.sharedRatio = sharedRatio;
+        return this;
+    }
+
+    public DatasetGenerator stock(StockDistribution stock, int maxStock) {
+        this.stock = stock;
+        this.maxStock = maxStock;
+        return this;
+    }
+
+    public DatasetGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @return SKU of the top assembly, the first SUB on level 0
+     */
+    public static String rootSku() {
+        return subSku(0);
+    }
+
+    /**
+     * Creates a new database file holding the generated tables.
+     *
+     * @param file database to create; must not exist yet
+     * @throws IOException if the file already exists
+     */
+    public void write(File file) throws IOException, SQLException {
+        if (file.exists()) {
+            throw new IOException(file + " already exists");
+        }
+        if (depth < 1 || fanOut < 1 || parts < depth + fanOut) {
+            throw new IllegalArgumentException("Need depth >= 1, fanOut >= 1 and parts >= depth + fanOut");
+        }
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath())) {
+            try (Statement stmt = conn.createStatement()) {
+                for (String pragma : BULK_PRAGMAS) {
+                    stmt.execute(pragma);
+                }
+                for (String ddl : SchemaMigrator.SCHEMA) {
+                    stmt.execute(ddl);
+                }
+            }
+            conn.setAutoCommit(false);
+            generate(conn);
+            conn.commit();
+            conn.setAutoCommit(true);
+            SchemaMigrator.migrate(conn); // indexes are cheaper to build once the rows are in
+        }
+    }
+
+    private void generate(Connection conn) throws SQLException {
+        Random random = new Random(seed);
+        int subs = Math.max(depth, Math.min(parts - fanOut, (int) Math.round(parts * subRatio)));
+        int raws = parts - subs;
+
+        // Level l holds SUBs levelStart[l] until levelStart[l + 1]; sizes grow by about fanOut per level
+        int[] levelStart = new int[depth + 1];
+        double growth = Math.max(1.0, fanOut * (1 - sharedRatio));
+        double weight = 0;
+        for (int l = 0; l < depth; l++) {
+            weight += Math.pow(growth, l);
+        }
+        for (int l = 0; l < depth; l++) {
+            int left = subs - levelStart[l];
+            int size = l == depth - 1 ? left
+                    : Math.max(1, Math.min(left - (depth - 1 - l), (int) (subs * Math.pow(growth, l) / weight)));
+            levelStart[l + 1] = levelStart[l] + size;
+        }
+
+        try (PreparedStatement part = conn.prepareStatement("INSERT INTO part (sku, description, price, stock) VALUES (?, ?, ?, ?)");
+             PreparedStatement bom = conn.prepareStatement("INSERT INTO bom VALUES (?, ?, ?, ?, ?)")) {
+            int pending = 0;
+            for (int i = 0; i < subs; i++) {
+                addPart(part, subSku(i), "Synthetic assembly " + i, random);
+                if (++pending % BATCH_SIZE == 0) {
+                    part.executeBatch();
+                }
+            }
+            for (int i = 0; i < raws; i++) {
+                addPart(part, rawSku(i), "Synthetic part " + i, random);
+                if (++pending % BATCH_SIZE == 0) {
+                    part.executeBatch();
+                }
+            }
+            part.executeBatch();
+
+            long edge = 0;
+            int rawCursor = 0;
+            Set<String> children = new HashSet<>();
+            for (int l = 0; l < depth; l++) {
+                int nextStart = levelStart[l + 1];
+                int nextEnd = l + 1 < depth ? levelStart[l + 2] : nextStart;
+                int subCursor = nextStart;
+                for (int parent = levelStart[l]; parent < levelStart[l + 1]; parent++) {
+                    children.clear();
+                    for (int c = 0; c < fanOut; c++) {
+                        String child;
+                        if (l == depth - 1 || random.nextDouble() < RAW_CHILD_RATIO) {
+                            // Raw parts: mostly walk the catalog so each is used, sometimes reuse one
+                            child = rawSku(random.nextDouble() < sharedRatio || rawCursor >= raws
+                                    ? random.nextInt(raws) : rawCursor++);
+                        } else if (subCursor < nextEnd && random.nextDouble() >= sharedRatio) {
+                            child = subSku(subCursor++);
+                        } else {
+                            child = subSku(nextStart + random.nextInt(nextEnd - nextStart));
+                        }
+                        if (!children.add(child)) {
+                            continue; // same child twice under one parent
+                        }
+                        bom.setString(1, Long.toString(++edge));
+                        bom.setString(2, child);
+                        bom.setString(3, subSku(parent));
+                        bom.setInt(4, 1 + random.nextInt(4));
+                        bom.setInt(5, random.nextInt(10) == 0 ? 1 : 0);
+                        bom.addBatch();
+                        if (edge % BATCH_SIZE == 0) {
+                            bom.executeBatch();
+                        }
+                    }
+                }
+            }
+            bom.executeBatch();
+        }
+    }
+
+    private void addPart(PreparedStatement part, String sku, String description, Random random) throws SQLException {
+        part.setString(1, sku);
+        part.setString(2, description);
+        part.setDouble(3, random.nextInt(100_000) / 100.0);
+        part.setInt(4, drawStock(random));
+        part.addBatch();
+    }
+
+    private int drawStock(Random random) {
+        switch (stock) {
+            case ZERO:
+                return 0;
+            case SKEWED:
+                double r = random.nextDouble();
+                return (int) (maxStock * r * r * r);
+            case FULL:
+                return maxStock;
+            default:
+                return random.nextInt(maxStock + 1);
+        }
+    }
+
+    private static String subSku(int n) {
+        return String.format(Locale.ROOT, "SUB-%07d", n);
+    }
+
+    private static String rawSku(int n) {
+        return String.format(Locale.ROOT, "RAW-%07d", n);
+    }
+
+    /**
+     * Command line entry point:
+     * {@code DatasetGenerator <file> [--parts N] [--depth N] [--fan-out N] [--subs R]
+     * [--shared R] [--stock zero|uniform|skewed|full] [--max-stock N] [--seed N]}.
+     */
+    public static void main(String[] args) throws Exception {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the command line generator, reporting to {@code out} and {@code err}.
+     *
+     * @return 0 on success, 2 for a usage error
+     * @throws Exception if an option value is malformed or writing fails
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws Exception {
+        if (args.length == 0) {
+            return usage(err, null);
+        }
+        DatasetGenerator generator = new DatasetGenerator();
+        int maxStock = 1000;
+        StockDistribution distribution = StockDistribution.UNIFORM;
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                return usage(err, args[i] + " needs a value");
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--parts": generator.parts(Integer.parseInt(value)); break;
+                case "--depth": generator.depth(Integer.parseInt(value)); break;
+                case "--fan-out": generator.fanOut(Integer.parseInt(value)); break;
+                case "--subs": generator.subRatio(Double.parseDouble(value)); break;
+                case "--shared": generator.sharedRatio(Double.parseDouble(value)); break;
+                case "--stock": distribution = StockDistribution.valueOf(value.toUpperCase(Locale.ROOT)); break;
+                case "--max-stock": maxStock = Integer.parseInt(value); break;
+                case "--seed": generator.seed(Long.parseLong(value)); break;
+                default: return usage(err, "unknown option " + args[i]);
+            }
+        }
+        generator.stock(distribution, maxStock);
+
+        long start = System.nanoTime();
+        generator.write(new File(args[0]));
+        out.printf("Wrote %s in %d ms%n", args[0], (System.nanoTime() - start) / 1_000_000);
+        return 0;
+    }
+
+    private static int usage(PrintStream err, String problem) {
+        if (problem != null) {
+            err.println("DatasetGenerator: " + problem);
+        }
+        err.println("usage: DatasetGenerator <file> [--parts N] [--depth N] [--fan-out N] [--subs R] "
+                + "[--shared R] [--stock zero|uniform|skewed|full] [--max-stock N] [--seed N]");
+        return 2;
+    }
+}
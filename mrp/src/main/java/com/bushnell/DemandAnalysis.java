@@ -9,13 +9,11 @@ import java.awt.event.ActionEvent;
 import java.io.FileOutputStream;
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.sql.SQLException;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.Chunk;
@@ -24,14 +22,19 @@ import com.itextpdf.text.pdf.PdfPTable;
 
 public class DemandAnalysis extends JPanel {
     // UI components and table model
+    private SkuSearchBox skuSearch;
     private JComboBox<String> skuComboBox;
     private JLabel descLabel;
     private JSpinner spinner;
     private JTable resultTable;
     private DefaultTableModel tableModel;
 
-    // Path to SQLite database
-    private final String DB_PATH = "jdbc:sqlite:VR-Factory.db";
+    // Latest in-flight explosion; a new one cancels the previous
+    private final AsyncQuery<List<Object[]>> analysis = new AsyncQuery<>("demand explode");
+
+    // Spinner changes within this window collapse into a single recalculation
+    private static final int DEBOUNCE_MS = 150;
+    private final Timer debounce = new Timer(DEBOUNCE_MS, e -> runAnalysis());
 
     public DemandAnalysis() {
         // Layout configuration
@@ -45,14 +48,15 @@ public class DemandAnalysis extends JPanel {
         // Input panel: SKU dropdown, description, quantity spinner
         JPanel inputPanel = new JPanel();
         inputPanel.setLayout(new BoxLayout(inputPanel, BoxLayout.Y_AXIS));
-        skuComboBox = new JComboBox<>();
+        skuSearch = new SkuSearchBox();
+        skuComboBox = skuSearch.getComboBox();
         descLabel = new JLabel();
         spinner = new JSpinner(new SpinnerNumberModel(1, 1, 9999, 1));
 
         // SKU row
         JPanel skuRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
         skuRow.add(new JLabel("SKU:"));
-        skuRow.add(skuComboBox);
+        skuRow.add(skuSearch);
         inputPanel.add(skuRow);
 
         // Description row
@@ -106,122 +110,83 @@ public class DemandAnalysis extends JPanel {
         // Export button
         JButton exportBtn = new JButton("Export PDF");
         exportBtn.addActionListener(e -> exportPDF());
+        JButton bomBtn = new JButton("Export BOM...");
+        bomBtn.addActionListener(e -> exportBOM());
         JPanel btnPanel = new JPanel();
         btnPanel.add(exportBtn);
+        btnPanel.add(bomBtn);
         add(btnPanel, BorderLayout.SOUTH);
 
-        // Populate SKU list and hook up events
+        // Populate SKU list in the background; events are hooked up once it arrives
+        debounce.setRepeats(false);
         loadSubSKUs();
-        skuComboBox.addActionListener(e -> {
-            spinner.setValue(1);
-            runAnalysis();
-        });
-        spinner.addChangeListener(e -> runAnalysis());
     }
 
     // Trigger analysis when SKU or quantity changes
     private void runAnalysis() {
+        debounce.stop();
         if (skuComboBox.getSelectedItem() == null || spinner.getValue() == null) return;
         calculateNeeds();
     }
 
-    // Load SUB SKUs from the database into the dropdown
+    // Load the SUB SKU search index from the shared catalog into the dropdown
     private void loadSubSKUs() {
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             PreparedStatement stmt = conn.prepareStatement("SELECT sku FROM part WHERE sku LIKE 'SUB-%'")) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                skuComboBox.addItem(rs.getString("sku"));
-            }
-        } catch (SQLException e) {
-            showError("Failed to load SUB SKUs", e);
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(true), index -> {
+            skuSearch.setIndex(index);
+            skuComboBox.addActionListener(e -> {
+                debounce.stop();
+                spinner.setValue(1);
+                runAnalysis();
+            });
+            spinner.addChangeListener(e -> debounce.restart());
+            SkuCatalog.get().addListener(this::catalogChanged);
+        }, e -> showError("Failed to load SUB SKUs", e));
+    }
+
+    // Keep the dropdown in step with the catalog and re-net the shown result against the new stock
+    private void catalogChanged(Set<String> changed) {
+        // Stock-only changes hand back the same index, which setIndex ignores
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(true), skuSearch::setIndex,
+                e -> showError("Failed to reload SUB SKUs", e));
+        if (tableModel.getRowCount() > 0) {
+            debounce.restart(); // any stock in the sub-graph can move the result; explosion is in-memory
         }
     }
 
-    // Calculate what components and quantities are needed
+    // Calculate what components and quantities are needed, off the EDT
     private void calculateNeeds() {
-        tableModel.setRowCount(0);
         String sku = (String) skuComboBox.getSelectedItem();
         int quantity = (Integer) spinner.getValue();
+        analysis.submit(() -> explode(sku, quantity), this::showRows,
+                e -> showError("Failed to calculate needs", e));
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_PATH)) {
-            // Get description and current stock of selected SKU
-            PreparedStatement stmt = conn.prepareStatement("SELECT description, stock FROM part WHERE sku = ?");
-            stmt.setString(1, sku);
-            ResultSet rs = stmt.executeQuery();
-            int availableStock = 0;
-            String desc = "";
-            if (rs.next()) {
-                desc = rs.getString("description");
-                availableStock = rs.getInt("stock");
-            }
-            descLabel.setText(desc);
-
-            int missingQty = quantity - availableStock;
-            Map<String, Integer> needed = new HashMap<>();
-
-            // If we don't have enough, figure out what's needed
-            if (missingQty > 0) {
-                getRawComponents(conn, sku, missingQty, needed);
-            }
+    // Builds the result rows: the top-level SKU first, then every raw component
+    private List<Object[]> explode(String sku, int quantity) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        for (MrpService.Requirement line : MrpService.get().explode(sku, quantity)) {
+            rows.add(new Object[]{line.getSku(), line.getNeed(), line.getStock(), line.getDescription()});
+        }
+        return rows;
+    }
 
-            // Add top-level SKU to the table
-            tableModel.addRow(new Object[]{sku, Math.max(missingQty, 0), availableStock, desc});
-
-            // Add all required raw components
-            for (String rawSku : needed.keySet()) {
-                PreparedStatement rawStmt = conn.prepareStatement("SELECT description, stock FROM part WHERE sku = ?");
-                rawStmt.setString(1, rawSku);
-                ResultSet rawRs = rawStmt.executeQuery();
-                String rawDesc = "";
-                int rawStock = 0;
-                if (rawRs.next()) {
-                    rawDesc = rawRs.getString("description");
-                    rawStock = rawRs.getInt("stock");
+    // Update the table in place: only cells whose value changed fire events
+    private void showRows(List<Object[]> rows) {
+        descLabel.setText((String) rows.get(0)[3]);
+        int common = Math.min(rows.size(), tableModel.getRowCount());
+        for (int r = 0; r < common; r++) {
+            Object[] row = rows.get(r);
+            for (int c = 0; c < row.length; c++) {
+                if (!Objects.equals(row[c], tableModel.getValueAt(r, c))) {
+                    tableModel.setValueAt(row[c], r, c);
                 }
-                tableModel.addRow(new Object[]{rawSku, needed.get(rawSku), rawStock, rawDesc});
             }
-
-        } catch (SQLException e) {
-            showError("Failed to calculate needs", e);
         }
-    }
-
-    // Recursive method to calculate what raw parts are needed to build a given SKU
-    private void getRawComponents(Connection conn, String sku, int qty, Map<String, Integer> result) throws SQLException {
-        if (qty <= 0) return;
-
-        // Check if this part is raw (has no children)
-        PreparedStatement rawCheck = conn.prepareStatement("SELECT COUNT(*) FROM bom WHERE parent_sku = ?");
-        rawCheck.setString(1, sku);
-        ResultSet rawResult = rawCheck.executeQuery();
-        boolean isRaw = rawResult.next() && rawResult.getInt(1) == 0;
-
-        if (isRaw) {
-            result.put(sku, result.getOrDefault(sku, 0) + qty);
-            return;
+        while (tableModel.getRowCount() > rows.size()) {
+            tableModel.removeRow(tableModel.getRowCount() - 1);
         }
-
-        // Check stock for this component
-        PreparedStatement stockStmt = conn.prepareStatement("SELECT stock FROM part WHERE sku = ?");
-        stockStmt.setString(1, sku);
-        ResultSet stockRs = stockStmt.executeQuery();
-        int available = 0;
-        if (stockRs.next()) available = stockRs.getInt("stock");
-
-        if (available >= qty) return; // we already have enough
-
-        int toBuild = qty - available;
-
-        // For each child component, calculate its need recursively
-        PreparedStatement bomStmt = conn.prepareStatement("SELECT sku, quantity FROM bom WHERE parent_sku = ?");
-        bomStmt.setString(1, sku);
-        ResultSet bomRs = bomStmt.executeQuery();
-
-        while (bomRs.next()) {
-            String childSku = bomRs.getString("sku");
-            int qtyPerUnit = bomRs.getInt("quantity");
-            getRawComponents(conn, childSku, toBuild * qtyPerUnit, result);
+        for (int r = common; r < rows.size(); r++) {
+            tableModel.addRow(rows.get(r));
         }
     }
 
@@ -276,9 +241,29 @@ public class DemandAnalysis extends JPanel {
         }
     }
 
+    // Export the selected SKU's indented BOM tree as text, CSV or PDF, chosen by file extension
+    private void exportBOM() {
+        String sku = (String) skuComboBox.getSelectedItem();
+        if (sku == null) return;
+
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setDialogTitle("Export BOM of " + sku);
+        chooser.setSelectedFile(new File(sku.replace(' ', '_') + "-bom.txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+
+        new AsyncQuery<Integer>().submit(() -> {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                return BomExporter.exportGraph(BomGraph.get(), sku, BomExporter.Format.forFile(file.getName()), out);
+            }
+        }, rows -> JOptionPane.showMessageDialog(this, rows + " BOM lines saved to:\n" + file.getAbsolutePath()),
+            e -> showError("Failed to export BOM", e));
+    }
+
     // Show error message dialog and print stack trace
     private void showError(String msg, Exception e) {
         e.printStackTrace();
+        Metrics.error(msg);
         JOptionPane.showMessageDialog(this, msg + ":\n" + e.getMessage());
     }
 }
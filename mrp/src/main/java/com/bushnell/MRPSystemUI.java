@@ -5,8 +5,12 @@ import java.awt.CardLayout;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Image;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.net.URL;
@@ -36,11 +40,15 @@ public class MRPSystemUI extends JFrame {
     private static final int CONTENT_WIDTH = 1060;
     private static final int CONTENT_HEIGHT = 660;
 
+    // Set by main so the first frame can record how long startup took in Metrics
+    private static long launchNanos;
+
     private CardLayout cardLayout;
     private JPanel cardPanel;
+    // Cards are built on first showCard; the factories are dropped once used
+    private final Map<String, Supplier<JPanel>> cardFactories = new HashMap<>();
     private StockReport stockReportPanel;
     private BundlePanel bundlePanel;
-    private DemandAnalysis demandAnalysisPanel;
 
     public MRPSystemUI() {
         setTitle("MRP System");
@@ -60,15 +68,7 @@ public class MRPSystemUI extends JFrame {
         add(mainPanel, BorderLayout.CENTER);
 
         JLabel logoLabel = new JLabel();
-        try {
-            BufferedImage logoImage = ImageIO.read(getClass().getClassLoader().getResource("VisualRoboticsLogo.png"));
-            if (logoImage != null) {
-                Image scaledLogo = logoImage.getScaledInstance(LOGO_WIDTH, LOGO_HEIGHT, Image.SCALE_SMOOTH);
-                logoLabel.setIcon(new ImageIcon(scaledLogo));
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        loadLogo(logoLabel);
         logoLabel.setBounds(LOGO_X, LOGO_Y, LOGO_WIDTH, LOGO_HEIGHT);
         mainPanel.add(logoLabel);
 
@@ -78,7 +78,7 @@ public class MRPSystemUI extends JFrame {
         titleLabel.setBounds(TITLE_X, TITLE_Y, TITLE_WIDTH, TITLE_HEIGHT);
         mainPanel.add(titleLabel);
 
-        String[] buttons = {"Update Stock", "Stock Report", "Bundle", "Demand Analysis"};
+        String[] buttons = {"Update Stock", "Stock Report", "Bundle", "Demand Analysis", "Batch Demand", "Where Used", "Capacity", "Metrics"};
         Color vrGreen = Color.decode("#6DC066");
         int yOffset = BUTTON_START_Y;
 
@@ -103,39 +103,78 @@ public class MRPSystemUI extends JFrame {
         cardPanel.setBounds(CONTENT_X, CONTENT_Y, CONTENT_WIDTH, CONTENT_HEIGHT);
         mainPanel.add(cardPanel);
 
-        for (String name : buttons) {
-            switch (name) {
-                case "Update Stock":
-                    cardPanel.add(new UpdateStockPanel(), name);
-                    break;
-                case "Stock Report":
-                    stockReportPanel = new StockReport();
-                    cardPanel.add(stockReportPanel, name);
-                    break;
-                case "Bundle":
-                    bundlePanel = new BundlePanel();
-                    cardPanel.add(bundlePanel, name);
-                    break;
-                case "Demand Analysis":
-                    demandAnalysisPanel = new DemandAnalysis();
-                    cardPanel.add(demandAnalysisPanel, name);
-                    break;
+        cardFactories.put("Update Stock", UpdateStockPanel::new);
+        cardFactories.put("Stock Report", () -> stockReportPanel = new StockReport());
+        cardFactories.put("Bundle", () -> bundlePanel = new BundlePanel());
+        cardFactories.put("Demand Analysis", DemandAnalysis::new); // kept current by SkuCatalog, never rebuilt
+        cardFactories.put("Batch Demand", BatchDemandPanel::new);
+        cardFactories.put("Where Used", WhereUsedPanel::new);
+        cardFactories.put("Capacity", CapacityPanel::new);
+        cardFactories.put("Metrics", MetricsPanel::new);
+
+        showCard(buttons[0]);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                if (launchNanos != 0) {
+                    Metrics.timer("ui startup to first frame").stop(launchNanos);
+                }
+                warmUp();
             }
-        }
+        });
+    }
+
+    // Scale the logo off the EDT; the label stays blank until it's ready
+    private void loadLogo(JLabel logoLabel) {
+        new AsyncQuery<ImageIcon>().submit(() -> {
+            URL logoURL = getClass().getClassLoader().getResource("VisualRoboticsLogo.png");
+            BufferedImage logoImage = logoURL == null ? null : ImageIO.read(logoURL);
+            if (logoImage == null) {
+                return null;
+            }
+            Image scaledLogo = logoImage.getScaledInstance(LOGO_WIDTH, LOGO_HEIGHT, Image.SCALE_SMOOTH);
+            return new ImageIcon(scaledLogo); // ImageIcon waits for the scaled pixels here, not on the EDT
+        }, icon -> {
+            if (icon != null) {
+                logoLabel.setIcon(icon);
+            }
+        }, Exception::printStackTrace);
+    }
+
+    // Once the window is up, load what the other cards need on a low-priority thread
+    private static void warmUp() {
+        Thread warmer = new Thread(() -> {
+            try {
+                BomGraph.get(); // Bundle, Demand Analysis and Batch Demand all explode against this
+            } catch (Exception e) {
+                e.printStackTrace(); // the panel that needs it will report the failure itself
+            }
+        }, "mrp-warm-up");
+        warmer.setDaemon(true);
+        warmer.setPriority(Thread.MIN_PRIORITY);
+        warmer.start();
+    }
 
-        cardLayout.show(cardPanel, buttons[0]);
+    // Adds the named card the first time it's asked for; returns true if it was just created
+    private boolean ensureCard(String name) {
+        Supplier<JPanel> factory = cardFactories.remove(name);
+        if (factory == null) {
+            return false;
+        }
+        cardPanel.add(factory.get(), name);
+        return true;
     }
 
     private void showCard(String name) {
+        if (ensureCard(name)) {
+            cardLayout.show(cardPanel, name); // a fresh card already loads its own data
+            return;
+        }
         if ("Update Stock".equals(name)) {
             cardPanel.getComponent(0).revalidate();
             cardPanel.getComponent(0).repaint();
         }
-        if ("Demand Analysis".equals(name) && demandAnalysisPanel != null) {
-    cardPanel.remove(demandAnalysisPanel);
-    demandAnalysisPanel = new DemandAnalysis();
-    cardPanel.add(demandAnalysisPanel, "Demand Analysis");
-}
         if ("Stock Report".equals(name) && stockReportPanel != null) {
             stockReportPanel.updateReport();
         }
@@ -143,10 +182,10 @@ public class MRPSystemUI extends JFrame {
             bundlePanel.resetSelection();
         }
         cardLayout.show(cardPanel, name);
-        
     }
 
     public static void main(String[] args) {
+        launchNanos = System.nanoTime();
         SwingUtilities.invokeLater(() -> {
             MRPSystemUI ui = new MRPSystemUI();
             ui.setVisible(true);
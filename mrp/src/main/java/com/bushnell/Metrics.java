@@ -0,0 +1,328 @@
+package com.bushnell;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide latency metrics for SQL statements, engine operations and
+ * panel actions.
+ *
+ * Each named {@link Timer} keeps a count, a total and a log-linear histogram
+ * in the style of HdrHistogram: values below 64 ns are counted exactly, and
+ * above that every power of two is split into 32 buckets, so any percentile
+ * is within about 3% of the true value. Recording is a few atomic adds into
+ * fixed arrays and allocates nothing, so timers can stay on hot paths.
+ * Callers look a timer up once, keep it in a static field, take
+ * {@code System.nanoTime()} when the work starts and call {@link Timer#stop}
+ * from a {@code finally} block, so calls that throw are timed too: the caller
+ * waited for them all the same, and a slow failure is worth seeing.
+ *
+ * SQL is timed by {@link #wrap(Connection)}, which the database pool applies
+ * to every connection. Failures reported to the user are counted with
+ * {@link #error}. Names are grouped by their first word: {@code sql},
+ * {@code op} for engine operations and {@code ui} for panel actions measured
+ * from click to result.
+ */
+public final class Metrics {
+    private static final int PRECISION_BITS = 5;                  // 32 buckets per power of two
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+    private static final int BUCKETS = (40 - PRECISION_BITS + 2) * SUB_BUCKETS; // up to 2^40 ns, about 18 min
+    private static final int SQL_NAME_LENGTH = 60;
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> ERRORS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /** Call count and latency histogram of one operation. */
+    public static final class Timer {
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Records a call that started at {@code startNanos}, a {@link System#nanoTime()} reading. */
+        public void stop(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /** Records one call lasting {@code nanos}. */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long seen;
+            while (value > (seen = max.get()) && !max.compareAndSet(seen, value)) {
+                // another thread raised the max; try again against the new one
+            }
+        }
+
+        /** @return a consistent-enough copy of the counters for display */
+        public Snapshot snapshot() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = buckets.get(i);
+            }
+            return new Snapshot(name, count.get(), total.get(), max.get(), copy);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+    }
+
+    /** A timer's figures at one moment; all times in nanoseconds. */
+    public static final class Snapshot {
+        private final String name;
+        private final long count;
+        private final long total;
+        private final long max;
+        private final long[] buckets;
+
+        Snapshot(String name, long count, long total, long max, long[] buckets) {
+            this.name = name;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        /**
+         * @param percent 0 to 100
+         * @return the smallest recorded value at or above that share of calls,
+         *         rounded up to the top of its bucket and capped at the max
+         */
+        public long percentile(double percent) {
+            long histogramCount = 0;
+            for (long bucketCount : buckets) {
+                histogramCount += bucketCount;
+            }
+            if (histogramCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * histogramCount));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(highestInBucket(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    // Values below 2^(p+1) map to themselves; above, shift down until they fit 2^p..2^(p+1)-1
+    static int bucket(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - PRECISION_BITS);
+        int index = shift * SUB_BUCKETS + (int) (value >>> shift);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long highestInBucket(int index) {
+        int shift = Math.max(0, index / SUB_BUCKETS - 1);
+        long sub = index - (long) shift * SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /** @return the timer called {@code name}, created on first use */
+    public static Timer timer(String name) {
+        Timer timer = TIMERS.get(name);
+        return timer != null ? timer : TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * Counts a failure shown to the user.
+     *
+     * @param what what was being done, without the exception's own text
+     */
+    public static void error(String what) {
+        ERRORS.computeIfAbsent(what, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /** @return every timer that has recorded a call, by name */
+    public static List<Snapshot> snapshots() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Timer timer : TIMERS.values()) {
+            Snapshot snapshot = timer.snapshot();
+            if (snapshot.getCount() > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        snapshots.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return snapshots;
+    }
+
+    /** @return failure counts by message */
+    public static Map<String, Long> errors() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : ERRORS.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /** Zeroes every timer and error count; timers held in fields keep working. */
+    public static void reset() {
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+        ERRORS.clear();
+    }
+
+    /**
+     * Writes every timer and error count as a fixed-width text table, times
+     * in milliseconds.
+     */
+    public static void dump(Writer out) throws IOException {
+        out.write(String.format(Locale.ROOT, "%-64s %9s %10s %9s %9s %9s %9s %9s%n",
+                "Name", "Count", "Total", "Mean", "p50", "p90", "p99", "Max"));
+        for (Snapshot s : snapshots()) {
+            out.write(String.format(Locale.ROOT, "%-64s %9d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    s.getName(), s.getCount(), millis(s.getTotal()), millis(s.getMean()),
+                    millis(s.percentile(50)), millis(s.percentile(90)), millis(s.percentile(99)),
+                    millis(s.getMax())));
+        }
+        Map<String, Long> errors = errors();
+        if (!errors.isEmpty()) {
+            out.write(String.format(Locale.ROOT, "%nErrors%n"));
+            for (Map.Entry<String, Long> error : errors.entrySet()) {
+                out.write(String.format(Locale.ROOT, "%-64s %9d%n", error.getKey(), error.getValue()));
+            }
+        }
+        out.flush();
+    }
+
+    /** @return nanoseconds as milliseconds */
+    public static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Returns a connection whose statements time every execute call under
+     * {@code sql <statement>}. Everything else passes straight through.
+     */
+    public static Connection wrap(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Metrics.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(conn));
+    }
+
+    // Short, stable name for a statement: whitespace collapsed, cut to a readable length
+    static String sqlName(String sql) {
+        String flat = sql.trim().replaceAll("\\s+", " ");
+        return "sql " + (flat.length() > SQL_NAME_LENGTH ? flat.substring(0, SQL_NAME_LENGTH - 3) + "..." : flat);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Hands out timed statements. */
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+
+        ConnectionHandler(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = Metrics.invoke(conn, method, args);
+            if (result instanceof PreparedStatement && method.getName().equals("prepareStatement")) {
+                // Prepared once and cached by the pool, so the timer is looked up once too
+                return Proxy.newProxyInstance(Metrics.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler((Statement) result, timer(sqlName((String) args[0]))));
+            }
+            if (result instanceof Statement && method.getName().equals("createStatement")) {
+                return Proxy.newProxyInstance(Metrics.class.getClassLoader(), new Class<?>[]{Statement.class},
+                        new StatementHandler((Statement) result, null));
+            }
+            return result;
+        }
+    }
+
+    /** Times execute calls; a plain statement's timer comes from the SQL it is given. */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final Timer timer;
+
+        StatementHandler(Statement statement, Timer timer) {
+            this.statement = statement;
+            this.timer = timer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return Metrics.invoke(statement, method, args);
+            }
+            Timer target = timer;
+            if (target == null) {
+                target = args != null && args.length > 0 && args[0] instanceof String
+                        ? timer(sqlName((String) args[0])) : timer("sql batch");
+            }
+            long start = System.nanoTime();
+            try {
+                return Metrics.invoke(statement, method, args);
+            } finally {
+                target.stop(start);
+            }
+        }
+    }
+}
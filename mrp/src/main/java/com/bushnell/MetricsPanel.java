@@ -0,0 +1,159 @@
+package com.bushnell;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Panel showing the {@link Metrics} timers: call counts and latency
+ * percentiles of every SQL statement, engine operation and panel action
+ * since startup. Refreshes itself every second while visible; sort by Total
+ * or p99 to see where time goes. "Save..." writes the same table to a text
+ * file that operators can send in.
+ */
+public class MetricsPanel extends JPanel {
+    private static final int REFRESH_MS = 1000;
+
+    private final DefaultTableModel timerModel;
+    private final DefaultTableModel errorModel;
+    private final Timer refreshTimer = new Timer(REFRESH_MS, e -> refreshIfShowing());
+
+    public MetricsPanel() {
+        setLayout(new BorderLayout(10, 10));
+
+        // Title label
+        JLabel title = new JLabel("Metrics", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        add(title, BorderLayout.NORTH);
+
+        timerModel = readOnlyModel(new Class<?>[]{String.class, Long.class, Double.class, Double.class, Double.class,
+            Double.class, Double.class, Double.class},
+            "Name", "Count", "Total ms", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms");
+        errorModel = readOnlyModel(new Class<?>[]{String.class, Long.class}, "Error", "Count");
+        JTable timerTable = new JTable(timerModel);
+        timerTable.setAutoCreateRowSorter(true);
+        timerTable.getColumnModel().getColumn(0).setPreferredWidth(400);
+        JTable errorTable = new JTable(errorModel);
+        errorTable.setAutoCreateRowSorter(true);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Timings", new JScrollPane(timerTable));
+        tabs.addTab("Errors", new JScrollPane(errorTable));
+        add(tabs, BorderLayout.CENTER);
+
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refresh());
+        JButton resetBtn = new JButton("Reset");
+        resetBtn.addActionListener(e -> {
+            Metrics.reset();
+            refresh();
+        });
+        JButton saveBtn = new JButton("Save...");
+        saveBtn.addActionListener(e -> save());
+        JPanel btnPanel = new JPanel();
+        btnPanel.add(refreshBtn);
+        btnPanel.add(resetBtn);
+        btnPanel.add(saveBtn);
+        add(btnPanel, BorderLayout.SOUTH);
+
+        refresh();
+        refreshTimer.start();
+    }
+
+    private static DefaultTableModel readOnlyModel(Class<?>[] types, String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return types[column];
+            }
+        };
+    }
+
+    private void refreshIfShowing() {
+        if (isShowing()) {
+            refresh();
+        }
+    }
+
+    /** Re-reads every timer; rows are updated in place so sorting and selection survive. */
+    public void refresh() {
+        List<Metrics.Snapshot> snapshots = Metrics.snapshots();
+        Object[][] rows = new Object[snapshots.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            Metrics.Snapshot s = snapshots.get(i);
+            rows[i] = new Object[]{s.getName(), s.getCount(), round(s.getTotal()), round(s.getMean()),
+                round(s.percentile(50)), round(s.percentile(90)), round(s.percentile(99)), round(s.getMax())};
+        }
+        update(timerModel, rows);
+
+        Map<String, Long> errors = Metrics.errors();
+        Object[][] errorRows = new Object[errors.size()][];
+        int i = 0;
+        for (Map.Entry<String, Long> error : errors.entrySet()) {
+            errorRows[i++] = new Object[]{error.getKey(), error.getValue()};
+        }
+        update(errorModel, errorRows);
+    }
+
+    // Milliseconds to three decimals
+    private static double round(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    // Only cells whose value changed fire events; rows are in name order, so new timers insert in place
+    private static void update(DefaultTableModel model, Object[][] rows) {
+        int r = 0;
+        for (Object[] row : rows) {
+            while (r < model.getRowCount() && ((String) model.getValueAt(r, 0)).compareTo((String) row[0]) < 0) {
+                model.removeRow(r); // gone after a reset
+            }
+            if (r < model.getRowCount() && model.getValueAt(r, 0).equals(row[0])) {
+                for (int c = 1; c < row.length; c++) {
+                    if (!Objects.equals(row[c], model.getValueAt(r, c))) {
+                        model.setValueAt(row[c], r, c);
+                    }
+                }
+            } else {
+                model.insertRow(r, row);
+            }
+            r++;
+        }
+        while (model.getRowCount() > r) {
+            model.removeRow(model.getRowCount() - 1);
+        }
+    }
+
+    // Write the table to a text file chosen by the user
+    private void save() {
+        String timestamp = new SimpleDateFormat("yyyy.MM.dd-HH.mm").format(new Date());
+        JFileChooser chooser = new JFileChooser(new File("."));
+        chooser.setDialogTitle("Save Metrics");
+        chooser.setSelectedFile(new File("Metrics-" + timestamp + ".txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            Metrics.dump(out);
+            JOptionPane.showMessageDialog(this, "Metrics saved to:\n" + file.getAbsolutePath());
+        } catch (Exception e) {
+            e.printStackTrace();
+            Metrics.error("Failed to save metrics");
+            JOptionPane.showMessageDialog(this, "Failed to save metrics:\n" + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.bushnell;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP/JSON front end to {@link MrpService}, for scanners and the ERP.
+ *
+ * <pre>
+ * GET  /api/parts/{sku}                     one part
+ * GET  /api/parts?q=text&amp;limit=n             type-ahead search
+ * GET  /api/demand?sku=s&amp;qty=n               demand explosion
+ * GET  /api/where-used?sku=s                assemblies that use a part
+ * POST /api/bundle?sku=s&amp;units=n[&amp;through=true]
+ * GET  /api/reports/stock?format=csv|pdf
+ * GET  /api/reports/bom?sku=s&amp;format=txt|csv|pdf   (all assemblies without sku)
+ * GET  /api/metrics                         latency table, as text
+ * </pre>
+ *
+ * Errors come back as {@code {"error": "..."}} with 400 for bad parameters,
+ * 404 for an unknown SKU, 409 when stock is short and 500 otherwise.
+ *
+ * Every request runs on its own virtual thread when the JVM has them (Java
+ * 21+), otherwise on a cached thread pool. All requests share the service's
+ * in-memory catalog and graph, which are loaded before the port opens.
+ */
+public final class MrpHttpServer {
+    /** Port used when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+
+    // Pending connections the OS queues before refusing; the default of 50 is low for bursts
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 1000;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String NODELAY = "sun.net.httpserver.nodelay";
+
+    static {
+        // Headers and body are separate writes; with Nagle on, each small response waits out a delayed ACK
+        if (System.getProperty(NODELAY) == null) {
+            System.setProperty(NODELAY, "true");
+        }
+    }
+
+    private final MrpService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /** A request handler that may fail; failures are mapped to a status by {@link #serve}. */
+    private interface Action {
+        void run(HttpExchange exchange) throws Exception;
+    }
+
+    /** A request that names a SKU the catalog doesn't know. */
+    private static final class NotFoundException extends Exception {
+        NotFoundException(String sku) {
+            super("Unknown SKU: " + sku);
+        }
+    }
+
+    /**
+     * Binds the server; nothing is served until {@link #start()}.
+     *
+     * @param port port on the loopback interface, 0 for any free port
+     */
+    public MrpHttpServer(MrpService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        route("/api/parts", "GET", this::parts);
+        route("/api/demand", "GET", this::demand);
+        route("/api/where-used", "GET", this::whereUsed);
+        route("/api/bundle", "POST", this::bundle);
+        route("/api/reports/stock", "GET", this::stockReport);
+        route("/api/reports/bom", "GET", this::bomReport);
+        route("/api/metrics", "GET", MrpHttpServer::metrics);
+    }
+
+    // Serves path with action, timing each request as "http <method> <path>"
+    private void route(String path, String method, Action action) {
+        Metrics.Timer timer = Metrics.timer("http " + method + " " + path);
+        server.createContext(path, exchange -> {
+            long start = System.nanoTime();
+            try {
+                serve(exchange, method, action);
+            } finally {
+                timer.stop(start);
+            }
+        });
+    }
+
+    // One virtual thread per request where available; reflection keeps this building for Java 8
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "mrp-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Loads the catalog, search index and graph, then starts answering requests. */
+    public void start() throws java.sql.SQLException {
+        SkuCatalog.get().index(false);
+        BomGraph.get();
+        server.start();
+    }
+
+    /** @return the port actually bound */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to {@code delaySeconds} for those in
+     * progress, and shuts the executor down.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // GET /api/parts/{sku} or GET /api/parts?q=&limit=
+    private void parts(HttpExchange exchange) throws Exception {
+        String path = exchange.getRequestURI().getRawPath();
+        String prefix = exchange.getHttpContext().getPath() + "/";
+        if (path.startsWith(prefix) && path.length() > prefix.length()) {
+            String sku = decode(path.substring(prefix.length()));
+            SkuCatalog.Entry entry = service.part(sku);
+            if (entry == null) {
+                throw new NotFoundException(sku);
+            }
+            sendJson(exchange, 200, part(new StringBuilder(), entry).toString());
+            return;
+        }
+
+        Map<String, String> params = params(exchange);
+        String query = params.containsKey("q") ? params.get("q") : "";
+        int limit = Math.min(intParam(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+        StringBuilder json = new StringBuilder("[");
+        for (SkuCatalog.Entry entry : service.search(query, limit)) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            part(json, entry);
+        }
+        sendJson(exchange, 200, json.append(']').toString());
+    }
+
+    // GET /api/demand?sku=&qty=
+    private void demand(HttpExchange exchange) throws Exception {
+        Map<String, String> params = params(exchange);
+        String sku = knownSku(params);
+        int qty = intParam(params, "qty", 1);
+        if (qty <= 0) {
+            throw new IllegalArgumentException("qty must be positive");
+        }
+        StringBuilder json = new StringBuilder("{\"sku\":");
+        quote(json, sku).append(",\"qty\":").append(qty).append(",\"lines\":[");
+        List<MrpService.Requirement> lines = service.explode(sku, qty);
+        for (int i = 0; i < lines.size(); i++) {
+            MrpService.Requirement line = lines.get(i);
+            json.append(i == 0 ? "{\"sku\":" : ",{\"sku\":");
+            quote(json, line.getSku()).append(",\"need\":").append(line.getNeed())
+                    .append(",\"stock\":").append(line.getStock()).append(",\"description\":");
+            quote(json, line.getDescription()).append('}');
+        }
+        sendJson(exchange, 200, json.append("]}").toString());
+    }
+
+    // GET /api/where-used?sku=
+    private void whereUsed(HttpExchange exchange) throws Exception {
+        String sku = knownSku(params(exchange));
+        StringBuilder json = new StringBuilder("{\"sku\":");
+        quote(json, sku).append(",\"stock\":").append(service.part(sku).getStock()).append(",\"usedBy\":[");
+        List<MrpService.Usage> usages = service.whereUsed(sku);
+        for (int i = 0; i < usages.size(); i++) {
+            MrpService.Usage usage = usages.get(i);
+            json.append(i == 0 ? "{\"sku\":" : ",{\"sku\":");
+            quote(json, usage.getSku()).append(",\"description\":");
+            quote(json, usage.getDescription()).append(",\"quantityPer\":").append(usage.getQuantityPer())
+                    .append(",\"stock\":").append(usage.getStock())
+                    .append(",\"topLevel\":").append(usage.isTopLevel())
+                    .append(",\"covers\":").append(usage.getCovers()).append('}');
+        }
+        sendJson(exchange, 200, json.append("]}").toString());
+    }
+
+    // POST /api/bundle?sku=&units=&through=
+    private void bundle(HttpExchange exchange) throws Exception {
+        Map<String, String> params = params(exchange);
+        String sku = knownSku(params);
+        int units = intParam(params, "units", 1);
+        boolean through = Boolean.parseBoolean(params.get("through"));
+        BuildPlan plan = service.bundle(sku, units, through);
+
+        StringBuilder json = new StringBuilder("{\"sku\":");
+        quote(json, sku).append(",\"units\":").append(units).append(",\"built\":{");
+        Map<String, Integer> builds = plan == null ? null : plan.getBuilds();
+        if (builds == null) {
+            quote(json, sku).append(':').append(units);
+        } else {
+            boolean first = true;
+            for (Map.Entry<String, Integer> build : builds.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                quote(json, build.getKey()).append(':').append(build.getValue());
+                first = false;
+            }
+        }
+        json.append("},\"part\":");
+        part(json, service.part(sku));
+        sendJson(exchange, 200, json.append('}').toString());
+    }
+
+    // GET /api/reports/stock?format=
+    private void stockReport(HttpExchange exchange) throws Exception {
+        BomExporter.Format format = format(params(exchange), "csv");
+        try (OutputStream out = startStream(exchange, format)) {
+            service.stockReport(format, out);
+        }
+    }
+
+    // GET /api/reports/bom?sku=&format=
+    private void bomReport(HttpExchange exchange) throws Exception {
+        Map<String, String> params = params(exchange);
+        String sku = params.containsKey("sku") ? knownSku(params) : null;
+        BomExporter.Format format = format(params, "txt");
+        try (OutputStream out = startStream(exchange, format)) {
+            service.bomReport(sku, format, out);
+        }
+    }
+
+    // GET /api/metrics: the same table the metrics view saves
+    private static void metrics(HttpExchange exchange) throws Exception {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            Metrics.dump(out);
+        }
+    }
+
+    // Runs an action, turning its failure into a JSON error with the matching status
+    private static void serve(HttpExchange exchange, String method, Action action) {
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, method + " only");
+                return;
+            }
+            action.run(exchange);
+        } catch (NotFoundException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (Bundler.InsufficientStockException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            Metrics.error("HTTP 500 on " + exchange.getHttpContext().getPath());
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return; // A streamed body was already under way; closing the exchange cuts it short
+        }
+        try {
+            sendJson(exchange, status, quote(new StringBuilder("{\"error\":"), message).append('}').toString());
+        } catch (IOException e) {
+            // The client has gone; nothing left to tell it
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Starts a chunked 200 response for a report of unknown length
+    private static OutputStream startStream(HttpExchange exchange, BomExporter.Format format) throws IOException {
+        String type;
+        switch (format) {
+            case PDF:
+                type = "application/pdf";
+                break;
+            case CSV:
+                type = "text/csv; charset=utf-8";
+                break;
+            default:
+                type = "text/plain; charset=utf-8";
+                break;
+        }
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(200, 0);
+        return exchange.getResponseBody();
+    }
+
+    private static StringBuilder part(StringBuilder json, SkuCatalog.Entry entry) {
+        json.append("{\"sku\":");
+        quote(json, entry.getSku()).append(",\"description\":");
+        quote(json, entry.getDescription()).append(",\"price\":").append(entry.getPrice())
+                .append(",\"stock\":").append(entry.getStock()).append(",\"type\":");
+        return quote(json, entry.getPartType()).append(",\"version\":").append(entry.getVersion()).append('}');
+    }
+
+    // Appends a JSON string literal, or null
+    static StringBuilder quote(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    private String knownSku(Map<String, String> params) throws Exception {
+        String sku = params.get("sku");
+        if (sku == null || sku.isEmpty()) {
+            throw new IllegalArgumentException("sku is required");
+        }
+        if (service.part(sku) == null) {
+            throw new NotFoundException(sku);
+        }
+        return sku;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+
+    private static BomExporter.Format format(Map<String, String> params, String fallback) {
+        String name = params.containsKey("format") ? params.get("format") : fallback;
+        if (!name.matches("txt|csv|pdf")) {
+            throw new IllegalArgumentException("format must be txt, csv or pdf");
+        }
+        return BomExporter.Format.forFile("report." + name);
+    }
+
+    // Decodes the query string; a repeated name keeps its last value
+    private static Map<String, String> params(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            } else if (!pair.isEmpty()) {
+                params.put(decode(pair), "");
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String text) throws UnsupportedEncodingException {
+        return URLDecoder.decode(text, "UTF-8");
+    }
+
+    /**
+     * Command line entry point: {@code MrpHttpServer [--port n]}. Serves until
+     * the process is stopped.
+     */
+    public static void main(String[] args) throws Exception {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Starts the server from a command line and returns; the server's own
+     * threads keep the JVM running.
+     *
+     * @return 0 once listening, 2 for a usage error
+     * @throws Exception if the port can't be bound or the catalog can't be loaded
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws Exception {
+        int port = DEFAULT_PORT;
+        if (args.length == 2 && args[0].equals("--port") && args[1].matches("\\d{1,5}")) {
+            port = Integer.parseInt(args[1]);
+        } else if (args.length != 0) {
+            err.println("usage: MrpHttpServer [--port n]");
+            return 2;
+        }
+        MrpHttpServer server = new MrpHttpServer(MrpService.get(), port);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        out.println("MRP API listening on http://localhost:" + server.getPort() + "/api/");
+        return 0;
+    }
+}
@@ -0,0 +1,162 @@
+package com.bushnell;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One MRP netting pass over a {@link BomGraph}.
+ *
+ * Demand is added as gross requirements, then {@link #run()} walks the graph
+ * once in low-level-code order. Because every parent of a SKU has a lower code
+ * than the SKU itself, its gross requirement is complete by the time it is
+ * reached, so each SKU's stock is netted exactly once no matter how many
+ * assemblies use it. Raw parts keep their gross requirement so it can be shown
+ * next to stock; assemblies pass only their net requirement down.
+ */
+public final class MrpRun {
+    private final BomGraph graph;
+    private final int[] gross;
+    private final int[] net;
+    private final int[] onHand;
+
+    /**
+     * Creates a run that nets against the stock recorded in the graph.
+     */
+    public MrpRun(BomGraph graph) {
+        this(graph, null);
+    }
+
+    /**
+     * Creates a run that nets against {@code onHand}, indexed by node id.
+     * Several runs can share one array and call {@link #allocate()} in turn so
+     * that later orders only see what earlier ones left behind.
+     */
+    public MrpRun(BomGraph graph, int[] onHand) {
+        this.graph = graph;
+        this.gross = new int[graph.size()];
+        this.net = new int[graph.size()];
+        this.onHand = onHand;
+    }
+
+    /** @return the graph this run nets over */
+    public BomGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Adds a gross requirement for {@code qty} units of node {@code id}.
+     */
+    public void addDemand(int id, int qty) {
+        gross[id] += qty;
+    }
+
+    /**
+     * Nets every SKU against its stock and pushes net requirements down the BOM.
+     * Runs in O(nodes + edges).
+     */
+    public void run() {
+        for (int pos = 0; pos < gross.length; pos++) {
+            netNode(graph.levelOrder(pos));
+        }
+    }
+
+    /**
+     * Nets only {@code nodes}, which must be in low-level-code order and closed
+     * under children, e.g. {@link BomGraph#reachable(int)} of every SKU with demand.
+     * Runs in O(size of the sub-graph).
+     */
+    public void run(int[] nodes) {
+        for (int id : nodes) {
+            netNode(id);
+        }
+    }
+
+    // Nets one node whose parents are all done and passes its net requirement down
+    private void netNode(int id) {
+        if (gross[id] == 0) {
+            return;
+        }
+        net[id] = Math.max(0, gross[id] - available(id));
+        if (net[id] == 0 || graph.isRaw(id)) {
+            return;
+        }
+        for (int e = graph.firstChild(id); e < graph.endChild(id); e++) {
+            gross[graph.childId(e)] += net[id] * graph.childQty(e);
+        }
+    }
+
+    /**
+     * Takes the stock this run used out of the shared on-hand array.
+     */
+    public void allocate() {
+        for (int id = 0; id < gross.length; id++) {
+            if (gross[id] > 0) {
+                onHand[id] -= Math.min(gross[id], onHand[id]);
+            }
+        }
+    }
+
+    /** Like {@link #allocate()}, for a run over {@code nodes} only. */
+    public void allocate(int[] nodes) {
+        for (int id : nodes) {
+            if (gross[id] > 0) {
+                onHand[id] -= Math.min(gross[id], onHand[id]);
+            }
+        }
+    }
+
+    /** @return the stock this run nets against for node {@code id} */
+    public int available(int id) {
+        return onHand == null ? graph.stock(id) : onHand[id];
+    }
+
+    /** Clears all requirements so the run can be reused. */
+    public void reset() {
+        Arrays.fill(gross, 0);
+        Arrays.fill(net, 0);
+    }
+
+    /** Clears the requirements of {@code nodes} only, after a {@link #run(int[])} over them. */
+    public void reset(int[] nodes) {
+        for (int id : nodes) {
+            gross[id] = 0;
+            net[id] = 0;
+        }
+    }
+
+    public int gross(int id) {
+        return gross[id];
+    }
+
+    public int net(int id) {
+        return net[id];
+    }
+
+    /**
+     * @return every raw part with a gross requirement, in low-level-code order
+     */
+    public Map<String, Integer> rawRequirements() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int pos = 0; pos < gross.length; pos++) {
+            int id = graph.levelOrder(pos);
+            if (gross[id] > 0 && graph.isRaw(id)) {
+                result.put(graph.sku(id), gross[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return raw parts among {@code nodes} with a gross requirement, in the order given
+     */
+    public Map<String, Integer> rawRequirements(int[] nodes) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int id : nodes) {
+            if (gross[id] > 0 && graph.isRaw(id)) {
+                result.put(graph.sku(id), gross[id]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,379 @@
+package com.bushnell;
+
+import com.itextpdf.text.DocumentException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The MRP operations the panels offer, without any Swing: part lookup and
+ * search, demand explosion, where-used, build capacity, bundling and reports.
+ *
+ * Lookups and explosions are answered from the shared {@link SkuCatalog} and
+ * {@link BomGraph}, so they never touch the database once those are loaded.
+ * Explosions borrow netting scratch space from a pool instead of sharing one
+ * behind a lock, so any number of threads can explode at once. Bundles go
+ * through {@link Bundler}, whose conditional updates keep concurrent callers
+ * from overdrawing stock. All methods are safe to call from any thread.
+ */
+public final class MrpService {
+    private static final Metrics.Timer EXPLODE = Metrics.timer("op explode");
+    private static final Metrics.Timer WHERE_USED = Metrics.timer("op where used");
+    private static final String STOCK_REPORT = "SELECT sku, description, price, stock FROM part ORDER BY sku";
+    private static final String[] STOCK_HEADERS = {"SKU", "Description", "Price", "Stock"};
+
+    private static MrpService instance;
+
+    // Idle netting runs; any built for an older graph are dropped when next taken
+    private final ConcurrentLinkedQueue<MrpRun> runs = new ConcurrentLinkedQueue<>();
+
+    // Capacities of the latest graph; recomputed once a stock change swaps the graph
+    private volatile BuildCapacity capacity;
+
+    private MrpService() {
+    }
+
+    /** One line of a demand explosion. */
+    public static final class Requirement {
+        private final String sku;
+        private final int need;
+        private final int stock;
+        private final String description;
+
+        Requirement(String sku, int need, int stock, String description) {
+            this.sku = sku;
+            this.need = need;
+            this.stock = stock;
+            this.description = description;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        /** @return units still needed after stock on hand */
+        public int getNeed() {
+            return need;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /** One assembly that uses a part, from a where-used query. */
+    public static final class Usage {
+        private final String sku;
+        private final String description;
+        private final long quantityPer;
+        private final int stock;
+        private final boolean topLevel;
+        private final long covers;
+
+        Usage(String sku, String description, long quantityPer, int stock, boolean topLevel, long covers) {
+            this.sku = sku;
+            this.description = description;
+            this.quantityPer = quantityPer;
+            this.stock = stock;
+            this.topLevel = topLevel;
+            this.covers = covers;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /** @return units of the part one unit of this assembly uses, over every path */
+        public long getQuantityPer() {
+            return quantityPer;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        /** @return true if nothing uses this assembly in turn */
+        public boolean isTopLevel() {
+            return topLevel;
+        }
+
+        /** @return units of this assembly the part's stock on hand is enough for */
+        public long getCovers() {
+            return covers;
+        }
+    }
+
+    /** How many units of one assembly stock can build, and what stops it. */
+    public static final class Capacity {
+        private final String sku;
+        private final String description;
+        private final int stock;
+        private final int maxBuildable;
+        private final String bottleneck;
+        private final int bottleneckStock;
+
+        Capacity(String sku, String description, int stock, int maxBuildable, String bottleneck,
+                 int bottleneckStock) {
+            this.sku = sku;
+            this.description = description;
+            this.stock = stock;
+            this.maxBuildable = maxBuildable;
+            this.bottleneck = bottleneck;
+            this.bottleneckStock = bottleneckStock;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        /** @return units that can be built now, building intermediate assemblies as needed */
+        public int getMaxBuildable() {
+            return maxBuildable;
+        }
+
+        /** @return the part that runs short first when building one more unit, or null if none does */
+        public String getBottleneck() {
+            return bottleneck;
+        }
+
+        public int getBottleneckStock() {
+            return bottleneckStock;
+        }
+    }
+
+    /** @return the application's service */
+    public static synchronized MrpService get() {
+        if (instance == null) {
+            instance = new MrpService();
+        }
+        return instance;
+    }
+
+    /**
+     * @return the part's row, or null if the SKU is unknown
+     */
+    public SkuCatalog.Entry part(String sku) throws SQLException {
+        return SkuCatalog.get().entry(sku);
+    }
+
+    /**
+     * Finds parts by SKU or description prefix, as the type-ahead boxes do.
+     *
+     * @return up to {@code limit} parts, best match first
+     */
+    public List<SkuCatalog.Entry> search(String query, int limit) throws SQLException {
+        SkuCatalog catalog = SkuCatalog.get();
+        List<SkuCatalog.Entry> parts = new ArrayList<>();
+        for (String sku : catalog.index(false).search(query, limit)) {
+            SkuCatalog.Entry entry = catalog.entry(sku);
+            if (entry != null) {
+                parts.add(entry);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Explodes a demand for {@code quantity} of {@code sku} down to raw parts
+     * and nets it against stock on hand.
+     *
+     * @return the SKU itself first, with what is short of the quantity, then
+     *         every raw component the shortfall needs; just the first line if
+     *         the SKU is unknown
+     */
+    public List<Requirement> explode(String sku, int quantity) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            BomGraph graph = BomGraph.get();
+            int id = graph.indexOf(sku);
+            if (id < 0) {
+                return Collections.singletonList(new Requirement(sku, Math.max(quantity, 0), 0, ""));
+            }
+
+            // Re-net only the cached sub-graph under this SKU; nothing is re-read or re-walked
+            int[] nodes = graph.reachable(id);
+            MrpRun run = borrow(graph);
+            Map<String, Integer> needed;
+            try {
+                run.addDemand(id, quantity);
+                run.run(nodes);
+                needed = run.rawRequirements(nodes);
+            } finally {
+                run.reset(nodes);
+                runs.offer(run);
+            }
+
+            List<Requirement> lines = new ArrayList<>(needed.size() + 1);
+            lines.add(new Requirement(sku, Math.max(quantity - graph.stock(id), 0), graph.stock(id),
+                    graph.description(id)));
+            for (Map.Entry<String, Integer> entry : needed.entrySet()) {
+                int rawId = graph.indexOf(entry.getKey());
+                lines.add(new Requirement(entry.getKey(), entry.getValue(), graph.stock(rawId),
+                        graph.description(rawId)));
+            }
+            return lines;
+        } finally {
+            EXPLODE.stop(start);
+        }
+    }
+
+    /**
+     * Implodes the BOM above {@code sku}: every assembly and top-level product
+     * that uses it, directly or through sub-assemblies.
+     *
+     * @return the assemblies, nearest first; empty if the SKU is unknown or unused
+     */
+    public List<Usage> whereUsed(String sku) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            BomGraph graph = BomGraph.get();
+            int id = graph.indexOf(sku);
+            if (id < 0) {
+                return Collections.emptyList();
+            }
+            BomGraph.Implosion implosion = graph.implode(id);
+            int onHand = Math.max(graph.stock(id), 0);
+            List<Usage> usages = new ArrayList<>(implosion.size());
+            for (int i = 0; i < implosion.size(); i++) {
+                int assembly = implosion.id(i);
+                long quantityPer = implosion.quantityPer(i);
+                usages.add(new Usage(graph.sku(assembly), graph.description(assembly), quantityPer,
+                        graph.stock(assembly), graph.isTopLevel(assembly),
+                        quantityPer == 0 ? 0 : onHand / quantityPer));
+            }
+            return usages;
+        } finally {
+            WHERE_USED.stop(start);
+        }
+    }
+
+    /**
+     * Works out how many units of every SUB assembly current stock can build,
+     * building intermediate assemblies on the way, as {@link BuildCapacity}
+     * describes. The calculation is kept until stock or the BOM changes.
+     *
+     * @return one line per SUB SKU, in SKU order
+     */
+    public List<Capacity> capacity() throws SQLException {
+        BomGraph graph = BomGraph.get();
+        BuildCapacity current = capacity;
+        if (current == null || current.getGraph() != graph) {
+            current = BuildCapacity.compute(graph);
+            capacity = current;
+        }
+        List<Capacity> lines = new ArrayList<>();
+        for (String sku : SkuCatalog.get().subSkus()) {
+            int id = graph.indexOf(sku);
+            if (id < 0 || graph.isRaw(id)) {
+                continue;
+            }
+            int limit = current.bottleneck(id);
+            lines.add(new Capacity(sku, graph.description(id), graph.stock(id), current.maxBuildable(id),
+                    limit < 0 ? null : graph.sku(limit), limit < 0 ? 0 : graph.stock(limit)));
+        }
+        return lines;
+    }
+
+    // Takes an idle run over this graph, or makes one
+    private MrpRun borrow(BomGraph graph) {
+        MrpRun run;
+        while ((run = runs.poll()) != null) {
+            if (run.getGraph() == graph) {
+                return run;
+            }
+        }
+        return new MrpRun(graph);
+    }
+
+    /**
+     * Builds {@code units} of a SUB SKU.
+     *
+     * @param through first build any intermediate assemblies that are short
+     * @return the plan executed when {@code through} is set, otherwise null
+     * @throws Bundler.InsufficientStockException if stock doesn't cover the build
+     * @throws IllegalArgumentException if the SKU isn't an assembly or units isn't positive
+     */
+    public BuildPlan bundle(String sku, int units, boolean through) throws SQLException {
+        if (through) {
+            return Bundler.buildThrough(sku, units);
+        }
+        Bundler.bundle(sku, units);
+        return null;
+    }
+
+    /**
+     * Explodes an order book, as the batch demand panel does.
+     *
+     * @throws IllegalArgumentException if an order names an unknown SKU
+     */
+    public BatchDemand batch(List<BatchDemand.Order> orders) throws SQLException {
+        return BatchDemand.run(BomGraph.get(), orders);
+    }
+
+    /**
+     * Streams every part, in SKU order, as CSV or as the same PDF the stock
+     * report panel exports.
+     *
+     * @return the number of parts written
+     */
+    public int stockReport(BomExporter.Format format, OutputStream out)
+            throws SQLException, IOException, DocumentException {
+        try (Database.Handle db = Database.get().open();
+             ResultSet rs = db.prepare(STOCK_REPORT).executeQuery()) {
+            if (format == BomExporter.Format.PDF) {
+                return new ReportRenderer("Visual Robotics Stock Report", STOCK_HEADERS).render(rs, out, written -> {
+                });
+            }
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            String separator = format == BomExporter.Format.CSV ? "," : "\t";
+            writer.write(String.join(separator, STOCK_HEADERS) + "\n");
+            int rows = 0;
+            while (rs.next()) {
+                writer.write(BomExporter.csv(rs.getString(1)) + separator + BomExporter.csv(rs.getString(2)) + separator
+                        + String.format(Locale.ROOT, "%.3f", rs.getDouble(3)) + separator + rs.getInt(4) + "\n");
+                rows++;
+            }
+            writer.flush();
+            return rows;
+        }
+    }
+
+    /**
+     * Writes the indented BOM of {@code sku}, or of every top-level assembly
+     * if it is null, from the shared graph.
+     *
+     * @return the number of BOM lines written
+     */
+    public int bomReport(String sku, BomExporter.Format format, OutputStream out)
+            throws SQLException, IOException {
+        return BomExporter.exportGraph(BomGraph.get(), sku, format, out);
+    }
+}
@@ -0,0 +1,451 @@
+package com.bushnell;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Read-only table model over the {@code part} table that loads rows a page at
+ * a time as the table scrolls to them.
+ *
+ * Only the row count is known up front. A missing page is fetched in the
+ * background while its cells show blank, and at most {@link #MAX_PAGES} pages
+ * are kept, least recently used first out. Each page holds its columns in
+ * plain arrays and prices are formatted only when a cell is actually painted.
+ * Sorting and filtering are done by SQLite, so changing either just drops the
+ * cached pages.
+ *
+ * Scrolling reaches most pages next to one already loaded, and those are read
+ * by keyset: the rows after the last (or before the first) row of the
+ * neighbour on (sort column, sku), which SQLite finds without stepping over
+ * every row in front as {@code OFFSET} must. Sorted by SKU that is an index
+ * seek, so a page deep in a large catalog costs the same as the first. Only a
+ * jump to a page with no loaded neighbour, such as dragging the scroll bar,
+ * falls back to {@code LIMIT/OFFSET}.
+ *
+ * A page that fails to load is not asked for again until the next
+ * {@link #refresh}, and the first failure since then is passed to the error
+ * handler, so a broken database shows one message instead of a blank table
+ * that keeps retrying.
+ *
+ * All methods must be called on the event dispatch thread.
+ */
+public class PagedPartModel extends AbstractTableModel {
+    private static final Metrics.Timer FETCH_PAGE = Metrics.timer("op stock report page");
+    static final int PAGE_SIZE = 200;
+    static final int MAX_PAGES = 16;
+
+    private static final String[] COLUMN_NAMES = {"SKU", "Description", "Price", "Stock"};
+    private static final String[] SORT_COLUMNS = {"sku", "description", "price", "stock"};
+
+    private final Database database;
+
+    /** One block of consecutive rows. */
+    private static final class Page {
+        final String[] skus;
+        final String[] descriptions;
+        final double[] prices;
+        final int[] stock;
+        int count;
+        Object firstValue; // sort column of the first and last rows, where keyset reads next to it start
+        Object lastValue;
+
+        Page(int size) {
+            skus = new String[size];
+            descriptions = new String[size];
+            prices = new double[size];
+            stock = new int[size];
+        }
+
+        // Appends the current row of rs
+        void add(Query query, ResultSet rs) throws SQLException {
+            int i = count++;
+            skus[i] = rs.getString(1);
+            descriptions[i] = rs.getString(2);
+            prices[i] = rs.getDouble(3);
+            stock[i] = rs.getInt(4);
+            Object value = query.sortValue(rs);
+            if (i == 0) {
+                firstValue = value;
+            }
+            lastValue = value;
+        }
+
+        // Puts rows read nearest-first, backwards, into table order
+        void reverse() {
+            for (int i = 0, j = count - 1; i < j; i++, j--) {
+                String sku = skus[i];
+                skus[i] = skus[j];
+                skus[j] = sku;
+                String description = descriptions[i];
+                descriptions[i] = descriptions[j];
+                descriptions[j] = description;
+                double price = prices[i];
+                prices[i] = prices[j];
+                prices[j] = price;
+                int units = stock[i];
+                stock[i] = stock[j];
+                stock[j] = units;
+            }
+            Object value = firstValue;
+            firstValue = lastValue;
+            lastValue = value;
+        }
+    }
+
+    // Access-ordered, so the eldest entry is the least recently used page
+    private final Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+
+    private int rowCount;
+    private int sortColumn;
+    private boolean ascending = true;
+    private String filter = "";
+    private int generation; // bumped whenever cached pages become invalid
+    private boolean failed; // a load failed since the last refresh
+    private Consumer<? super Exception> errorHandler = e -> { };
+
+    public PagedPartModel(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Sets who is told when the row count or a page can't be loaded.
+     */
+    public void setErrorHandler(Consumer<? super Exception> handler) {
+        errorHandler = handler;
+    }
+
+    /**
+     * Sorts by {@code column}; sorting by the same column again flips the direction.
+     */
+    public void sortBy(int column) {
+        if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = true;
+        }
+        refresh();
+    }
+
+    /** @return model index of the sort column */
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Keeps only parts whose SKU or description contains {@code text}.
+     */
+    public void setFilter(String text) {
+        filter = text == null ? "" : text.trim();
+        refresh();
+    }
+
+    /**
+     * Drops every cached page and recounts rows in the background. Pages
+     * that failed to load are tried again.
+     */
+    public void refresh() {
+        int gen = ++generation;
+        pages.clear();
+        loading.clear();
+        failed = false;
+        Query query = currentQuery();
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws SQLException {
+                try (Database.Handle db = database.open()) {
+                    return query.count(db);
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (gen != generation) {
+                    return;
+                }
+                try {
+                    rowCount = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    rowCount = 0;
+                    fail(e);
+                }
+                fireTableDataChanged();
+            }
+        }.execute();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 3 ? Integer.class : String.class;
+    }
+
+    /**
+     * Returns the cell if its page is loaded; otherwise starts loading the page
+     * and returns null until it arrives.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        Page page = pages.get(row / PAGE_SIZE);
+        if (page == null) {
+            requestPage(row / PAGE_SIZE);
+            return null;
+        }
+        return cell(page, row % PAGE_SIZE, column);
+    }
+
+    private static Object cell(Page page, int offset, int column) {
+        if (offset >= page.count) {
+            return null; // table shrank since the count was taken
+        }
+        switch (column) {
+            case 0:
+                return page.skus[offset];
+            case 1:
+                return page.descriptions[offset];
+            case 2:
+                return String.format(Locale.ROOT, "%.3f", page.prices[offset]);
+            default:
+                return page.stock[offset];
+        }
+    }
+
+    private void requestPage(int index) {
+        if (!loading.add(index)) {
+            return; // already on its way
+        }
+        int gen = generation;
+        Query query = currentQuery();
+        // Loaded pages are never changed, so the worker can read the neighbours
+        Page before = pages.get(index - 1);
+        Page after = pages.get(index + 1);
+        new SwingWorker<Page, Void>() {
+            @Override
+            protected Page doInBackground() throws SQLException {
+                return fetchPage(query, index, before, after);
+            }
+
+            @Override
+            protected void done() {
+                if (gen != generation) {
+                    return; // sort, filter or data changed meanwhile
+                }
+                try {
+                    pages.put(index, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    fail(e); // stays in loading, so repaints don't fetch it again
+                    return;
+                }
+                loading.remove(index);
+                int first = index * PAGE_SIZE;
+                int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+                if (first <= last) {
+                    fireTableRowsUpdated(first, last);
+                }
+            }
+        }.execute();
+    }
+
+    // Reports the first failure since the last refresh
+    private void fail(Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        cause.printStackTrace();
+        if (!failed) {
+            failed = true;
+            errorHandler.accept(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    /**
+     * Reads one page: by keyset after a full page {@code before} it or before
+     * the page {@code after} it when either is loaded, otherwise by offset.
+     */
+    private Page fetchPage(Query query, int index, Page before, Page after) throws SQLException {
+        long start = System.nanoTime();
+        try (Database.Handle db = database.open()) {
+            if (before != null && before.count == PAGE_SIZE) {
+                return read(query, query.rowsAfter(db, before.lastValue, before.skus[PAGE_SIZE - 1], PAGE_SIZE));
+            }
+            if (after != null && after.count > 0) {
+                Page page = read(query, query.rowsBefore(db, after.firstValue, after.skus[0], PAGE_SIZE));
+                if (page.count == PAGE_SIZE) {
+                    page.reverse();
+                    return page;
+                }
+                // Fewer rows in front than the page number says: rows were deleted, so place it by offset
+            }
+            return read(query, query.rows(db, index * PAGE_SIZE, PAGE_SIZE));
+        } finally {
+            FETCH_PAGE.stop(start);
+        }
+    }
+
+    private static Page read(Query query, ResultSet rows) throws SQLException {
+        Page page = new Page(PAGE_SIZE);
+        try (ResultSet rs = rows) {
+            while (rs.next()) {
+                page.add(query, rs);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * @return the current sort and filter, safe to run on any thread
+     */
+    public Query currentQuery() {
+        String like = null;
+        if (!filter.isEmpty()) {
+            like = "%" + filter.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        }
+        return new Query(like, sortColumn, ascending);
+    }
+
+    /**
+     * Immutable snapshot of the model's sort and filter as SQL.
+     */
+    public static final class Query {
+        private static final String SELECT = "SELECT sku, description, price, stock FROM part";
+
+        private final String like;
+        private final String filter;
+        private final int column;
+        private final boolean ascending;
+
+        private Query(String like, int column, boolean ascending) {
+            this.like = like;
+            this.filter = like == null ? null : "(sku LIKE ? ESCAPE '\\' OR description LIKE ? ESCAPE '\\')";
+            this.column = column;
+            this.ascending = ascending;
+        }
+
+        /** @return number of matching parts */
+        public int count(Database.Handle db) throws SQLException {
+            PreparedStatement stmt = db.prepare("SELECT COUNT(*) FROM part" + where(null));
+            bindFilter(stmt, 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+
+        /**
+         * @return sku, description, price, stock of matching parts from
+         *         {@code offset}, at most {@code limit} rows, or all of them if
+         *         limit is negative; the caller closes the result set
+         */
+        public ResultSet rows(Database.Handle db, int offset, int limit) throws SQLException {
+            PreparedStatement stmt = db.prepare(SELECT + where(null) + order(ascending) + " LIMIT ? OFFSET ?");
+            int next = bindFilter(stmt, 1);
+            stmt.setInt(next, limit);
+            stmt.setInt(next + 1, offset);
+            return stmt.executeQuery();
+        }
+
+        /**
+         * Keyset read of the rows that follow one row, as {@link #rows} would
+         * return them, without stepping over the rows in front of it.
+         *
+         * @param value that row's {@link #sortValue}
+         * @param sku that row's SKU
+         * @return at most {@code limit} rows after it; the caller closes the result set
+         */
+        public ResultSet rowsAfter(Database.Handle db, Object value, String sku, int limit) throws SQLException {
+            return keyset(db, value, sku, limit, ascending);
+        }
+
+        /**
+         * Like {@link #rowsAfter}, but the rows in front of the given one,
+         * nearest first; that is, in reverse order.
+         */
+        public ResultSet rowsBefore(Database.Handle db, Object value, String sku, int limit) throws SQLException {
+            return keyset(db, value, sku, limit, !ascending);
+        }
+
+        /** @return the sort column of the current row of a result set this query returned */
+        public Object sortValue(ResultSet rs) throws SQLException {
+            return rs.getObject(column + 1);
+        }
+
+        // Rows past (value, sku) walking the order in direction asc; NULLs sort first, as SQLite puts them
+        private ResultSet keyset(Database.Handle db, Object value, String sku, int limit, boolean asc)
+                throws SQLException {
+            String col = SORT_COLUMNS[column];
+            String past = asc ? " > ?" : " < ?";
+            String seek;
+            if (column == 0) {
+                seek = "sku" + past;
+            } else if (value != null) {
+                seek = "(" + col + past + " OR (" + col + " = ? AND sku" + past + ")"
+                        + (asc ? "" : " OR " + col + " IS NULL") + ")";
+            } else {
+                seek = "(" + col + " IS NULL AND sku" + past + (asc ? " OR " + col + " IS NOT NULL" : "") + ")";
+            }
+            PreparedStatement stmt = db.prepare(SELECT + where(seek) + order(asc) + " LIMIT ?");
+            int next = bindFilter(stmt, 1);
+            if (column != 0 && value != null) {
+                stmt.setObject(next++, value);
+                stmt.setObject(next++, value);
+            }
+            stmt.setString(next++, sku);
+            stmt.setInt(next, limit);
+            return stmt.executeQuery();
+        }
+
+        private String where(String seek) {
+            if (filter == null) {
+                return seek == null ? "" : " WHERE " + seek;
+            }
+            return " WHERE " + filter + (seek == null ? "" : " AND " + seek);
+        }
+
+        // sku breaks ties so paging is stable
+        private String order(boolean asc) {
+            String dir = asc ? " ASC" : " DESC";
+            return " ORDER BY " + SORT_COLUMNS[column] + dir + (column == 0 ? "" : ", sku" + dir);
+        }
+
+        // Binds the filter pattern (if any) and returns the next free parameter index
+        private int bindFilter(PreparedStatement stmt, int index) throws SQLException {
+            if (like == null) {
+                return index;
+            }
+            stmt.setString(index, like);
+            stmt.setString(index + 1, like);
+            return index + 2;
+        }
+    }
+}
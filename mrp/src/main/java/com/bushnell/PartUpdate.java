@@ -0,0 +1,134 @@
+package com.bushnell;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * Writes one operator's edit of a part to a database other operators are
+ * changing at the same time.
+ *
+ * The edit is taken relative to the row the operator was looking at: stock
+ * becomes a delta, so a bundle committed in the meantime is kept rather than
+ * overwritten. The write is a compare-and-set on the row version. If the
+ * version moved, the row is re-read and the write retried, unless another
+ * operator changed the price the operator was also changing, or the delta
+ * would now take stock below zero. Each attempt is one short transaction that
+ * writes before it reads, so writers never hold the lock while waiting.
+ */
+public final class PartUpdate {
+    /** Attempts before giving up on a row that keeps changing. */
+    static final int MAX_ATTEMPTS = 5;
+
+    private static final String CAS =
+        "UPDATE part SET price = ?, stock = stock + ?, version = version + 1 "
+            + "WHERE sku = ? AND version = ? AND stock + ? >= 0";
+    private static final double PRICE_TOLERANCE = 0.0005; // the price field shows three decimals
+
+    /** How an update ended. */
+    public enum Status {
+        /** The change was written. */
+        UPDATED,
+        /** The edit didn't change anything, so nothing was written. */
+        UNCHANGED,
+        /** Another operator changed the price too; nothing was written. */
+        CONFLICT,
+        /** Stock has since dropped too far for the delta; nothing was written. */
+        INSUFFICIENT_STOCK,
+        /** The part is gone. */
+        NOT_FOUND
+    }
+
+    private final Status status;
+    private final SkuCatalog.Entry current;
+    private final int attempts;
+
+    private PartUpdate(Status status, SkuCatalog.Entry current, int attempts) {
+        this.status = status;
+        this.current = current;
+        this.attempts = attempts;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /** @return the row as last read, or null if it was never re-read or is gone */
+    public SkuCatalog.Entry getCurrent() {
+        return current;
+    }
+
+    /** @return how many compare-and-set attempts were made */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Applies an edit of price and stock.
+     *
+     * @param db connection in auto-commit mode; every attempt reuses its cached statement
+     * @param seen the row as shown to the operator
+     * @param price price the operator entered
+     * @param stock stock the operator entered; the difference from {@code seen} is applied
+     * @param reference ledger note for the stock movement
+     */
+    public static PartUpdate apply(Database.Handle db, SkuCatalog.Entry seen, double price, int stock,
+                                   String reference) throws SQLException {
+        int delta = stock - seen.getStock();
+        boolean priceEdited = Math.abs(price - seen.getPrice()) >= PRICE_TOLERANCE;
+        if (delta == 0 && !priceEdited) {
+            return new PartUpdate(Status.UNCHANGED, null, 0);
+        }
+
+        SkuCatalog.Entry row = seen;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (write(db, row, priceEdited ? price : row.getPrice(), delta, reference)) {
+                return new PartUpdate(Status.UPDATED, null, attempt);
+            }
+
+            // Someone else wrote the row first; see whether the edit still applies
+            row = SkuCatalog.read(db.connection(), seen.getSku());
+            if (row == null) {
+                return new PartUpdate(Status.NOT_FOUND, null, attempt);
+            }
+            if (priceEdited && Math.abs(row.getPrice() - seen.getPrice()) >= PRICE_TOLERANCE) {
+                return new PartUpdate(Status.CONFLICT, row, attempt);
+            }
+            if (row.getStock() + delta < 0) {
+                return new PartUpdate(Status.INSUFFICIENT_STOCK, row, attempt);
+            }
+        }
+        return new PartUpdate(Status.CONFLICT, row, MAX_ATTEMPTS);
+    }
+
+    // One compare-and-set against the version in row, logged to the ledger in the same transaction
+    private static boolean write(Database.Handle db, SkuCatalog.Entry row, double price, int delta,
+                                 String reference) throws SQLException {
+        Connection conn = db.connection();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement cas = db.prepare(CAS);
+            cas.setDouble(1, price);
+            cas.setInt(2, delta);
+            cas.setString(3, row.getSku());
+            cas.setLong(4, row.getVersion());
+            cas.setInt(5, delta);
+            if (cas.executeUpdate() == 0) {
+                conn.rollback();
+                return false;
+            }
+            if (delta != 0) {
+                StockLedger.record(conn, Collections.singletonList(
+                        new StockLedger.Movement(row.getSku(), delta, StockLedger.Kind.ADJUST, reference)));
+            }
+            conn.commit();
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.bushnell;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.ColumnText;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * Renders a tabular report to PDF straight from a database cursor.
+ *
+ * Rows go into one open-ended {@link PdfPTable} that is handed to the
+ * document every {@link #FLUSH_ROWS} rows; iText writes out the rows that
+ * fit on finished pages and drops them, so memory stays flat however many
+ * rows the cursor returns. The title and "Page n of m" line are drawn by a
+ * page event, with the page total filled in once the document closes.
+ */
+public final class ReportRenderer {
+    private static final Metrics.Timer RENDER = Metrics.timer("op PDF render");
+    static final int FLUSH_ROWS = 200;
+
+    private static final float HEADER_HEIGHT = 50;
+
+    private final String title;
+    private final String[] headers;
+    private final Font headerFont = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+    private final Font bodyFont = new Font(Font.FontFamily.HELVETICA, 11);
+
+    /**
+     * @param title report title shown at the top of every page
+     * @param headers column headers, one per result set column
+     */
+    public ReportRenderer(String title, String... headers) {
+        this.title = title;
+        this.headers = headers;
+    }
+
+    /**
+     * Forward-only source of report rows.
+     */
+    public interface Rows {
+        int columnCount() throws SQLException;
+
+        /** Moves to the next row; false when there are no more. */
+        boolean next() throws SQLException;
+
+        /** @return value of 1-based {@code column} in the current row */
+        Object value(int column) throws SQLException;
+    }
+
+    /**
+     * Writes every row of {@code rows} as a PDF table to {@code out}.
+     * Doubles are shown with three decimals and a decimal point whatever the
+     * locale, everything else as text.
+     *
+     * @param rows open cursor; read to the end but not closed
+     * @param out destination; closed when the document is
+     * @param progress told the number of rows written after each flush, may be null
+     * @return number of rows written
+     * @throws InterruptedIOException if the calling thread is interrupted
+     */
+    public int render(ResultSet rows, OutputStream out, IntConsumer progress)
+            throws SQLException, IOException, DocumentException {
+        return render(new Rows() {
+            @Override
+            public int columnCount() throws SQLException {
+                return rows.getMetaData().getColumnCount();
+            }
+
+            @Override
+            public boolean next() throws SQLException {
+                return rows.next();
+            }
+
+            @Override
+            public Object value(int column) throws SQLException {
+                return rows.getObject(column);
+            }
+        }, out, progress);
+    }
+
+    /**
+     * Like {@link #render(ResultSet, OutputStream, IntConsumer)}, for rows that
+     * don't come straight from a query.
+     */
+    public int render(Rows rows, OutputStream out, IntConsumer progress)
+            throws SQLException, IOException, DocumentException {
+        long start = System.nanoTime();
+        try {
+            Rectangle pageSize = PageSize.LETTER;
+            Document document = new Document(pageSize, 36, 36, 36 + HEADER_HEIGHT, 36);
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setPageEvent(new PageHeader());
+            document.open();
+
+            int columns = rows.columnCount();
+            PdfPTable table = newTable(columns);
+            int written = 0;
+            try {
+                while (rows.next()) {
+                    for (int col = 1; col <= columns; col++) {
+                        table.addCell(new Phrase(format(rows.value(col)), bodyFont));
+                    }
+                    if (++written % FLUSH_ROWS == 0) {
+                        document.add(table); // writes finished pages and frees their rows
+                        if (progress != null) {
+                            progress.accept(written);
+                        }
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Report cancelled after " + written + " rows");
+                        }
+                    }
+                }
+                table.setComplete(true);
+                document.add(table);
+                if (progress != null) {
+                    progress.accept(written);
+                }
+            } finally {
+                document.close();
+            }
+            return written;
+        } finally {
+            RENDER.stop(start);
+        }
+    }
+
+    // Open-ended table whose header row repeats on every page
+    private PdfPTable newTable(int columns) {
+        PdfPTable table = new PdfPTable(columns);
+        table.setWidthPercentage(100);
+        table.setComplete(false);
+        table.setHeaderRows(1);
+        for (int col = 0; col < columns; col++) {
+            PdfPCell cell = new PdfPCell(new Phrase(col < headers.length ? headers[col] : "", headerFont));
+            cell.setBorder(Rectangle.BOTTOM);
+            cell.setPaddingBottom(6);
+            table.addCell(cell);
+        }
+        return table;
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return String.format(Locale.ROOT, "%.3f", ((Number) value).doubleValue());
+        }
+        return value.toString();
+    }
+
+    /**
+     * Draws the title and page line on each page; the page total goes into a
+     * template that is only written when the document closes.
+     */
+    private final class PageHeader extends PdfPageEventHelper {
+        private final String generated = new SimpleDateFormat("MMMM dd, yyyy HH:mm").format(new Date());
+        private final Font titleFont = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD);
+        private BaseFont base;
+        private PdfTemplate total;
+
+        @Override
+        public void onOpenDocument(PdfWriter writer, Document document) {
+            try {
+                base = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+            } catch (DocumentException | IOException e) {
+                throw new IllegalStateException("Helvetica is built into iText", e);
+            }
+            total = writer.getDirectContent().createTemplate(40, 16);
+        }
+
+        @Override
+        public void onEndPage(PdfWriter writer, Document document) {
+            PdfContentByte cb = writer.getDirectContent();
+            float centre = (document.left() + document.right()) / 2;
+            float top = document.getPageSize().getTop() - 36;
+            ColumnText.showTextAligned(cb, Element.ALIGN_CENTER, new Phrase(title, titleFont), centre, top - 16, 0);
+
+            String line = "Generated: " + generated + "   |   Page " + writer.getPageNumber() + " of ";
+            float width = base.getWidthPoint(line, 11);
+            float x = centre - (width + base.getWidthPoint("000", 11)) / 2;
+            float y = top - 36;
+            cb.beginText();
+            cb.setFontAndSize(base, 11);
+            cb.setTextMatrix(x, y);
+            cb.showText(line);
+            cb.endText();
+            cb.addTemplate(total, x + width, y);
+        }
+
+        @Override
+        public void onCloseDocument(PdfWriter writer, Document document) {
+            total.beginText();
+            total.setFontAndSize(base, 11);
+            total.setTextMatrix(0, 0);
+            total.showText(String.valueOf(writer.getPageNumber()));
+            total.endText();
+        }
+    }
+}
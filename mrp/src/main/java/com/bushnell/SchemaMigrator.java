@@ -0,0 +1,157 @@
+package com.bushnell;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings a database up to the schema this version of the application expects.
+ *
+ * The schema version is kept in {@code PRAGMA user_version}. Each migration
+ * runs in its own transaction together with the version bump, so a database
+ * is always at exactly one version, and migrating an up-to-date database
+ * does nothing. New migrations are appended to {@link #MIGRATIONS}; existing
+ * ones must never change.
+ */
+public final class SchemaMigrator {
+
+    /** The original part and bom tables, as shipped in VR-Factory.db. */
+    static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS part (sku TEXT PRIMARY KEY UNIQUE NOT NULL, description TEXT, "
+            + "price REAL, stock INTEGER)",
+        "CREATE TABLE IF NOT EXISTS bom (bom_id TEXT PRIMARY KEY UNIQUE NOT NULL, sku TEXT REFERENCES part (sku), "
+            + "parent_sku REFERENCES part (sku), quantity INTEGER NOT NULL, serialized INTEGER NOT NULL)"
+    };
+
+    // Part type is the SKU prefix before the first dash: SUB, PCA, MCH, ...
+    private static final String PART_TYPE =
+        "CASE WHEN instr(%1$s, '-') > 0 THEN substr(%1$s, 1, instr(%1$s, '-') - 1) ELSE %1$s END";
+
+    /** One schema change. */
+    private interface Migration {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private static final Migration[] MIGRATIONS = {
+        // 1: base tables, covering BOM indexes, persisted part type
+        stmt -> {
+            for (String ddl : SCHEMA) {
+                stmt.execute(ddl);
+            }
+            // Children of a parent, answered from the index alone
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bom_parent ON bom (parent_sku, sku, quantity)");
+            // Parents of a child (where-used)
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bom_sku ON bom (sku, parent_sku)");
+            if (!hasUniqueIndex(stmt, "part", "sku")) {
+                stmt.execute("CREATE UNIQUE INDEX idx_part_sku ON part (sku)");
+            }
+
+            stmt.execute("ALTER TABLE part ADD COLUMN part_type TEXT");
+            stmt.execute("UPDATE part SET part_type = " + String.format(PART_TYPE, "sku"));
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_part_type ON part (part_type, sku)");
+            // Keep the type in step with the SKU whichever way rows are written
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS part_type_insert AFTER INSERT ON part BEGIN"
+                    + " UPDATE part SET part_type = " + String.format(PART_TYPE, "NEW.sku")
+                    + " WHERE rowid = NEW.rowid; END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS part_type_update AFTER UPDATE OF sku ON part BEGIN"
+                    + " UPDATE part SET part_type = " + String.format(PART_TYPE, "NEW.sku")
+                    + " WHERE rowid = NEW.rowid; END");
+        },
+        // 2: append-only stock ledger; today's stock becomes the opening snapshot
+        stmt -> {
+            stmt.execute("CREATE TABLE IF NOT EXISTS stock_movement (movement_id INTEGER PRIMARY KEY, "
+                    + "sku TEXT NOT NULL, delta INTEGER NOT NULL, kind TEXT NOT NULL, reference TEXT, "
+                    + "recorded_at INTEGER NOT NULL)");
+            // One SKU's movements after its snapshot, summed from the index alone
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_movement_sku ON stock_movement (sku, movement_id, delta)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS stock_snapshot (sku TEXT PRIMARY KEY NOT NULL, "
+                    + "stock INTEGER NOT NULL, through_id INTEGER NOT NULL)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_snapshot_through ON stock_snapshot (through_id)");
+            stmt.execute("INSERT INTO stock_snapshot (sku, stock, through_id) SELECT sku, COALESCE(stock, 0), 0 FROM part");
+        },
+        // 3: row versions for compare-and-set updates between operators
+        stmt -> {
+            stmt.execute("ALTER TABLE part ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            // Writers that don't bump the version themselves get it bumped here
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS part_version AFTER UPDATE OF description, price, stock ON part"
+                    + " WHEN NEW.version = OLD.version BEGIN"
+                    + " UPDATE part SET version = OLD.version + 1 WHERE rowid = NEW.rowid; END");
+        },
+        // 4: BOM revision counter, so other processes can tell the structure changed
+        stmt -> {
+            stmt.execute("CREATE TABLE IF NOT EXISTS bom_revision (revision INTEGER NOT NULL)");
+            stmt.execute("INSERT INTO bom_revision (revision) VALUES (0)");
+            for (String event : new String[]{"INSERT", "UPDATE", "DELETE"}) {
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS bom_revision_" + event.toLowerCase(Locale.ROOT)
+                        + " AFTER " + event + " ON bom BEGIN UPDATE bom_revision SET revision = revision + 1; END");
+            }
+        }
+    };
+
+    /** Schema version after every migration has run. */
+    public static final int LATEST = MIGRATIONS.length;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Runs every migration the database hasn't had yet.
+     *
+     * @param conn connection in auto-commit mode
+     * @return the number of migrations applied
+     * @throws SQLException if the database is newer than this code or a migration fails
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        int version = version(conn);
+        if (version > LATEST) {
+            throw new SQLException("Database schema version " + version
+                    + " is newer than this application supports (" + LATEST + ")");
+        }
+        for (int v = version; v < LATEST; v++) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                MIGRATIONS[v].apply(stmt);
+                stmt.execute("PRAGMA user_version = " + (v + 1));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration " + (v + 1) + " failed: " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return LATEST - version;
+    }
+
+    /** @return the schema version recorded in the database */
+    public static int version(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // True if some unique index on the table covers exactly this one column
+    private static boolean hasUniqueIndex(Statement stmt, String table, String column) throws SQLException {
+        List<String> unique = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA index_list(" + table + ")")) {
+            while (rs.next()) {
+                if (rs.getInt("unique") == 1) {
+                    unique.add(rs.getString("name"));
+                }
+            }
+        }
+        for (String index : unique) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA index_info(" + index + ")")) {
+                if (rs.next() && column.equals(rs.getString("name")) && !rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,409 @@
+package com.bushnell;
+
+import javax.swing.SwingUtilities;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory copy of the part table, shared by every panel.
+ *
+ * The whole table is read with one query the first time anything asks for
+ * it. After a commit, {@link #refresh} re-reads only the SKUs that commit
+ * touched, patches the shared {@link BomGraph} to match, and tells listeners
+ * which SKUs changed, so a panel updates just the rows it shows instead of
+ * reloading its lists.
+ *
+ * Other operators write to the same file from other processes. Before
+ * serving cached rows the catalog calls {@link #sync}, which compares
+ * {@code PRAGMA data_version} with the value it last saw and catches up on
+ * whatever those commits changed.
+ */
+public final class SkuCatalog {
+    private static final Metrics.Timer LOAD = Metrics.timer("op catalog load");
+    private static final Metrics.Timer REFRESH = Metrics.timer("op catalog refresh");
+    private static final Metrics.Timer INDEX = Metrics.timer("op search index build");
+    private static final Metrics.Timer SYNC = Metrics.timer("op catalog sync");
+    private static final String SELECT_ALL =
+        "SELECT sku, description, price, stock, part_type, version FROM part ORDER BY sku";
+    private static final String SELECT_ONE =
+        "SELECT sku, description, price, stock, part_type, version FROM part WHERE sku = ?";
+    private static final String SELECT_VERSIONS = "SELECT sku, version FROM part";
+    private static final String SELECT_BOM_REVISION = "SELECT revision FROM bom_revision";
+
+    private static SkuCatalog instance;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Guarded by this; null until first loaded or after invalidate()
+    private TreeMap<String, Entry> entries;
+    // Search indexes, built on first use and dropped when SKUs or descriptions change
+    private SkuIndex allIndex;
+    private SkuIndex subIndex;
+
+    // Serializes sync(); the data version and BOM revision the caches were last checked against
+    private final Object syncLock = new Object();
+    private volatile long checkedVersion = -1;
+    private long checkedBomRevision = -1;
+
+    private SkuCatalog() {
+    }
+
+    /** One row of the part table. */
+    public static final class Entry {
+        private final String sku;
+        private final String description;
+        private final double price;
+        private final int stock;
+        private final String partType;
+        private final long version;
+
+        Entry(String sku, String description, double price, int stock, String partType, long version) {
+            this.sku = sku;
+            this.description = description;
+            this.price = price;
+            this.stock = stock;
+            this.partType = partType;
+            this.version = version;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        /** @return the SKU prefix, e.g. {@code SUB} or {@code RSI} */
+        public String getPartType() {
+            return partType;
+        }
+
+        /** @return the row version this entry was read at; every write bumps it */
+        public long getVersion() {
+            return version;
+        }
+
+        /** @return true for assemblies that can be bundled */
+        public boolean isSub() {
+            return "SUB".equals(partType);
+        }
+    }
+
+    /**
+     * Receives catalog changes on the event dispatch thread.
+     */
+    public interface Listener {
+        /**
+         * @param changed SKUs whose row was added, changed or removed, or null
+         *                if the whole catalog was dropped and must be re-read
+         */
+        void catalogChanged(Set<String> changed);
+    }
+
+    /** @return the application's catalog */
+    public static synchronized SkuCatalog get() {
+        if (instance == null) {
+            instance = new SkuCatalog();
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Looks up one SKU. Loads the catalog on first use and checks for other
+     * processes' commits every time, so call this off the EDT.
+     *
+     * @return the row, or null if the SKU is not in the part table
+     */
+    public Entry entry(String sku) throws SQLException {
+        sync();
+        synchronized (this) {
+            return loaded().get(sku);
+        }
+    }
+
+    /** @return every SKU, sorted */
+    public List<String> skus() throws SQLException {
+        sync();
+        synchronized (this) {
+            return new ArrayList<>(loaded().keySet());
+        }
+    }
+
+    /** @return the SUB (assembly) SKUs, sorted */
+    public List<String> subSkus() throws SQLException {
+        sync();
+        synchronized (this) {
+            List<String> subs = new ArrayList<>();
+            for (Entry entry : loaded().values()) {
+                if (entry.isSub()) {
+                    subs.add(entry.getSku());
+                }
+            }
+            return subs;
+        }
+    }
+
+    /**
+     * Returns a search index over SKUs and descriptions. It is built on first
+     * use and reused until a refresh adds, removes or renames a SKU, so
+     * listeners can compare it by identity to see whether their list changed.
+     * Call off the EDT.
+     *
+     * @param subsOnly index only the SUB (assembly) SKUs
+     */
+    public SkuIndex index(boolean subsOnly) throws SQLException {
+        sync();
+        synchronized (this) {
+            return loadedIndex(subsOnly);
+        }
+    }
+
+    private SkuIndex loadedIndex(boolean subsOnly) throws SQLException {
+        SkuIndex index = subsOnly ? subIndex : allIndex;
+        if (index == null) {
+            List<String> skus = new ArrayList<>();
+            List<String> descriptions = new ArrayList<>();
+            for (Entry entry : loaded().values()) {
+                if (!subsOnly || entry.isSub()) {
+                    skus.add(entry.getSku());
+                    descriptions.add(entry.getDescription());
+                }
+            }
+            long start = System.nanoTime();
+            try {
+                index = SkuIndex.build(skus, descriptions);
+            } finally {
+                INDEX.stop(start);
+            }
+            if (subsOnly) {
+                subIndex = index;
+            } else {
+                allIndex = index;
+            }
+        }
+        return index;
+    }
+
+    private TreeMap<String, Entry> loaded() throws SQLException {
+        if (entries == null) {
+            long start = System.nanoTime();
+            try {
+                TreeMap<String, Entry> all = new TreeMap<>();
+                try (Database.Handle db = Database.get().open();
+                     ResultSet rs = db.prepare(SELECT_ALL).executeQuery()) {
+                    while (rs.next()) {
+                        Entry entry = read(rs);
+                        all.put(entry.getSku(), entry);
+                    }
+                }
+                entries = all;
+            } finally {
+                LOAD.stop(start);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Re-reads the given SKUs after a commit, updates the shared graph and
+     * notifies listeners. If the read fails the catalog and graph are dropped
+     * instead, so nothing stale survives. Safe to call from any thread: rows
+     * are read outside the lock, so a row is only applied if its version is
+     * newer than the one held, and two refreshes racing on one SKU can't leave
+     * the older row behind.
+     *
+     * @param skus SKUs the commit inserted, updated or deleted
+     */
+    public void refresh(Collection<String> skus) {
+        if (skus.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Map<String, Entry> rows = new LinkedHashMap<>();
+            try (Database.Handle db = Database.get().open()) {
+                PreparedStatement select = db.prepare(SELECT_ONE);
+                for (String sku : skus) {
+                    select.setString(1, sku);
+                    try (ResultSet rs = select.executeQuery()) {
+                        rows.put(sku, rs.next() ? read(rs) : null);
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                invalidate();
+                return;
+            }
+
+            synchronized (this) {
+                if (entries != null) {
+                    for (Map.Entry<String, Entry> row : rows.entrySet()) {
+                        Entry fresh = row.getValue();
+                        Entry old = entries.get(row.getKey());
+                        if (old != null && fresh != null && old.getVersion() >= fresh.getVersion()) {
+                            continue; // read before a later commit that another refresh already applied
+                        }
+                        if (fresh == null) {
+                            entries.remove(row.getKey());
+                        } else {
+                            entries.put(row.getKey(), fresh);
+                        }
+                        if (old == null || fresh == null || !Objects.equals(old.getDescription(), fresh.getDescription())) {
+                            allIndex = null; // a stock or price change leaves the indexes as they are
+                            subIndex = null;
+                        }
+                    }
+                }
+            }
+            BomGraph.updateParts(rows);
+            fire(Collections.unmodifiableSet(rows.keySet()));
+        } finally {
+            REFRESH.stop(start);
+        }
+    }
+
+    /**
+     * Catches the catalog and the shared graph up with commits made through
+     * other connections, other processes included, since the last check.
+     * When nothing was committed this costs one {@code PRAGMA data_version}.
+     * Otherwise the part table's row versions are compared with the cached
+     * ones and only the SKUs that differ go through {@link #refresh}; this
+     * process's own writes were refreshed when they committed, so they cost
+     * the comparison and nothing more. A change to the BOM drops both caches,
+     * as {@link #invalidate} does. Call off the EDT.
+     */
+    void sync() throws SQLException {
+        long version = Database.get().dataVersion();
+        if (version == checkedVersion) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (version == checkedVersion) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                boolean cached;
+                synchronized (this) {
+                    cached = entries != null;
+                }
+                cached |= BomGraph.isLoaded();
+                long bomRevision;
+                Map<String, Long> versions = new HashMap<>();
+                try (Database.Handle db = Database.get().open()) {
+                    try (ResultSet rs = db.prepare(SELECT_BOM_REVISION).executeQuery()) {
+                        bomRevision = rs.next() ? rs.getLong(1) : 0;
+                    }
+                    if (cached && bomRevision == checkedBomRevision) {
+                        try (ResultSet rs = db.prepare(SELECT_VERSIONS).executeQuery()) {
+                            while (rs.next()) {
+                                versions.put(rs.getString(1), rs.getLong(2));
+                            }
+                        }
+                    }
+                }
+                if (cached && bomRevision != checkedBomRevision) {
+                    invalidate();
+                } else if (cached) {
+                    Set<String> stale = staleEntries(versions);
+                    stale.addAll(BomGraph.staleParts(versions));
+                    refresh(stale);
+                }
+                checkedBomRevision = bomRevision;
+                checkedVersion = version; // read before the comparison, so later commits are seen next time
+            } finally {
+                SYNC.stop(start);
+            }
+        }
+    }
+
+    // SKUs added, removed or changed in the part table since the cached entries were read
+    private synchronized Set<String> staleEntries(Map<String, Long> versions) {
+        Set<String> stale = new HashSet<>();
+        if (entries == null) {
+            return stale;
+        }
+        for (Entry entry : entries.values()) {
+            Long current = versions.get(entry.getSku());
+            if (current == null || current != entry.getVersion()) {
+                stale.add(entry.getSku());
+            }
+        }
+        for (String sku : versions.keySet()) {
+            if (!entries.containsKey(sku)) {
+                stale.add(sku);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Drops the catalog and the shared graph, e.g. after a bulk import.
+     * Listeners are told to re-read everything.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            entries = null;
+            allIndex = null;
+            subIndex = null;
+        }
+        BomGraph.invalidate();
+        fire(null);
+    }
+
+    private void fire(Set<String> changed) {
+        if (listeners.isEmpty()) {
+            return; // headless callers have nobody to tell
+        }
+        SwingUtilities.invokeLater(() -> {
+            for (Listener listener : listeners) {
+                listener.catalogChanged(changed);
+            }
+        });
+    }
+
+    /** Reads one part row straight from the database, bypassing the cache. */
+    static Entry read(Connection conn, String sku) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(SELECT_ONE)) {
+            select.setString(1, sku);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? read(rs) : null;
+            }
+        }
+    }
+
+    private static Entry read(ResultSet rs) throws SQLException {
+        return new Entry(rs.getString(1), rs.getString(2), rs.getDouble(3), rs.getInt(4), rs.getString(5),
+                rs.getLong(6));
+    }
+}
@@ -0,0 +1,196 @@
+package com.bushnell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable prefix index over SKUs and their descriptions, for type-ahead search.
+ *
+ * Two sorted arrays are kept: every SKU in lower case, and every word of every
+ * SKU and description (split on anything that isn't a letter or digit) paired
+ * with the SKU it came from. The word a SKU starts with is left out, since the
+ * SKU array already finds it. A query's first term is found by binary search in
+ * both, so a keystroke costs two lookups plus a scan of at most the matches
+ * returned; any further terms must appear somewhere in the SKU or description.
+ */
+public final class SkuIndex {
+    /** An index with no SKUs. */
+    public static final SkuIndex EMPTY = build(new ArrayList<>(), new ArrayList<>());
+
+    private final String[] skus;          // as given, by id
+    private final String[] haystacks;     // "sku description" in lower case, by id
+
+    // Ids sorted by lower-case SKU, with the keys alongside
+    private final String[] keys;
+    private final int[] keyIds;
+
+    // Every distinct word of every entry, sorted, with the id it came from
+    private final String[] words;
+    private final int[] wordIds;
+
+    private SkuIndex(String[] skus, String[] haystacks, String[] keys, int[] keyIds, String[] words, int[] wordIds) {
+        this.skus = skus;
+        this.haystacks = haystacks;
+        this.keys = keys;
+        this.keyIds = keyIds;
+        this.words = words;
+        this.wordIds = wordIds;
+    }
+
+    // Sort record used only while building
+    private static final class Term implements Comparable<Term> {
+        final String text;
+        final int id;
+
+        Term(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Term other) {
+            int cmp = text.compareTo(other.text);
+            return cmp != 0 ? cmp : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Builds an index. Ids follow list order, so passing SKUs sorted makes an
+     * empty query list them sorted.
+     *
+     * @param skus SKUs to index
+     * @param descriptions description of each SKU, same order; null entries are allowed
+     */
+    public static SkuIndex build(List<String> skus, List<String> descriptions) {
+        int n = skus.size();
+        String[] skuArr = skus.toArray(new String[0]);
+        String[] haystacks = new String[n];
+        Term[] keyTerms = new Term[n];
+        List<Term> wordTerms = new ArrayList<>(n * 4);
+        Set<String> seen = new HashSet<>();
+        for (int id = 0; id < n; id++) {
+            String description = descriptions.get(id) == null ? "" : descriptions.get(id);
+            String key = skuArr[id].toLowerCase(Locale.ROOT);
+            haystacks[id] = key + " " + description.toLowerCase(Locale.ROOT);
+            keyTerms[id] = new Term(key, id);
+            seen.clear();
+            addWords(haystacks[id], id, seen, wordTerms);
+        }
+        Arrays.sort(keyTerms);
+        Term[] sortedWords = wordTerms.toArray(new Term[0]);
+        Arrays.sort(sortedWords);
+
+        String[] keys = new String[n];
+        int[] keyIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = keyTerms[i].text;
+            keyIds[i] = keyTerms[i].id;
+        }
+        String[] words = new String[sortedWords.length];
+        int[] wordIds = new int[sortedWords.length];
+        for (int i = 0; i < sortedWords.length; i++) {
+            words[i] = sortedWords[i].text;
+            wordIds[i] = sortedWords[i].id;
+        }
+        return new SkuIndex(skuArr, haystacks, keys, keyIds, words, wordIds);
+    }
+
+    // Adds each distinct word of text, skipping the one the SKU starts with (key search finds that)
+    private static void addWords(String text, int id, Set<String> seen, List<Term> out) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (start > 0) {
+                    String word = text.substring(start, i);
+                    if (seen.add(word)) {
+                        out.add(new Term(word, id));
+                    }
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /** @return number of SKUs indexed */
+    public int size() {
+        return skus.length;
+    }
+
+    /** @return the SKU with the given id, in the order the index was built from */
+    public String sku(int id) {
+        return skus[id];
+    }
+
+    /**
+     * Finds up to {@code limit} SKUs matching a query, case-insensitively.
+     * SKUs that start with the first term come first, in SKU order, followed
+     * by SKUs with any word starting with it. Every other term must occur
+     * somewhere in the SKU or description. A blank query returns the first
+     * {@code limit} SKUs in build order.
+     *
+     * @return matching SKUs, best first
+     */
+    public List<String> search(String query, int limit) {
+        String[] terms = query.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (terms[0].isEmpty()) {
+            List<String> first = new ArrayList<>(Math.min(limit, skus.length));
+            for (int id = 0; id < skus.length && first.size() < limit; id++) {
+                first.add(skus[id]);
+            }
+            return first;
+        }
+
+        Set<Integer> found = new LinkedHashSet<>();
+        String prefix = terms[0];
+        for (int i = lowerBound(keys, prefix); i < keys.length && found.size() < limit
+                && keys[i].startsWith(prefix); i++) {
+            if (matchesRest(keyIds[i], terms)) {
+                found.add(keyIds[i]);
+            }
+        }
+        for (int i = lowerBound(words, prefix); i < words.length && found.size() < limit
+                && words[i].startsWith(prefix); i++) {
+            if (matchesRest(wordIds[i], terms)) {
+                found.add(wordIds[i]);
+            }
+        }
+
+        List<String> matches = new ArrayList<>(found.size());
+        for (int id : found) {
+            matches.add(skus[id]);
+        }
+        return matches;
+    }
+
+    private boolean matchesRest(int id, String[] terms) {
+        for (int t = 1; t < terms.length; t++) {
+            if (!haystacks[id].contains(terms[t])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // First position whose value is >= key
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
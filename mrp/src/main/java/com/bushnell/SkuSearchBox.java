@@ -0,0 +1,152 @@
+package com.bushnell;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.FlowLayout;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SKU picker for large catalogs: a search field that narrows a combo box to
+ * the best matches from a {@link SkuIndex} as the user types.
+ *
+ * The combo box never holds more than {@link #MAX_MATCHES} items, and each
+ * keystroke replaces them in one model event, so neither typing nor opening
+ * the popup depends on the size of the catalog. Enter in the search field
+ * picks the first match. Panels listen to {@link #getComboBox()} as before.
+ */
+public class SkuSearchBox extends JPanel {
+    /** Most matches shown at once. */
+    public static final int MAX_MATCHES = 100;
+
+    private static final String PROTOTYPE_SKU = "SUB-000-V00 XXXXXXXXXXXX";
+
+    private final JTextField queryField = new JTextField(10);
+    private final MatchModel model = new MatchModel();
+    private final JComboBox<String> comboBox = new JComboBox<>(model);
+    private SkuIndex index = SkuIndex.EMPTY;
+
+    /**
+     * Combo box model holding the current matches. The selection is kept
+     * separately, so it survives a new search.
+     */
+    private static final class MatchModel extends AbstractListModel<String> implements ComboBoxModel<String> {
+        private List<String> matches = new ArrayList<>();
+        private Object selected;
+
+        void setMatches(List<String> matches) {
+            int oldSize = this.matches.size();
+            this.matches = matches;
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (!matches.isEmpty()) {
+                fireIntervalAdded(this, 0, matches.size() - 1);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return matches.size();
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return matches.get(index);
+        }
+
+        @Override
+        public void setSelectedItem(Object item) {
+            if (item == null ? selected != null : !item.equals(selected)) {
+                selected = item;
+                fireContentsChanged(this, -1, -1);
+            }
+        }
+
+        @Override
+        public Object getSelectedItem() {
+            return selected;
+        }
+    }
+
+    public SkuSearchBox() {
+        super(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        comboBox.setPrototypeDisplayValue(PROTOTYPE_SKU); // Size from one value, not by measuring every item
+        comboBox.setMaximumRowCount(20);
+        queryField.setToolTipText("Type part of a SKU or description");
+
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                search();
+            }
+        });
+        queryField.addActionListener(e -> {
+            if (model.getSize() > 0) {
+                comboBox.setSelectedIndex(0);
+            }
+            comboBox.hidePopup();
+        });
+
+        add(queryField);
+        add(comboBox);
+    }
+
+    /** @return the combo box; its selected item is the chosen SKU */
+    public JComboBox<String> getComboBox() {
+        return comboBox;
+    }
+
+    /** @return the index currently searched */
+    public SkuIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Swaps in a new index and re-runs the current search. The selection is
+     * kept. If nothing is selected yet, the first SKU is picked, as it would be
+     * in a freshly filled combo box.
+     */
+    public void setIndex(SkuIndex index) {
+        if (index == this.index) {
+            return;
+        }
+        boolean first = this.index.size() == 0;
+        this.index = index;
+        model.setMatches(index.search(queryField.getText(), MAX_MATCHES));
+        if (first && comboBox.getSelectedItem() == null && index.size() > 0) {
+            comboBox.setSelectedItem(index.sku(0));
+        }
+    }
+
+    /** Clears the search text, showing the first SKUs again. */
+    public void clearQuery() {
+        queryField.setText("");
+    }
+
+    // Runs on every keystroke; the index answers well within a frame
+    private void search() {
+        model.setMatches(index.search(queryField.getText(), MAX_MATCHES));
+        if (queryField.hasFocus() && comboBox.isShowing()) {
+            comboBox.hidePopup(); // Re-opened so the popup resizes to the new matches
+            if (model.getSize() > 0) {
+                comboBox.showPopup();
+            }
+        }
+    }
+}
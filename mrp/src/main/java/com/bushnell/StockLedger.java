@@ -0,0 +1,214 @@
+package com.bushnell;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only history of every stock change.
+ *
+ * Each change to {@code part.stock} is written together with a row in
+ * {@code stock_movement}, in the same transaction, so the ledger and the
+ * on-hand figure can't disagree. {@code part.stock} stays the O(1) read
+ * everyone uses; the ledger is for audit and replay. On-hand according to the
+ * ledger is the SKU's {@code stock_snapshot} row plus the movements after it.
+ * Snapshots are rolled forward every {@link #SNAPSHOT_INTERVAL} movements, so
+ * that sum never covers more than a bounded tail however long the ledger grows.
+ */
+public final class StockLedger {
+    /** Movements between automatic snapshots. */
+    static final int SNAPSHOT_INTERVAL = 10_000;
+
+    private static final String INSERT =
+        "INSERT INTO stock_movement (sku, delta, kind, reference, recorded_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String LAST_MOVEMENT = "SELECT COALESCE(MAX(movement_id), 0) FROM stock_movement";
+    private static final String LAST_SNAPSHOT = "SELECT COALESCE(MAX(through_id), 0) FROM stock_snapshot";
+    // Folds every movement after the last snapshot into the per-SKU totals
+    private static final String ROLL_FORWARD =
+        "INSERT INTO stock_snapshot (sku, stock, through_id) "
+            + "SELECT sku, SUM(delta), MAX(movement_id) FROM stock_movement WHERE movement_id > ? GROUP BY sku "
+            + "ON CONFLICT (sku) DO UPDATE SET stock = stock + excluded.stock, through_id = excluded.through_id";
+    private static final String ON_HAND =
+        "SELECT COALESCE(s.stock, 0) + COALESCE((SELECT SUM(m.delta) FROM stock_movement m "
+            + "WHERE m.sku = p.sku AND m.movement_id > COALESCE(s.through_id, 0)), 0) "
+            + "FROM (SELECT ? AS sku) p LEFT JOIN stock_snapshot s ON s.sku = p.sku";
+    // Parts whose stock no longer matches the (just rolled forward) snapshot
+    private static final String DRIFT =
+        "SELECT p.sku, COALESCE(p.stock, 0) - COALESCE(s.stock, 0) FROM part p "
+            + "LEFT JOIN stock_snapshot s ON s.sku = p.sku WHERE COALESCE(p.stock, 0) <> COALESCE(s.stock, 0)";
+    private static final String HISTORY =
+        "SELECT movement_id, sku, delta, kind, reference, recorded_at FROM stock_movement "
+            + "WHERE sku = ? ORDER BY movement_id DESC LIMIT ?";
+
+    private StockLedger() {
+    }
+
+    /** Why stock moved. */
+    public enum Kind {
+        /** Goods received from outside. */
+        RECEIPT,
+        /** Components used up by a bundle. */
+        CONSUME,
+        /** Assemblies produced by a bundle. */
+        BUILD,
+        /** Manual correction or count, including imports. */
+        ADJUST
+    }
+
+    /** One row of the ledger. */
+    public static final class Movement {
+        private final long id;
+        private final String sku;
+        private final int delta;
+        private final Kind kind;
+        private final String reference;
+        private final long recordedAt;
+
+        /** A movement to record; id and time are assigned when it is written. */
+        public Movement(String sku, int delta, Kind kind, String reference) {
+            this(0, sku, delta, kind, reference, 0);
+        }
+
+        Movement(long id, String sku, int delta, Kind kind, String reference, long recordedAt) {
+            this.id = id;
+            this.sku = sku;
+            this.delta = delta;
+            this.kind = kind;
+            this.reference = reference;
+            this.recordedAt = recordedAt;
+        }
+
+        /** @return ledger position, or 0 if not yet written */
+        public long getId() {
+            return id;
+        }
+
+        public String getSku() {
+            return sku;
+        }
+
+        public int getDelta() {
+            return delta;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** @return free text saying what caused the movement, may be null */
+        public String getReference() {
+            return reference;
+        }
+
+        /** @return epoch milliseconds when written */
+        public long getRecordedAt() {
+            return recordedAt;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + (delta > 0 ? "+" : "") + delta + " " + sku;
+        }
+    }
+
+    /**
+     * Appends movements as one batch on the caller's transaction, rolling the
+     * snapshot forward if enough movements have built up since the last one.
+     * The caller changes {@code part.stock} to match in the same transaction.
+     */
+    public static void record(Connection conn, List<Movement> movements) throws SQLException {
+        if (movements.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (PreparedStatement insert = conn.prepareStatement(INSERT)) {
+            for (Movement movement : movements) {
+                insert.setString(1, movement.getSku());
+                insert.setInt(2, movement.getDelta());
+                insert.setString(3, movement.getKind().name());
+                insert.setString(4, movement.getReference());
+                insert.setLong(5, now);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        if (queryLong(conn, LAST_MOVEMENT) - queryLong(conn, LAST_SNAPSHOT) >= SNAPSHOT_INTERVAL) {
+            snapshot(conn);
+        }
+    }
+
+    /**
+     * Rolls every SKU's snapshot forward to the latest movement.
+     *
+     * @return the number of SKUs whose snapshot changed
+     */
+    public static int snapshot(Connection conn) throws SQLException {
+        try (PreparedStatement roll = conn.prepareStatement(ROLL_FORWARD)) {
+            roll.setLong(1, queryLong(conn, LAST_SNAPSHOT));
+            return roll.executeUpdate();
+        }
+    }
+
+    /**
+     * @return on-hand stock of {@code sku} replayed from the ledger; 0 if it never moved
+     */
+    public static int onHand(Connection conn, String sku) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(ON_HAND)) {
+            select.setString(1, sku);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Records an {@link Kind#ADJUST} movement for every part whose stock was
+     * changed without going through the ledger, e.g. by a bulk import, so
+     * that replaying the ledger gives {@code part.stock} again. Takes a
+     * snapshot first. Run it on the same transaction as the change.
+     *
+     * @param reference what caused the change
+     * @return the adjustments written
+     */
+    public static List<Movement> reconcile(Connection conn, String reference) throws SQLException {
+        snapshot(conn);
+        List<Movement> adjustments = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(DRIFT)) {
+            while (rs.next()) {
+                adjustments.add(new Movement(rs.getString(1), rs.getInt(2), Kind.ADJUST, reference));
+            }
+        }
+        record(conn, adjustments);
+        return adjustments;
+    }
+
+    /**
+     * @return the latest {@code limit} movements of {@code sku}, newest first
+     */
+    public static List<Movement> history(Connection conn, String sku, int limit) throws SQLException {
+        List<Movement> movements = new ArrayList<>();
+        try (PreparedStatement select = conn.prepareStatement(HISTORY)) {
+            select.setString(1, sku);
+            select.setInt(2, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    movements.add(new Movement(rs.getLong(1), rs.getString(2), rs.getInt(3),
+                            Kind.valueOf(rs.getString(4)), rs.getString(5), rs.getLong(6)));
+                }
+            }
+        }
+        return movements;
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -15,16 +15,19 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
@@ -37,12 +40,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 
 
 
@@ -50,13 +47,13 @@ public class StockReport extends JPanel {
 
     private final String dbPath;
     private JTable table;
-    private DefaultTableModel tableModel;
+    private PagedPartModel tableModel;
+    private JTextField filterField;
+    private JProgressBar exportProgress;
+    private Timer filterDebounce;
 
     public StockReport() {
-        this.dbPath = java.nio.file.Paths.get("")
-            .toAbsolutePath()
-            .resolve("VR-Factory.db")
-            .toString();
+        this.dbPath = Database.get().getPath();
         setLayout(new BorderLayout());
 
         // ===== Top panel with title and buttons =====
@@ -67,6 +64,20 @@ public class StockReport extends JPanel {
         title.setFont(new Font("Arial", Font.BOLD, 22));
         topPanel.add(title, BorderLayout.WEST);
 
+        // Filter box; the query only reruns once typing pauses
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filter:"));
+        filterField = new JTextField(18);
+        filterPanel.add(filterField);
+        topPanel.add(filterPanel, BorderLayout.CENTER);
+        filterDebounce = new Timer(200, e -> tableModel.setFilter(filterField.getText()));
+        filterDebounce.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { filterDebounce.restart(); }
+            public void removeUpdate(DocumentEvent e) { filterDebounce.restart(); }
+            public void changedUpdate(DocumentEvent e) { filterDebounce.restart(); }
+        });
+
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton exportButton = new JButton("Export Report as PDF");
         exportButton.addActionListener(e -> exportToPDF(dbPath));
@@ -79,6 +90,10 @@ public class StockReport extends JPanel {
         quickSaveButton.addActionListener(e -> quickSavePDF(dbPath));
 
 
+        exportProgress = new JProgressBar(0, 100);
+        exportProgress.setStringPainted(true);
+        exportProgress.setVisible(false); // only shown while an export runs
+        buttonPanel.add(exportProgress);
         buttonPanel.add(exportButton);
         buttonPanel.add(printButton);
         buttonPanel.add(quickSaveButton);
@@ -87,24 +102,31 @@ public class StockReport extends JPanel {
         add(topPanel, BorderLayout.NORTH);
 
         // ===== Table setup =====
-        String[] columnNames = {"SKU", "Description", "Price", "Stock"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Rows are paged in from SQLite as they scroll into view; sorting and filtering run in SQL
+        tableModel = new PagedPartModel(Database.get());
+        tableModel.setErrorHandler(e -> {
+            Metrics.error("Failed to load stock report");
+            JOptionPane.showMessageDialog(this, "Failed to load stock report: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+        });
 
         table = new JTable(tableModel);
         table.setFont(new Font("Menlo", Font.PLAIN, 13));
         table.setRowHeight(22);
-        table.setAutoCreateRowSorter(true);
         table.getTableHeader().setReorderingAllowed(false);
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int col = table.columnAtPoint(e.getPoint());
+                if (col == -1) return;
+                tableModel.sortBy(table.convertColumnIndexToModel(col));
+                updateSortHeader();
+            }
+        });
 
         table.getColumnModel().getColumn(0).setPreferredWidth(150);
         table.getColumnModel().getColumn(1).setPreferredWidth(400);
         table.getColumnModel().getColumn(2).setPreferredWidth(80);
         table.getColumnModel().getColumn(3).setPreferredWidth(80);
+        updateSortHeader();
 
         table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
             @Override
@@ -144,7 +166,7 @@ public class StockReport extends JPanel {
         copyItem.addActionListener(e -> {
             int row = table.getSelectedRow();
             int col = table.getSelectedColumn();
-            if (row != -1 && col != -1) {
+            if (row != -1 && col != -1 && table.getValueAt(row, col) != null) {
                 Object value = table.getValueAt(row, col);
                 StringSelection selection = new StringSelection(value.toString());
                 Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
@@ -157,194 +179,138 @@ public class StockReport extends JPanel {
         updateReport();
     }
 
+    /**
+     * Prints the whole report in the table's current sort and filter order.
+     * Rows are read from the database a printed page at a time, in the
+     * background, since the on-screen table only holds the pages that have
+     * been scrolled to.
+     */
     private void printReport() {
         java.awt.print.PrinterJob job = java.awt.print.PrinterJob.getPrinterJob();
-        job.setPrintable(table.getPrintable(JTable.PrintMode.FIT_WIDTH, null, null));
-    
-        if (job.printDialog()) {
-            try {
+        int[] widths = new int[tableModel.getColumnCount()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = table.getColumnModel().getColumn(table.convertColumnIndexToView(i)).getWidth();
+        }
+        job.setPrintable(new StockReportPrintable(Database.get(), tableModel.currentQuery(),
+                table.getFont(), table.getRowHeight(), widths));
+        if (!job.printDialog()) return;
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
                 job.print();
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Print error: " + ex.getMessage(), "Print Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+                return null;
             }
-        }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception e) {
+                    Throwable cause = e instanceof java.util.concurrent.ExecutionException ? e.getCause() : e;
+                    cause.printStackTrace();
+                    Metrics.error("Failed to print report");
+                    JOptionPane.showMessageDialog(StockReport.this, "Print error: " + cause.getMessage(), "Print Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+                }
+            }
+        }.execute();
     }
     
     
     private void quickSavePDF(String dbPath) {
-        try {
-            String timestamp = new java.text.SimpleDateFormat("yyyy.MM.dd-HH.mm").format(new java.util.Date());
-            String fileName = "VR-StockReport-" + timestamp + ".pdf";
-            java.io.File pdfFile = new java.io.File(new java.io.File(dbPath).getParentFile(), fileName);
-    
-            // Same PDF logic reused from exportToPDF
-            com.itextpdf.text.Document document = new com.itextpdf.text.Document();
-            com.itextpdf.text.pdf.PdfWriter writer = com.itextpdf.text.pdf.PdfWriter.getInstance(document, new java.io.FileOutputStream(pdfFile));
-            document.open();
-    
-            com.itextpdf.text.Font titleFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 16, com.itextpdf.text.Font.BOLD);
-            com.itextpdf.text.Font headerFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 12, com.itextpdf.text.Font.BOLD);
-            com.itextpdf.text.Font bodyFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 11);
-    
-            int rowsPerPage = 40;
-            int totalRows = table.getRowCount();
-            int totalPages = (int) Math.ceil((double) totalRows / rowsPerPage);
-    
-            for (int page = 0; page < totalPages; page++) {
-                if (page > 0) document.newPage();
-    
-                com.itextpdf.text.Paragraph title = new com.itextpdf.text.Paragraph("Visual Robotics Stock Report", titleFont);
-                title.setAlignment(com.itextpdf.text.Element.ALIGN_CENTER);
-                document.add(title);
-    
-                String dateStr = new java.text.SimpleDateFormat("MMMM dd, yyyy HH:mm").format(new java.util.Date());
-                com.itextpdf.text.Paragraph meta = new com.itextpdf.text.Paragraph("Generated: " + dateStr + "   |   Page " + (page + 1) + " of " + totalPages, bodyFont);
-                meta.setAlignment(com.itextpdf.text.Element.ALIGN_CENTER);
-                meta.setSpacingAfter(10);
-                document.add(meta);
-    
-                com.itextpdf.text.pdf.PdfPTable pdfTable = new com.itextpdf.text.pdf.PdfPTable(table.getColumnCount());
-                pdfTable.setWidthPercentage(100);
-    
-                for (int i = 0; i < table.getColumnCount(); i++) {
-                    pdfTable.addCell(new com.itextpdf.text.Phrase(table.getColumnName(i), headerFont));
-                }
-    
-                com.itextpdf.text.pdf.PdfPCell underline = new com.itextpdf.text.pdf.PdfPCell(new com.itextpdf.text.Phrase(" "));
-                underline.setColspan(table.getColumnCount());
-                underline.setBorder(com.itextpdf.text.Rectangle.BOTTOM);
-                pdfTable.addCell(underline);
-    
-                int startRow = page * rowsPerPage;
-                int endRow = Math.min(startRow + rowsPerPage, totalRows);
-                for (int row = startRow; row < endRow; row++) {
-                    for (int col = 0; col < table.getColumnCount(); col++) {
-                        Object value = table.getValueAt(row, col);
-                        pdfTable.addCell(new com.itextpdf.text.Phrase(value != null ? value.toString() : "", bodyFont));
-                    }
-                }
+        String timestamp = new java.text.SimpleDateFormat("yyyy.MM.dd-HH.mm").format(new java.util.Date());
+        String fileName = "VR-StockReport-" + timestamp + ".pdf";
+        exportReport(new java.io.File(new java.io.File(dbPath).getParentFile(), fileName));
+    }
     
-                document.add(pdfTable);
-            }
     
-            document.close();
-JOptionPane.showMessageDialog(this, "PDF saved to:\n" + pdfFile.getAbsolutePath(), "Export Successful", JOptionPane.INFORMATION_MESSAGE, getVRIcon());
+    private void exportToPDF(String dbPath) {
+        String defaultFileName = "VR-StockReport.pdf";
 
-    
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Failed to save PDF: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+        // === Get database directory ===
+        java.io.File dbDir = new java.io.File(dbPath).getParentFile();
 
+        // === Setup JFileChooser to that directory ===
+        JFileChooser fileChooser = new JFileChooser(dbDir);
+        fileChooser.setSelectedFile(new java.io.File(dbDir, defaultFileName));
+        fileChooser.setDialogTitle("Save Stock Report PDF");
+
+        int result = fileChooser.showSaveDialog(this);
+        if (result != JFileChooser.APPROVE_OPTION) return;
+
+        // === Get selected file and ensure it ends in .pdf ===
+        java.io.File pdfFile = fileChooser.getSelectedFile();
+        if (!pdfFile.getName().toLowerCase().endsWith(".pdf")) {
+            pdfFile = new java.io.File(pdfFile.getAbsolutePath() + ".pdf");
         }
+        exportReport(pdfFile);
     }
-    
-    
-    private void exportToPDF(String dbPath) {
-        try {
-            String defaultFileName = "VR-StockReport.pdf";
-    
-            // === Get database directory ===
-            java.io.File dbDir = new java.io.File(dbPath).getParentFile();
-    
-            // === Setup JFileChooser to that directory ===
-            JFileChooser fileChooser = new JFileChooser(dbDir);
-            fileChooser.setSelectedFile(new java.io.File(dbDir, defaultFileName));
-            fileChooser.setDialogTitle("Save Stock Report PDF");
-    
-            int result = fileChooser.showSaveDialog(this);
-            if (result != JFileChooser.APPROVE_OPTION) return;
-    
-            // === Get selected file and ensure it ends in .pdf ===
-            java.io.File pdfFile = fileChooser.getSelectedFile();
-            if (!pdfFile.getName().toLowerCase().endsWith(".pdf")) {
-                pdfFile = new java.io.File(pdfFile.getAbsolutePath() + ".pdf");
-            }
-    
-            // === Begin PDF creation ===
-            com.itextpdf.text.Document document = new com.itextpdf.text.Document();
-            com.itextpdf.text.pdf.PdfWriter.getInstance(document, new java.io.FileOutputStream(pdfFile));
-            document.open();
-    
-            com.itextpdf.text.Font titleFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 16, com.itextpdf.text.Font.BOLD);
-            com.itextpdf.text.Font headerFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 12, com.itextpdf.text.Font.BOLD);
-            com.itextpdf.text.Font bodyFont = new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 11);
-    
-            int rowsPerPage = 40;
-            int totalRows = table.getRowCount();
-            int totalPages = (int) Math.ceil((double) totalRows / rowsPerPage);
-    
-            for (int page = 0; page < totalPages; page++) {
-                if (page > 0) document.newPage();
-    
-                // Title
-                com.itextpdf.text.Paragraph title = new com.itextpdf.text.Paragraph("Visual Robotics Stock Report", titleFont);
-                title.setAlignment(com.itextpdf.text.Element.ALIGN_CENTER);
-                document.add(title);
-    
-                // Timestamp & Page number
-                String dateStr = new java.text.SimpleDateFormat("MMMM dd, yyyy HH:mm").format(new java.util.Date());
-                com.itextpdf.text.Paragraph meta = new com.itextpdf.text.Paragraph("Generated: " + dateStr + "   |   Page " + (page + 1) + " of " + totalPages, bodyFont);
-                meta.setAlignment(com.itextpdf.text.Element.ALIGN_CENTER);
-                meta.setSpacingAfter(10);
-                document.add(meta);
-    
-                // Table headers
-                com.itextpdf.text.pdf.PdfPTable pdfTable = new com.itextpdf.text.pdf.PdfPTable(table.getColumnCount());
-                pdfTable.setWidthPercentage(100);
-    
-                for (int i = 0; i < table.getColumnCount(); i++) {
-                    pdfTable.addCell(new com.itextpdf.text.Phrase(table.getColumnName(i), headerFont));
-                }
-    
-                // Underline
-                com.itextpdf.text.pdf.PdfPCell underline = new com.itextpdf.text.pdf.PdfPCell(new com.itextpdf.text.Phrase(" "));
-                underline.setColspan(table.getColumnCount());
-                underline.setBorder(com.itextpdf.text.Rectangle.BOTTOM);
-                pdfTable.addCell(underline);
-    
-                // Rows
-                int startRow = page * rowsPerPage;
-                int endRow = Math.min(startRow + rowsPerPage, totalRows);
-                for (int row = startRow; row < endRow; row++) {
-                    for (int col = 0; col < table.getColumnCount(); col++) {
-                        Object value = table.getValueAt(row, col);
-                        pdfTable.addCell(new com.itextpdf.text.Phrase(value != null ? value.toString() : "", bodyFont));
+
+    /**
+     * Streams the report, in the table's current sort and filter order, from a
+     * database cursor into {@code pdfFile} in the background.
+     */
+    private void exportReport(java.io.File pdfFile) {
+        PagedPartModel.Query query = tableModel.currentQuery();
+        exportProgress.setValue(0);
+        exportProgress.setString("Exporting...");
+        exportProgress.setVisible(true);
+        revalidate();
+
+        new SwingWorker<Integer, Integer>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                try (Database.Handle db = Database.get().open();
+                     java.io.OutputStream out = new java.io.BufferedOutputStream(new java.io.FileOutputStream(pdfFile))) {
+                    int total = query.count(db);
+                    try (java.sql.ResultSet rows = query.rows(db, 0, -1)) {
+                        ReportRenderer renderer = new ReportRenderer("Visual Robotics Stock Report",
+                                "SKU", "Description", "Price", "Stock");
+                        return renderer.render(rows, out, written -> publish(total == 0 ? 100 : written * 100 / total));
                     }
                 }
-    
-                document.add(pdfTable);
             }
-    
-            // ✅ Close the document and show success message
-            document.close();
-            JOptionPane.showMessageDialog(this, "PDF saved to:\n" + pdfFile.getAbsolutePath(), "Export Successful", JOptionPane.INFORMATION_MESSAGE, getVRIcon());
-    
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Failed to export PDF: " + e.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
-        }
-    }     
 
-    public void updateReport() {
-        tableModel.setRowCount(0);
-    
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT sku, description, price, stock FROM part")) {
-    
-            while (rs.next()) {
-                String sku = rs.getString("sku");
-                String desc = rs.getString("description");
-                double price = rs.getDouble("price");
-                int stock = rs.getInt("stock");
-    
-                tableModel.addRow(new Object[]{sku, desc, String.format("%.3f", price), stock});
+            @Override
+            protected void process(java.util.List<Integer> percents) {
+                int percent = percents.get(percents.size() - 1);
+                exportProgress.setValue(percent);
+                exportProgress.setString("Exporting " + percent + "%");
             }
-    
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading stock report: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
 
+            @Override
+            protected void done() {
+                exportProgress.setVisible(false);
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(StockReport.this, "PDF saved to:\n" + pdfFile.getAbsolutePath(), "Export Successful", JOptionPane.INFORMATION_MESSAGE, getVRIcon());
+                } catch (Exception e) {
+                    Throwable cause = e instanceof java.util.concurrent.ExecutionException ? e.getCause() : e;
+                    cause.printStackTrace();
+                    Metrics.error("Failed to export PDF");
+                    JOptionPane.showMessageDialog(StockReport.this, "Failed to export PDF: " + cause.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+                }
+            }
+        }.execute();
+    }
+
+    /** Reloads the report from the database, keeping the current sort and filter. */
+    public void updateReport() {
+        tableModel.refresh();
+    }
+
+    // Show the sort direction on the sorted column's header
+    private void updateSortHeader() {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            TableColumn column = table.getColumnModel().getColumn(i);
+            int modelIndex = column.getModelIndex();
+            String name = tableModel.getColumnName(modelIndex);
+            if (modelIndex == tableModel.getSortColumn()) {
+                name += tableModel.isAscending() ? " \u25B2" : " \u25BC";
+            }
+            column.setHeaderValue(name);
         }
+        table.getTableHeader().repaint();
     }
 
     private ImageIcon getVRIcon() {
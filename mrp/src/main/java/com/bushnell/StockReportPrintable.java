@@ -0,0 +1,147 @@
+package com.bushnell;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Prints the stock report one page of rows at a time, in the order of a
+ * {@link PagedPartModel.Query}.
+ *
+ * Each printed page is read with its own query when the printer asks for it,
+ * so only one page of rows is ever in memory. Printers usually ask for the
+ * same page more than once, so the last page read is kept, and the page after
+ * it is read by keyset from its last row rather than by offset. Columns are scaled to the page width in proportion to the widths
+ * given. Printing runs on whatever thread calls {@code PrinterJob.print()},
+ * which should not be the event dispatch thread.
+ */
+public final class StockReportPrintable implements Printable {
+    private static final String[] HEADERS = {"SKU", "Description", "Price", "Stock"};
+    private static final int CELL_PADDING = 3;
+
+    private final Database database;
+    private final PagedPartModel.Query query;
+    private final Font font;
+    private final Font headerFont;
+    private final int rowHeight;
+    private final int[] columnWidths;
+
+    private int rowsPerPage; // fixed by the first page, so offsets stay consistent
+    private int cachedIndex = -1;
+    private String[][] cachedRows;
+    private Object lastValue; // sort column and SKU of the cached page's last row
+    private String lastSku;
+
+    /**
+     * @param query sort and filter to print
+     * @param font body font; headers use its bold form
+     * @param rowHeight height of one row in points
+     * @param columnWidths relative widths of SKU, description, price and stock
+     */
+    public StockReportPrintable(Database database, PagedPartModel.Query query, Font font, int rowHeight,
+                                int... columnWidths) {
+        this.database = database;
+        this.query = query;
+        this.font = font;
+        this.headerFont = font.deriveFont(Font.BOLD);
+        this.rowHeight = rowHeight;
+        this.columnWidths = columnWidths;
+    }
+
+    @Override
+    public int print(Graphics graphics, PageFormat format, int pageIndex) throws PrinterException {
+        if (rowsPerPage == 0) {
+            rowsPerPage = Math.max(1, (int) (format.getImageableHeight() / rowHeight) - 1);
+        }
+        String[][] rows = page(pageIndex);
+        if (rows.length == 0 && pageIndex > 0) {
+            return NO_SUCH_PAGE;
+        }
+
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.translate(format.getImageableX(), format.getImageableY());
+            int[] x = columnEdges((int) format.getImageableWidth());
+            g.setFont(headerFont);
+            drawRow(g, HEADERS, x, 0);
+            g.drawLine(0, rowHeight, x[x.length - 1], rowHeight);
+            g.setFont(font);
+            for (int r = 0; r < rows.length; r++) {
+                drawRow(g, rows[r], x, (r + 1) * rowHeight);
+            }
+        } finally {
+            g.dispose();
+        }
+        return PAGE_EXISTS;
+    }
+
+    // Left edge of every column plus the right edge of the last, scaled to the page width
+    private int[] columnEdges(int pageWidth) {
+        int total = 0;
+        for (int width : columnWidths) {
+            total += width;
+        }
+        int[] x = new int[columnWidths.length + 1];
+        int sum = 0;
+        for (int c = 0; c < columnWidths.length; c++) {
+            sum += columnWidths[c];
+            x[c + 1] = (int) ((long) pageWidth * sum / total);
+        }
+        return x;
+    }
+
+    private void drawRow(Graphics2D g, String[] cells, int[] x, int top) {
+        FontMetrics metrics = g.getFontMetrics();
+        int baseline = top + (rowHeight + metrics.getAscent() - metrics.getDescent()) / 2;
+        for (int c = 0; c < cells.length; c++) {
+            String text = cells[c] == null ? "" : cells[c];
+            int width = x[c + 1] - x[c];
+            Graphics cell = g.create(x[c], top, width, rowHeight);
+            try {
+                // Stock is right-aligned like the on-screen column; text too long for a column is cut off
+                int left = c == 3 ? width - CELL_PADDING - metrics.stringWidth(text) : CELL_PADDING;
+                cell.drawString(text, left, baseline - top);
+            } finally {
+                cell.dispose();
+            }
+        }
+    }
+
+    // Rows of one printed page, read from the database unless it is the page printed last
+    private String[][] page(int pageIndex) throws PrinterException {
+        if (pageIndex == cachedIndex) {
+            return cachedRows;
+        }
+        String[][] rows = new String[rowsPerPage][];
+        int count = 0;
+        Object last = null;
+        boolean next = pageIndex == cachedIndex + 1 && cachedRows != null && cachedRows.length == rowsPerPage;
+        try (Database.Handle db = database.open();
+             ResultSet rs = next ? query.rowsAfter(db, lastValue, lastSku, rowsPerPage)
+                     : query.rows(db, pageIndex * rowsPerPage, rowsPerPage)) {
+            while (rs.next()) {
+                rows[count++] = new String[]{rs.getString(1), rs.getString(2),
+                        String.format(Locale.ROOT, "%.3f", rs.getDouble(3)), Integer.toString(rs.getInt(4))};
+                last = query.sortValue(rs);
+            }
+        } catch (SQLException e) {
+            PrinterException failure = new PrinterException("Failed to read page " + (pageIndex + 1)
+                    + " of the report: " + e.getMessage());
+            failure.initCause(e);
+            throw failure;
+        }
+        cachedRows = count == rows.length ? rows : Arrays.copyOf(rows, count);
+        cachedIndex = pageIndex;
+        lastValue = last;
+        lastSku = count == 0 ? null : rows[count - 1][0];
+        return cachedRows;
+    }
+}
@@ -3,6 +3,8 @@ package com.bushnell;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.sql.*;
+import java.util.Collections;
+import java.util.Locale;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 
@@ -18,18 +20,22 @@ public class UpdateStockPanel extends JPanel {
     private static final int COMBOBOX_WIDTH = 200;  // Width of the combo box for SKU selection
     private static final int DECIMAL_PLACES = 3;  // Number of decimal places for the price field
 
-    // Path to the SQLite database
-    private static final String DB_PATH = "jdbc:sqlite:VR-Factory.db";
-
     // UI components
+    private SkuSearchBox skuSearch;  // Type-ahead search that feeds the combo box
     private JComboBox<String> skuComboBox;  // Combo box for selecting SKU
     private JTextField descriptionField;  // Text field to display the description of the selected SKU
     private JTextField priceField;  // Text field to display and edit the price of the selected SKU
     private JTextField stockField;  // Text field to display and edit the stock quantity of the selected SKU
     private JButton updateButton;  // Button to submit the updated stock information
+    private JLabel changedLabel;  // Warns that the part changed underneath unsaved edits
     private JTable recordTable;  // Table to display the full record of the selected SKU
     private DefaultTableModel tableModel;  // Model for the SKU table
 
+    // Background work; a newer lookup cancels an older one, but an update always runs to completion
+    private final AsyncQuery<SkuCatalog.Entry> partQuery = new AsyncQuery<>("update select SKU");
+    private final AsyncWrite<PartUpdate> updateWrite = new AsyncWrite<>("update part");
+    private SkuCatalog.Entry shownPart;  // The row as last displayed; edits are applied relative to it
+
     /**
      * Constructs the UpdateStockPanel UI.
      * Initializes the layout, components (labels, text fields, combo box, buttons), 
@@ -61,9 +67,10 @@ public class UpdateStockPanel extends JPanel {
         gbc.gridy = 0;  // Position in the first row
         panel.add(skuLabel, gbc);  // Add the SKU label to the panel
 
-        skuComboBox = new JComboBox<>();  // Create a combo box for SKU selection
+        skuSearch = new SkuSearchBox();  // Search field plus a combo box of the best matches
+        skuComboBox = skuSearch.getComboBox();
         gbc.gridx = 1;  // Position in the second column
-        panel.add(skuComboBox, gbc);  // Add the combo box to the panel
+        panel.add(skuSearch, gbc);  // Add the search box to the panel
         skuComboBox.addActionListener(this::onSKUSelected);  // Add an action listener to handle SKU selection
 
         // Description Label and Field
@@ -97,11 +104,18 @@ public class UpdateStockPanel extends JPanel {
         gbc.gridx = 1;
         panel.add(stockField, gbc);
 
+        // Changed-since-loaded warning, blank until another write lands under an edit
+        changedLabel = new JLabel(" ");
+        changedLabel.setForeground(Color.RED);
+        gbc.gridx = 1;
+        gbc.gridy = 4;
+        panel.add(changedLabel, gbc);
+
         // Update Record Button - Centered
         updateButton = new JButton("Update Record");  // Create the update button
         updateButton.addActionListener(this::onUpdateClicked);  // Add an action listener to handle the update
         gbc.gridx = 0;
-        gbc.gridy = 4;
+        gbc.gridy = 5;
         gbc.gridwidth = 2;  // Make the button span across both columns
         gbc.anchor = GridBagConstraints.CENTER;  // Center the button
         panel.add(updateButton, gbc);
@@ -121,17 +135,38 @@ public class UpdateStockPanel extends JPanel {
     }
 
     private void loadSKUs() {
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT sku FROM part")) {
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(false), index -> {
+            skuSearch.setIndex(index);
+            SkuCatalog.get().addListener(this::catalogChanged);
+        }, e -> showError("Error loading SKUs", e));
+    }
 
-            while (rs.next()) {
-                skuComboBox.addItem(rs.getString("sku"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading SKUs: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+    /**
+     * Follows catalog changes: picks up a rebuilt index if SKUs were added or
+     * removed, and re-reads the selected SKU if it was one of the changed rows.
+     * Fields the operator has edited are left alone; a warning shows the new
+     * values instead, and saving then reports the conflict.
+     */
+    private void catalogChanged(java.util.Set<String> changed) {
+        // Stock and price changes hand back the same index, which setIndex ignores
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(false), skuSearch::setIndex,
+            e -> showError("Error reloading SKUs", e));
+        String selected = (String) skuComboBox.getSelectedItem();
+        if (selected == null || (changed != null && !changed.contains(selected))) {
+            return;
         }
+
+        partQuery.submit(() -> SkuCatalog.get().entry(selected), part -> {
+            if (part == null) {
+                return;
+            }
+            if (!isEdited() || (priceField.getText().equals(formatPrice(part))
+                    && stockField.getText().equals(String.valueOf(part.getStock())))) {
+                showPart(part);  // nothing typed, or what was typed is what's now stored
+                return;
+            }
+            changedLabel.setText("Changed since loaded: now price " + formatPrice(part) + ", stock " + part.getStock());
+        }, ex -> showError("Error loading SKU data", ex));
     }
 
     private void onSKUSelected(ActionEvent e) {
@@ -140,29 +175,40 @@ public class UpdateStockPanel extends JPanel {
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             PreparedStatement stmt = conn.prepareStatement("SELECT description, price, stock FROM part WHERE sku = ?")) {
+        partQuery.submit(() -> SkuCatalog.get().entry(selectedSKU), part -> {
+            if (part != null) {
+                showPart(part);
+            }
+        }, ex -> showError("Error loading SKU data", ex));
+    }
 
-            stmt.setString(1, selectedSKU);
-            ResultSet rs = stmt.executeQuery();
+    /**
+     * Shows a part's current row and makes it the base for edits.
+     */
+    private void showPart(SkuCatalog.Entry part) {
+        shownPart = part;
+        String price = formatPrice(part);
+        descriptionField.setText(part.getDescription());
+        priceField.setText(price);
+        stockField.setText(String.valueOf(part.getStock()));
+        changedLabel.setText(" ");
+
+        tableModel.setRowCount(0);
+        tableModel.addRow(new Object[]{part.getSku(), part.getDescription(), price, part.getStock()});
+    }
 
-            if (rs.next()) {
-                descriptionField.setText(rs.getString("description"));
-                priceField.setText(String.format("%." + DECIMAL_PLACES + "f", rs.getDouble("price")));
-                stockField.setText(String.valueOf(rs.getInt("stock")));
+    /**
+     * @return whether the price or stock field no longer holds what was last shown
+     */
+    private boolean isEdited() {
+        SkuCatalog.Entry shown = shownPart;
+        return shown != null && shown.getSku().equals(skuComboBox.getSelectedItem())
+                && (!priceField.getText().equals(formatPrice(shown))
+                    || !stockField.getText().equals(String.valueOf(shown.getStock())));
+    }
 
-                tableModel.setRowCount(0);
-                tableModel.addRow(new Object[]{
-                        selectedSKU,
-                        rs.getString("description"),
-                        String.format("%." + DECIMAL_PLACES + "f", rs.getDouble("price")),
-                        rs.getInt("stock")
-                });
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading SKU data: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
-        }
+    private static String formatPrice(SkuCatalog.Entry part) {
+        return String.format(Locale.ROOT, "%." + DECIMAL_PLACES + "f", part.getPrice());
     }
 
     private void onUpdateClicked(ActionEvent e) {
@@ -174,51 +220,79 @@ public class UpdateStockPanel extends JPanel {
         int response = JOptionPane.showConfirmDialog(this, "Are you sure you want to update the record?", "Confirm Update", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, getVRIcon());
 
         if (response == JOptionPane.YES_OPTION) {
+            double newPrice;
+            int newStock;
             try {
-                double newPrice = Double.parseDouble(priceField.getText());
-                int newStock = Integer.parseInt(stockField.getText());
-
-                try (Connection conn = DriverManager.getConnection(DB_PATH);
-                     PreparedStatement stmt = conn.prepareStatement("UPDATE part SET price = ?, stock = ? WHERE sku = ?")) {
+                newPrice = Double.parseDouble(priceField.getText());
+                newStock = Integer.parseInt(stockField.getText());
+            } catch (NumberFormatException nfe) {
+                JOptionPane.showMessageDialog(this, "Invalid number format.", "Invalid Input", JOptionPane.ERROR_MESSAGE, getVRIcon());
+                return;
+            }
 
-                    stmt.setDouble(1, newPrice);
-                    stmt.setInt(2, newStock);
-                    stmt.setString(3, selectedSKU);
+            SkuCatalog.Entry seen = shownPart;
+            if (seen == null || !seen.getSku().equals(selectedSKU)) {
+                return; // details for this SKU haven't loaded yet
+            }
 
-                    int rows = stmt.executeUpdate();
-                    if (rows > 0) {
+            if (!updateWrite.submit(() -> {
+                PartUpdate update;
+                try (Database.Handle db = Database.get().open()) {
+                    update = PartUpdate.apply(db, seen, newPrice, newStock, "manual update");
+                }
+                if (update.getStatus() != PartUpdate.Status.UNCHANGED) {
+                    // Picks up our write, or whatever another operator wrote instead
+                    SkuCatalog.get().refresh(Collections.singleton(selectedSKU));
+                }
+                return update;
+            }, update -> {
+                setEditable(true);
+                switch (update.getStatus()) {
+                    case UPDATED:
                         JOptionPane.showMessageDialog(this, "Stock updated successfully.", "Update Successful", JOptionPane.INFORMATION_MESSAGE, getVRIcon());
-                        refreshTable(selectedSKU);
-                    } else {
+                        break;
+                    case UNCHANGED:
                         JOptionPane.showMessageDialog(this, "No changes made.", "No Update", JOptionPane.WARNING_MESSAGE, getVRIcon());
-                    }
+                        break;
+                    case CONFLICT:
+                        onSKUSelected(null);  // the edit is discarded, so show what is stored now
+                        JOptionPane.showMessageDialog(this, "Another user changed this part while you were editing it.\n"
+                                + "Your changes were not saved; the current values are now shown.", "Update Conflict", JOptionPane.WARNING_MESSAGE, getVRIcon());
+                        break;
+                    case INSUFFICIENT_STOCK:
+                        onSKUSelected(null);
+                        JOptionPane.showMessageDialog(this, "Stock has changed since it was shown and can't go that low.\n"
+                                + "Your changes were not saved; the current values are now shown.", "Update Conflict", JOptionPane.WARNING_MESSAGE, getVRIcon());
+                        break;
+                    default:
+                        JOptionPane.showMessageDialog(this, "This part no longer exists.", "No Update", JOptionPane.WARNING_MESSAGE, getVRIcon());
+                        break;
                 }
-            } catch (NumberFormatException nfe) {
-                JOptionPane.showMessageDialog(this, "Invalid number format.", "Invalid Input", JOptionPane.ERROR_MESSAGE, getVRIcon());
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+            }, ex -> {
+                setEditable(true);
+                showError("Database error updating part", ex);
+            })) {
+                return;  // an earlier update is still running
             }
+            setEditable(false);  // no second update until this one has reported back
         }
     }
+
+    /**
+     * Shows an error dialog and prints stack trace for debugging.
+     */
+    private void showError(String msg, Exception e) {
+        e.printStackTrace();
+        Metrics.error(msg);
+        JOptionPane.showMessageDialog(this, msg + ":\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
+    }
 
-    private void refreshTable(String selectedSKU) {
-        try (Connection conn = DriverManager.getConnection(DB_PATH);
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM part WHERE sku = ?")) {
-
-            stmt.setString(1, selectedSKU);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                tableModel.setValueAt(rs.getString("sku"), 0, 0);
-                tableModel.setValueAt(rs.getString("description"), 0, 1);
-                tableModel.setValueAt(rs.getDouble("price"), 0, 2);
-                tableModel.setValueAt(rs.getInt("stock"), 0, 3);
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error refreshing the table: " + ex.getMessage(), "Refresh Error", JOptionPane.ERROR_MESSAGE, getVRIcon());
-        }
+    /**
+     * Enables or disables the update button and the editable fields.
+     */
+    private void setEditable(boolean editable) {
+        updateButton.setEnabled(editable);
+        priceField.setEditable(editable);
+        stockField.setEditable(editable);
     }
 }
-
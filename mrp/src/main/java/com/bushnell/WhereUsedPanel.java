@@ -0,0 +1,160 @@
+package com.bushnell;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Panel that implodes the BOM above a part: every assembly and top-level
+ * product that uses it, with how many of the part one unit of each consumes
+ * and how many units the part's stock on hand covers. Assemblies the stock
+ * can't cover even once are shown in red, so a short raw part shows what it
+ * blocks at a glance.
+ */
+public class WhereUsedPanel extends JPanel {
+    private final SkuSearchBox skuSearch;
+    private final JComboBox<String> skuComboBox;
+    private final JLabel descLabel;
+    private final JLabel stockLabel;
+    private final DefaultTableModel tableModel;
+
+    // Latest in-flight lookup; a new one cancels the previous
+    private final AsyncQuery<List<Object[]>> lookup = new AsyncQuery<>("where used");
+
+    public WhereUsedPanel() {
+        setLayout(new BorderLayout(10, 10));
+
+        // Title label
+        JLabel title = new JLabel("Where Used", SwingConstants.CENTER);
+        title.setFont(new Font("Arial", Font.BOLD, 20));
+        add(title, BorderLayout.NORTH);
+
+        // Input panel: SKU search, description and stock of the chosen part
+        JPanel inputPanel = new JPanel();
+        inputPanel.setLayout(new BoxLayout(inputPanel, BoxLayout.Y_AXIS));
+        skuSearch = new SkuSearchBox();
+        skuComboBox = skuSearch.getComboBox();
+        descLabel = new JLabel();
+        stockLabel = new JLabel();
+
+        JPanel skuRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        skuRow.add(new JLabel("SKU:"));
+        skuRow.add(skuSearch);
+        inputPanel.add(skuRow);
+
+        JPanel descRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        descRow.add(new JLabel("Description:"));
+        descRow.add(descLabel);
+        inputPanel.add(descRow);
+
+        JPanel stockRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        stockRow.add(new JLabel("Stock:"));
+        stockRow.add(stockLabel);
+        inputPanel.add(stockRow);
+
+        add(inputPanel, BorderLayout.WEST);
+
+        // Ancestors, nearest first
+        tableModel = new DefaultTableModel(
+                new String[]{"SKU", "Description", "Qty Per", "Stock", "Top Level", "Covers"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                switch (column) {
+                    case 2:
+                    case 5:
+                        return Long.class;
+                    case 3:
+                        return Integer.class;
+                    case 4:
+                        return Boolean.class;
+                    default:
+                        return String.class;
+                }
+            }
+        };
+        JTable resultTable = new JTable(tableModel);
+        resultTable.setAutoCreateRowSorter(true);
+        resultTable.getColumnModel().getColumn(1).setPreferredWidth(300);
+
+        // Red where the part's stock doesn't cover a single unit of the assembly
+        DefaultTableCellRenderer coverRenderer = new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                if (!isSelected) {
+                    c.setBackground((Long) value == 0 ? new Color(255, 102, 102) : Color.WHITE);
+                }
+                return c;
+            }
+        };
+        coverRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        resultTable.getColumnModel().getColumn(5).setCellRenderer(coverRenderer);
+        add(new JScrollPane(resultTable), BorderLayout.CENTER);
+
+        loadSKUs();
+    }
+
+    // Load the search index of every SKU; events are hooked up once it arrives
+    private void loadSKUs() {
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(false), index -> {
+            skuSearch.setIndex(index);
+            skuComboBox.addActionListener(e -> lookUp());
+            SkuCatalog.get().addListener(this::catalogChanged);
+        }, e -> showError("Failed to load SKUs", e));
+    }
+
+    // Stock moves change the Covers column; added or removed parts change the list
+    private void catalogChanged(Set<String> changed) {
+        new AsyncQuery<SkuIndex>().submit(() -> SkuCatalog.get().index(false), skuSearch::setIndex,
+                e -> showError("Failed to reload SKUs", e));
+        if (skuComboBox.getSelectedItem() != null) {
+            lookUp();
+        }
+    }
+
+    private void lookUp() {
+        String sku = (String) skuComboBox.getSelectedItem();
+        if (sku == null) return;
+        lookup.submit(() -> whereUsed(sku), this::showRows,
+                e -> showError("Failed to find where the part is used", e));
+    }
+
+    // The part's own row first, then one row per assembly that uses it
+    private static List<Object[]> whereUsed(String sku) throws SQLException {
+        SkuCatalog.Entry part = MrpService.get().part(sku);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{part == null ? "" : part.getDescription(), part == null ? "" : part.getStock()});
+        for (MrpService.Usage usage : MrpService.get().whereUsed(sku)) {
+            rows.add(new Object[]{usage.getSku(), usage.getDescription(), usage.getQuantityPer(),
+                usage.getStock(), usage.isTopLevel(), usage.getCovers()});
+        }
+        return rows;
+    }
+
+    private void showRows(List<Object[]> rows) {
+        descLabel.setText(String.valueOf(rows.get(0)[0]));
+        stockLabel.setText(String.valueOf(rows.get(0)[1]));
+        tableModel.setRowCount(0);
+        for (Object[] row : rows.subList(1, rows.size())) {
+            tableModel.addRow(row);
+        }
+    }
+
+    // Show error message dialog and print stack trace
+    private void showError(String msg, Exception e) {
+        e.printStackTrace();
+        Metrics.error(msg);
+        JOptionPane.showMessageDialog(this, msg + ":\n" + e.getMessage());
+    }
+}
@@ -2,7 +2,14 @@ package com.bushnell;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit test for simple App.
@@ -15,4 +22,55 @@ class AppTest {
     void testApp() {
         assertEquals(1, 1);
     }
+
+    @Test
+    void badCommandLinesAreUsageErrors() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true);
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true);
+
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("frobnicate")), out, errStream));
+        assertTrue(err.toString().contains("unknown command 'frobnicate'"));
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("explode", "SUB-1")), out, errStream));
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("explode", "SUB-1", "-3")), out, errStream));
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("stock", "-o")), out, errStream));
+    }
+
+    @Test
+    void delegatedCommandsReportUsageErrorsThroughRun() throws Exception {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true);
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true);
+
+        // Each of these used to call System.exit from the delegate's main()
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("import", "parts.csv")), out, errStream));
+        assertTrue(err.toString().contains("usage: CatalogImporter"));
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("serve", "--port", "x")), out, errStream));
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("generate")), out, errStream));
+
+        File file = File.createTempFile("mrp-app-", ".db");
+        file.deleteOnExit();
+        err.reset();
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("generate", file.getPath(),
+                "--parts", "50", "--seed")), out, errStream));
+        assertTrue(err.toString().contains("--seed needs a value"), err.toString());
+        assertEquals(App.EXIT_USAGE, App.run(new ArrayList<>(Arrays.asList("generate", file.getPath(),
+                "--colour", "red")), out, errStream));
+    }
+
+    @Test
+    void bomCommandWalksTheGraphOrTheRecursiveQuery() throws Exception {
+        TestDatabase.load(
+                "INSERT INTO part (sku, description, price, stock) VALUES ('SUB-1', 'Top', 0, 0), "
+                        + "('RAW-A', 'Screw, small', 0.5, 10)",
+                "INSERT INTO bom VALUES ('1', 'SUB-1', NULL, 1, 1), ('2', 'RAW-A', 'SUB-1', 3, 0)");
+        PrintStream err = new PrintStream(new ByteArrayOutputStream(), true);
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+        ByteArrayOutputStream sql = new ByteArrayOutputStream();
+
+        assertEquals(0, App.run(new ArrayList<>(Arrays.asList("bom", "SUB-1")), new PrintStream(graph, true), err));
+        assertEquals(0, App.run(new ArrayList<>(Arrays.asList("bom", "SUB-1", "--sql")), new PrintStream(sql, true), err));
+        assertTrue(graph.toString().contains("RAW-A"), graph.toString());
+        assertEquals(graph.toString(), sql.toString());
+    }
 }
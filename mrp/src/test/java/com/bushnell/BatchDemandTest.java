@@ -0,0 +1,115 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for order book parsing and batch demand analysis.
+ */
+class BatchDemandTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory(
+                // SUB-1 = 2 x SUB-2 + 3 x RAW-A, SUB-2 = 4 x RAW-B
+                "INSERT INTO part VALUES ('SUB-1', 'Top', 0, 0), ('SUB-2', 'Middle', 0, 1), "
+                        + "('RAW-A', 'Screw', 0.5, 10), ('RAW-B', 'Nut', 0.25, 6)",
+                "INSERT INTO bom VALUES ('1', 'SUB-1', NULL, 1, 1), ('2', 'SUB-2', 'SUB-1', 2, 0), "
+                        + "('3', 'RAW-A', 'SUB-1', 3, 0), ('4', 'RAW-B', 'SUB-2', 4, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    private static List<BatchDemand.Order> read(String csv) throws IOException {
+        return BatchDemand.readOrders(new StringReader(csv));
+    }
+
+    @Test
+    void readsOrdersAndSkipsHeaderAndBlankLines() throws IOException {
+        List<BatchDemand.Order> orders = read("\nsku,quantity\nSUB-1, 2\n\nSUB-2,5\n");
+        assertEquals(2, orders.size());
+        assertEquals("SUB-1", orders.get(0).getSku());
+        assertEquals(2, orders.get(0).getQuantity());
+        assertEquals("SUB-2", orders.get(1).getSku());
+        assertEquals(5, orders.get(1).getQuantity());
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        IOException e = assertThrows(IOException.class, () -> read("sku,qty\nSUB-1,0\n"));
+        assertTrue(e.getMessage().startsWith("Line 2:"), e.getMessage());
+        e = assertThrows(IOException.class, () -> read("SUB-1,-3\n"));
+        assertTrue(e.getMessage().startsWith("Line 1:"), e.getMessage());
+        // Only a line with no digits at all counts as a header
+        e = assertThrows(IOException.class, () -> read("SUB-1,two\nSUB-2,1\n"));
+        assertTrue(e.getMessage().startsWith("Line 1:"), e.getMessage());
+        e = assertThrows(IOException.class, () -> read("SUB-1,1\nsku,quantity\n"));
+        assertTrue(e.getMessage().startsWith("Line 2:"), e.getMessage());
+        assertThrows(IOException.class, () -> read("SUB-1\n"));
+    }
+
+    @Test
+    void rejectsNonPositiveOrdersBuiltInCode() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchDemand.run(graph, Arrays.asList(new BatchDemand.Order("SUB-1", 2),
+                        new BatchDemand.Order("SUB-1", -1))));
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchDemand.run(graph, Arrays.asList(new BatchDemand.Order("SUB-9", 1))));
+    }
+
+    @Test
+    void consolidatedRunNetsAllOrdersTogether() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        BatchDemand batch = BatchDemand.run(graph, Arrays.asList(new BatchDemand.Order("SUB-1", 2),
+                new BatchDemand.Order("SUB-1", 1)));
+        MrpRun total = batch.getConsolidated();
+        assertEquals(5, total.net(graph.indexOf("SUB-2")));   // 3 x 2 - 1 in stock
+        assertEquals(9, total.gross(graph.indexOf("RAW-A")));
+        assertEquals(0, total.net(graph.indexOf("RAW-A")));
+        assertEquals(20, total.gross(graph.indexOf("RAW-B"))); // 5 x 4
+        assertEquals(14, total.net(graph.indexOf("RAW-B")));
+    }
+
+    @Test
+    void laterOrdersOnlySeeStockEarlierOrdersLeft() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        BatchDemand batch = BatchDemand.run(graph, Arrays.asList(new BatchDemand.Order("SUB-1", 2),
+                new BatchDemand.Order("SUB-1", 1)));
+        List<BatchDemand.Line> lines = batch.getLines();
+        assertEquals(4, lines.size());
+
+        // Order 1 takes the spare SUB-2, all six RAW-B and six of the ten RAW-A
+        assertLine(lines.get(0), 1, graph.indexOf("RAW-A"), 6, 0);
+        assertLine(lines.get(1), 1, graph.indexOf("RAW-B"), 12, 6);
+        // Order 2 builds both SUB-2 from scratch with no RAW-B left
+        assertLine(lines.get(2), 2, graph.indexOf("RAW-A"), 3, 0);
+        assertLine(lines.get(3), 2, graph.indexOf("RAW-B"), 8, 8);
+        // The per-order shortages add up to the consolidated one
+        assertEquals(batch.getConsolidated().net(graph.indexOf("RAW-B")),
+                lines.get(1).getShortage() + lines.get(3).getShortage());
+    }
+
+    private static void assertLine(BatchDemand.Line line, int orderNumber, int component, int need, int shortage) {
+        assertEquals(orderNumber, line.getOrderNumber());
+        assertEquals(component, line.getComponent());
+        assertEquals(need, line.getNeed());
+        assertEquals(shortage, line.getShortage());
+    }
+}
@@ -0,0 +1,52 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the indented BOM export.
+ */
+class BomExporterTest {
+    private static final String EXPECTED = "0\t-SUB-TOP\t\t\t1\n"
+            + "1\t---RAW-A\t3\t0\t3\n"
+            + "1\t---SUB-MID\t2\t1\t2\n"
+            + "2\t------RAW-A\t5\t0\t10\n"
+            + "2\t------RAW-B\t1\t0\t2\n";
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory(
+                "INSERT INTO part VALUES ('SUB-TOP', 'Top', 0, 0), ('SUB-MID', 'Middle', 0, 0), "
+                        + "('RAW-A', 'Screw', 0, 0), ('RAW-B', 'Nut', 0, 0)",
+                // Rows deliberately out of SKU order; the export sorts siblings
+                "INSERT INTO bom VALUES ('1', 'SUB-TOP', NULL, 1, 1), ('2', 'SUB-MID', 'SUB-TOP', 2, 1), "
+                        + "('3', 'RAW-B', 'SUB-MID', 1, 0), ('4', 'RAW-A', 'SUB-MID', 5, 0), "
+                        + "('5', 'RAW-A', 'SUB-TOP', 3, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void sqlAndGraphGiveTheSameRolledUpTree() throws Exception {
+        ByteArrayOutputStream sql = new ByteArrayOutputStream();
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+        assertEquals(5, BomExporter.exportSql(conn, "SUB-TOP", BomExporter.Format.TEXT, sql));
+        assertEquals(5, BomExporter.exportGraph(BomGraph.load(conn), "SUB-TOP", BomExporter.Format.TEXT, graph));
+
+        assertEquals(EXPECTED, new String(sql.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(EXPECTED, new String(graph.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
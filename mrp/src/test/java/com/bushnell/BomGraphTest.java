@@ -0,0 +1,84 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the in-memory BOM graph.
+ */
+class BomGraphTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory(
+                // SUB-1 = 2 x SUB-2 + 3 x RAW-A, SUB-2 = 4 x RAW-B
+                "INSERT INTO part VALUES ('SUB-1', 'Top', 0, 0), ('SUB-2', 'Middle', 0, 1), "
+                        + "('RAW-A', 'Screw', 0.5, 10), ('RAW-B', 'Nut', 0.25, 0)",
+                "INSERT INTO bom VALUES ('1', 'SUB-1', NULL, 1, 1), ('2', 'SUB-2', 'SUB-1', 2, 0), "
+                        + "('3', 'RAW-A', 'SUB-1', 3, 0), ('4', 'RAW-B', 'SUB-2', 4, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void loadsPartsAndEdges() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        assertEquals(4, graph.size());
+        int top = graph.indexOf("SUB-1");
+        assertEquals(2, graph.endChild(top) - graph.firstChild(top));
+        assertFalse(graph.isRaw(top));
+        assertTrue(graph.isRaw(graph.indexOf("RAW-A")));
+        assertEquals(10, graph.stock(graph.indexOf("RAW-A")));
+        assertEquals(-1, graph.indexOf("MISSING"));
+    }
+
+    @Test
+    void ranksNodesByLowLevelCode() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        assertEquals(0, graph.lowLevelCode(graph.indexOf("SUB-1")));
+        assertEquals(1, graph.lowLevelCode(graph.indexOf("SUB-2")));
+        assertEquals(2, graph.lowLevelCode(graph.indexOf("RAW-B")));
+        assertEquals(graph.indexOf("SUB-1"), graph.levelOrder(0));
+        assertEquals(graph.indexOf("RAW-B"), graph.levelOrder(graph.size() - 1));
+    }
+
+    @Test
+    void implodesToEveryAncestorWithQuantityPer() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // SUB-1 also uses RAW-B directly, so it reaches it by two paths: 2 x 4 + 5
+            stmt.execute("INSERT INTO bom VALUES ('5', 'RAW-B', 'SUB-1', 5, 0)");
+        }
+        BomGraph graph = BomGraph.load(conn);
+        BomGraph.Implosion rawB = graph.implode(graph.indexOf("RAW-B"));
+        assertEquals(2, rawB.size());
+        assertEquals(graph.indexOf("SUB-2"), rawB.id(0));
+        assertEquals(4, rawB.quantityPer(0));
+        assertEquals(graph.indexOf("SUB-1"), rawB.id(1));
+        assertEquals(13, rawB.quantityPer(1));
+        assertTrue(graph.isTopLevel(rawB.id(1)));
+        assertFalse(graph.isTopLevel(rawB.id(0)));
+        assertEquals(0, graph.implode(graph.indexOf("SUB-1")).size());
+    }
+
+    @Test
+    void rejectsCycles() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO bom VALUES ('5', 'SUB-1', 'RAW-B', 1, 0)");
+        }
+        assertThrows(SQLException.class, () -> BomGraph.load(conn));
+    }
+}
@@ -0,0 +1,119 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the max-buildable calculation.
+ */
+class BuildCapacityTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory(
+                // SUB-TOP needs 2 SUB-MID (1 in stock) and 1 RAW-B; SUB-MID needs 3 RAW-A
+                "INSERT INTO part VALUES ('SUB-TOP', 'Top', 0, 4), ('SUB-MID', 'Middle', 0, 1), "
+                        + "('RAW-A', 'Screw', 0, 6), ('RAW-B', 'Nut', 0, 5)",
+                "INSERT INTO bom VALUES ('1', 'SUB-MID', 'SUB-TOP', 2, 0), "
+                        + "('2', 'RAW-A', 'SUB-MID', 3, 0), ('3', 'RAW-B', 'SUB-TOP', 1, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void buildsIntermediatesAndNamesTheBottleneck() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        BuildCapacity capacity = BuildCapacity.compute(graph);
+        int top = graph.indexOf("SUB-TOP");
+        int mid = graph.indexOf("SUB-MID");
+
+        // 1 SUB-MID on hand plus 2 built from 6 RAW-A covers one SUB-TOP
+        assertEquals(2, capacity.maxBuildable(mid));
+        assertEquals(1, capacity.maxBuildable(top));
+        assertEquals(graph.indexOf("RAW-A"), capacity.bottleneck(top));
+        assertTrue(BuildPlan.plan(graph, "SUB-TOP", 1).isFeasible());
+        assertFalse(BuildPlan.plan(graph, "SUB-TOP", 2).isFeasible());
+        assertEquals(0, capacity.maxBuildable(graph.indexOf("RAW-A")));
+    }
+
+    @Test
+    void sharedPartsAreCountedOnce() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // SUB-TOP also takes 4 RAW-A itself: 3 for the SUB-MID it builds plus 4 is more than 6
+            stmt.execute("INSERT INTO bom VALUES ('4', 'RAW-A', 'SUB-TOP', 4, 0)");
+        }
+        BomGraph graph = BomGraph.load(conn);
+        BuildCapacity capacity = BuildCapacity.compute(graph);
+        int top = graph.indexOf("SUB-TOP");
+        assertEquals(0, capacity.maxBuildable(top));
+        assertEquals(graph.indexOf("RAW-A"), capacity.bottleneck(top));
+        assertFalse(BuildPlan.plan(graph, "SUB-TOP", 1).isFeasible());
+        assertTrue(capacity.isShared(top));
+        assertFalse(capacity.isShared(graph.indexOf("SUB-MID")));
+    }
+
+    @Test
+    void partsReachedThroughTwoSubAssembliesAreShared() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // SUB-TOP also takes a SUB-SIDE, which needs 2 RAW-A: 3 for SUB-MID plus 2 is within 6 once
+            stmt.execute("INSERT INTO part VALUES ('SUB-SIDE', 'Side', 0, 0)");
+            stmt.execute("INSERT INTO bom VALUES ('4', 'SUB-SIDE', 'SUB-TOP', 1, 0), ('5', 'RAW-A', 'SUB-SIDE', 2, 0)");
+        }
+        BomGraph graph = BomGraph.load(conn);
+        BuildCapacity capacity = BuildCapacity.compute(graph);
+        int top = graph.indexOf("SUB-TOP");
+
+        assertTrue(capacity.isShared(top));
+        assertFalse(capacity.isShared(graph.indexOf("SUB-SIDE")));
+        assertEquals(1, capacity.maxBuildable(top));
+        assertTrue(BuildPlan.plan(graph, "SUB-TOP", 1).isFeasible());
+        assertFalse(BuildPlan.plan(graph, "SUB-TOP", 2).isFeasible());
+    }
+
+    @Test
+    void partsSharedWithOtherAssembliesDontNeedChecking() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // SUB-KIT uses RAW-A and RAW-B too, but nothing reaches either twice
+            stmt.execute("INSERT INTO part VALUES ('SUB-KIT', 'Kit', 0, 0)");
+            stmt.execute("INSERT INTO bom VALUES ('4', 'RAW-A', 'SUB-KIT', 2, 0), ('5', 'RAW-B', 'SUB-KIT', 1, 0)");
+        }
+        BomGraph graph = BomGraph.load(conn);
+        BuildCapacity capacity = BuildCapacity.compute(graph);
+        int top = graph.indexOf("SUB-TOP");
+        int kit = graph.indexOf("SUB-KIT");
+
+        assertFalse(capacity.isShared(top));
+        assertFalse(capacity.isShared(graph.indexOf("SUB-MID")));
+        assertFalse(capacity.isShared(kit));
+        // Each is counted against all the stock, as if built alone
+        assertEquals(1, capacity.maxBuildable(top));
+        assertEquals(3, capacity.maxBuildable(kit));
+        assertEquals(graph.indexOf("RAW-A"), capacity.bottleneck(kit));
+    }
+
+    @Test
+    void assemblyWithNoCountedComponentsBuildsNothing() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO part VALUES ('SUB-EMPTY', 'Kit', 0, 0)");
+            stmt.execute("INSERT INTO bom VALUES ('4', 'RAW-A', 'SUB-EMPTY', 0, 0)");
+        }
+        BomGraph graph = BomGraph.load(conn);
+        BuildCapacity capacity = BuildCapacity.compute(graph);
+        int kit = graph.indexOf("SUB-EMPTY");
+        assertEquals(0, capacity.maxBuildable(kit));
+        assertEquals(-1, capacity.bottleneck(kit));
+    }
+}
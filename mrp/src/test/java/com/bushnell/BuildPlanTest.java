@@ -0,0 +1,63 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for build-through planning.
+ */
+class BuildPlanTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory(
+                // SUB-TOP needs 2 SUB-MID (1 in stock); SUB-MID needs 3 RAW-A
+                "INSERT INTO part VALUES ('SUB-TOP', 'Top', 0, 4), ('SUB-MID', 'Middle', 0, 1), "
+                        + "('RAW-A', 'Screw', 0, 6)",
+                "INSERT INTO bom VALUES ('1', 'SUB-MID', 'SUB-TOP', 2, 0), "
+                        + "('2', 'RAW-A', 'SUB-MID', 3, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void buildsShortAssembliesFirst() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        BuildPlan plan = BuildPlan.plan(graph, "SUB-TOP", 1);
+
+        // Stock of SUB-TOP itself doesn't count: the requested unit is always built
+        assertTrue(plan.isFeasible());
+        assertEquals(2, plan.getSteps().size());
+        assertEquals("1 x SUB-MID", plan.getSteps().get(0).toString());
+        assertEquals("1 x SUB-TOP", plan.getSteps().get(1).toString());
+
+        // Net effect: one SUB-MID built and consumed along with the one on hand
+        Map<String, Integer> deltas = Bundler.stockDeltas(graph, plan.getBuilds());
+        assertEquals(Integer.valueOf(1), deltas.get("SUB-TOP"));
+        assertEquals(Integer.valueOf(-1), deltas.get("SUB-MID"));
+        assertEquals(Integer.valueOf(-3), deltas.get("RAW-A"));
+    }
+
+    @Test
+    void reportsRawShortages() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        BuildPlan plan = BuildPlan.plan(graph, "SUB-TOP", 3);
+
+        // 6 SUB-MID needed, 1 on hand, 5 x 3 = 15 screws against 6
+        assertFalse(plan.isFeasible());
+        assertEquals(Integer.valueOf(9), plan.getShortages().get("RAW-A"));
+    }
+}
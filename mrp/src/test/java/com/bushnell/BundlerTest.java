@@ -0,0 +1,93 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for bundling against the application database.
+ */
+class BundlerTest {
+    @BeforeEach
+    void setUp() throws SQLException {
+        // SUB-1 = 2 x SUB-2 + 3 x RAW-A, SUB-2 = 4 x RAW-B
+        TestDatabase.load(
+                "INSERT INTO part (sku, description, price, stock) VALUES ('SUB-1', 'Top', 0, 0), "
+                        + "('SUB-2', 'Middle', 0, 0), ('RAW-A', 'Screw', 0.5, 10), ('RAW-B', 'Nut', 0.25, 8)",
+                "INSERT INTO bom VALUES ('1', 'SUB-1', NULL, 1, 1), ('2', 'SUB-2', 'SUB-1', 2, 0), "
+                        + "('3', 'RAW-A', 'SUB-1', 3, 0), ('4', 'RAW-B', 'SUB-2', 4, 0)");
+    }
+
+    private static int stock(String sku) throws SQLException {
+        try (Database.Handle db = Database.get().open()) {
+            return SkuCatalog.read(db.connection(), sku).getStock();
+        }
+    }
+
+    // Every ledger row as "sku kind delta", oldest first
+    private static List<String> ledger() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Database.Handle db = Database.get().open();
+             PreparedStatement select = db.connection().prepareStatement(
+                     "SELECT sku, kind, delta FROM stock_movement ORDER BY movement_id");
+             ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                rows.add(rs.getString(1) + " " + rs.getString(2) + " " + rs.getInt(3));
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void bundlesSeveralUnitsAtOnce() throws SQLException {
+        Bundler.bundle("SUB-2", 2);
+        assertEquals(2, stock("SUB-2"));
+        assertEquals(0, stock("RAW-B"));
+        assertEquals(2, SkuCatalog.get().entry("SUB-2").getStock()); // catalog refreshed too
+        assertEquals(2, BomGraph.get().stock(BomGraph.get().indexOf("SUB-2")));
+        assertEquals(Arrays.asList("SUB-2 BUILD 2", "RAW-B CONSUME -8"), ledger());
+    }
+
+    @Test
+    void rollsBackEverythingWhenAnyComponentIsShort() throws SQLException {
+        Map<String, Integer> builds = new LinkedHashMap<>();
+        builds.put("SUB-2", 1); // would succeed on its own
+        builds.put("SUB-1", 1); // needs 2 SUB-2, only 1 is built
+        Bundler.InsufficientStockException e =
+                assertThrows(Bundler.InsufficientStockException.class, () -> Bundler.bundle(builds));
+        assertEquals(Collections.singletonList("SUB-2"), e.getSkus());
+
+        // The RAW-A and RAW-B updates in the same batch succeeded but were rolled back
+        assertEquals(10, stock("RAW-A"));
+        assertEquals(8, stock("RAW-B"));
+        assertEquals(0, stock("SUB-2"));
+        assertEquals(0, stock("SUB-1"));
+        assertEquals(Collections.emptyList(), ledger());
+    }
+
+    @Test
+    void buildThroughRecordsEveryStepInTheLedger() throws SQLException {
+        BuildPlan plan = Bundler.buildThrough("SUB-1", 1);
+        assertEquals(2, plan.getSteps().size());
+        assertEquals(1, stock("SUB-1"));
+        assertEquals(0, stock("SUB-2")); // built and used up again
+        assertEquals(7, stock("RAW-A"));
+        assertEquals(0, stock("RAW-B"));
+
+        // SUB-2 nets to 0 but its build and consumption are both on record
+        assertEquals(Arrays.asList("SUB-2 BUILD 2", "RAW-B CONSUME -8",
+                "SUB-1 BUILD 1", "SUB-2 CONSUME -2", "RAW-A CONSUME -3"), ledger());
+    }
+}
@@ -0,0 +1,131 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for importing parts.csv and bom.txt.
+ */
+class CatalogImporterTest {
+    private static final String PARTS = "sku,description,price,stock\r\n"
+            + "SUB-1,Camera,0,0\r\n"
+            + "PCA-1 Serialized,Board serialized,0,0\r\n"
+            + "PCA-1 Raw,Board raw,12.5,3\r\n"
+            + "CMP-9 (nut),Bulkhead nut,1,0\r\n"
+            + "CMP-9 (o-ring),O-Ring for sleeve,0,0\r\n";
+
+    private static final String BOM = "ID  PART                 QTY SER DESCRIPTION\r\n"
+            + "01  SUB-1                 1   S  Camera\r\n"
+            + "02    PCA-1, Serialized   1   S  Board, serialized\r\n"
+            + "03       PCA-1, Raw       1      Board, raw\r\n"
+            + "04    CMP-9               2      Bulkhead nut\r\n"
+            + "05    CMP-9               1      O-Ring for sleeve\r\n";
+
+    private Connection conn;
+    private Path parts;
+    private Path bom;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SchemaMigrator.migrate(conn);
+        parts = Files.createTempFile("parts", ".csv");
+        bom = Files.createTempFile("bom", ".txt");
+        Files.write(parts, PARTS.getBytes(StandardCharsets.UTF_8));
+        Files.write(bom, BOM.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException, IOException {
+        conn.close();
+        Files.deleteIfExists(parts);
+        Files.deleteIfExists(bom);
+    }
+
+    @Test
+    void rebuildsEdgesFromIndentation() throws Exception {
+        CatalogImporter.Summary summary = new CatalogImporter(conn).run(parts, bom);
+
+        assertEquals(5, summary.getPartsRead());
+        assertEquals(5, summary.getBomRead());
+        assertTrue(summary.getWarnings().isEmpty());
+        // Odd indentation still nests under the nearest shallower line
+        assertEquals("PCA-1 Serialized", bomValue("3", "parent_sku"));
+        assertEquals("PCA-1 Raw", bomValue("3", "sku"));
+        assertEquals(null, bomValue("1", "parent_sku"));
+        // Bare base numbers are told apart by description
+        assertEquals("CMP-9 (nut)", bomValue("4", "sku"));
+        assertEquals("CMP-9 (o-ring)", bomValue("5", "sku"));
+        assertEquals("1", bomValue("2", "serialized"));
+    }
+
+    @Test
+    void deltaWritesOnlyChangedRows() throws Exception {
+        new CatalogImporter(conn).run(parts, bom);
+        Files.write(parts, PARTS.replace("PCA-1 Raw,Board raw,12.5,3", "PCA-1 Raw,Board raw,12.5,7")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(bom, BOM.replace("04    CMP-9               2", "04    CMP-9               4")
+                .replace("05    CMP-9               1      O-Ring for sleeve\r\n", "")
+                .getBytes(StandardCharsets.UTF_8));
+
+        CatalogImporter.Summary summary = new CatalogImporter(conn).setDelta(true).run(parts, bom);
+
+        assertEquals(1, summary.getPartsWritten());
+        assertEquals(1, summary.getBomWritten());
+        assertEquals(1, summary.getBomDeleted());
+        assertEquals("4", bomValue("4", "quantity"));
+    }
+
+    @Test
+    void commandLineReadsDashFromStdinAndSkipsWhatItIsTold() throws Exception {
+        TestDatabase.load();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true);
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true);
+
+        assertEquals(0, CatalogImporter.run(new String[]{"--no-bom", "-"},
+                new ByteArrayInputStream(PARTS.getBytes(StandardCharsets.UTF_8)), out, errStream), err.toString());
+        assertEquals(12.5, SkuCatalog.get().entry("PCA-1 Raw").getPrice());
+        BomGraph graph = BomGraph.get();
+        int top = graph.indexOf("SUB-1");
+        assertEquals(0, graph.endChild(top) - graph.firstChild(top));
+
+        assertEquals(0, CatalogImporter.run(new String[]{"--no-parts", "-"},
+                new ByteArrayInputStream(BOM.getBytes(StandardCharsets.UTF_8)), out, errStream), err.toString());
+        graph = BomGraph.get();
+        top = graph.indexOf("SUB-1");
+        assertEquals(3, graph.endChild(top) - graph.firstChild(top));
+
+        // Both files can't come from stdin, and skipping both leaves nothing to import
+        InputStream none = new ByteArrayInputStream(new byte[0]);
+        assertEquals(2, CatalogImporter.run(new String[]{"-", "-"}, none, out, errStream));
+        assertEquals(2, CatalogImporter.run(new String[]{"--no-parts", "--no-bom"}, none, out, errStream));
+        assertEquals(2, CatalogImporter.run(new String[]{"--no-bom", parts.toString(), bom.toString()}, none, out,
+                errStream));
+    }
+
+    private String bomValue(String id, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + column + " FROM bom WHERE bom_id = '" + id + "'")) {
+            return rs.next() ? rs.getString(1) : "missing";
+        }
+    }
+}
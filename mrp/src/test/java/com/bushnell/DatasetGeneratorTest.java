@@ -0,0 +1,92 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the synthetic dataset generator.
+ */
+class DatasetGeneratorTest {
+    private final List<File> files = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File generate(long seed) throws IOException, SQLException {
+        File file = File.createTempFile("mrp-generated-", ".db");
+        file.delete();
+        files.add(file);
+        new DatasetGenerator().parts(2_000).depth(4).fanOut(4).seed(seed).write(file);
+        return file;
+    }
+
+    private static List<String> rows(File file, String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            List<String> rows = new ArrayList<>();
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    row.append(rs.getString(i)).append('|');
+                }
+                rows.add(row.toString());
+            }
+            return rows;
+        }
+    }
+
+    private static int count(File file, String sql) throws SQLException {
+        return Integer.parseInt(rows(file, sql).get(0).replace("|", ""));
+    }
+
+    @Test
+    void sameSeedGivesTheSameDatabase() throws Exception {
+        File first = generate(7);
+        File second = generate(7);
+        String parts = "SELECT sku, description, price, stock FROM part ORDER BY sku";
+        String bom = "SELECT bom_id, sku, parent_sku, quantity, serialized FROM bom ORDER BY bom_id";
+
+        assertEquals(2_000, rows(first, parts).size());
+        assertEquals(rows(first, parts), rows(second, parts));
+        assertEquals(rows(first, bom), rows(second, bom));
+        assertNotEquals(rows(first, bom), rows(generate(8), bom));
+    }
+
+    @Test
+    void everyAssemblyHasChildrenUnderOneRoot() throws Exception {
+        File file = generate(7);
+        String root = DatasetGenerator.rootSku();
+
+        // The root is an assembly nothing else uses
+        assertEquals(1, count(file, "SELECT COUNT(*) FROM part WHERE sku = '" + root + "'"));
+        assertEquals(0, count(file, "SELECT COUNT(*) FROM bom WHERE sku = '" + root + "'"));
+        assertTrue(count(file, "SELECT COUNT(*) FROM bom WHERE parent_sku = '" + root + "'") > 0);
+        // Every SUB has children, down to the bottom level whose children are raw; raw parts have none
+        assertEquals(0, count(file, "SELECT COUNT(*) FROM part p WHERE sku LIKE 'SUB-%' "
+                + "AND NOT EXISTS (SELECT 1 FROM bom b WHERE b.parent_sku = p.sku)"));
+        assertEquals(0, count(file, "SELECT COUNT(*) FROM bom WHERE parent_sku LIKE 'RAW-%'"));
+        // Every edge joins two generated parts
+        assertEquals(0, count(file, "SELECT COUNT(*) FROM bom b WHERE NOT EXISTS (SELECT 1 FROM part p "
+                + "WHERE p.sku = b.sku) OR NOT EXISTS (SELECT 1 FROM part p WHERE p.sku = b.parent_sku)"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the latency histograms and the timed JDBC wrapper.
+ */
+class MetricsTest {
+
+    @Test
+    void percentilesStayWithinBucketPrecision() {
+        Metrics.Timer timer = Metrics.timer("test percentiles");
+        for (long micros = 1; micros <= 1000; micros++) {
+            timer.record(micros * 1000);
+        }
+        Metrics.Snapshot snapshot = timer.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(500_500, snapshot.getMean());
+        for (double percent : new double[]{50, 90, 99}) {
+            double exact = percent * 10_000;
+            double error = Math.abs(snapshot.percentile(percent) - exact) / exact;
+            assertTrue(error < 0.035, percent + "th percentile off by " + error);
+        }
+        assertEquals(1_000_000, snapshot.percentile(100));
+        for (long value : new long[]{0, 1, 63, 64, 65, 1_000_003, Long.MAX_VALUE}) {
+            assertTrue(Metrics.highestInBucket(Metrics.bucket(value)) >= Math.min(value, 1L << 40) - 1);
+        }
+    }
+
+    @Test
+    void wrappedConnectionTimesEachStatement() throws Exception {
+        try (Connection conn = Metrics.wrap(DriverManager.getConnection("jdbc:sqlite::memory:"))) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE metrics_test (n INTEGER)");
+            }
+            PreparedStatement insert = conn.prepareStatement("INSERT INTO metrics_test VALUES (?)");
+            for (int i = 0; i < 3; i++) {
+                insert.setInt(1, i);
+                insert.executeUpdate();
+            }
+            try (ResultSet rs = conn.prepareStatement("SELECT COUNT(*) FROM metrics_test").executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(3, rs.getInt(1));
+            }
+        }
+        assertEquals(3, Metrics.timer("sql INSERT INTO metrics_test VALUES (?)").snapshot().getCount());
+        assertEquals(1, Metrics.timer("sql CREATE TABLE metrics_test (n INTEGER)").snapshot().getCount());
+    }
+}
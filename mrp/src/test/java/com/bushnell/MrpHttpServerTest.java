@@ -0,0 +1,126 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the HTTP front end: JSON encoding, and each endpoint's
+ * status against a small catalog.
+ */
+class MrpHttpServerTest {
+    private MrpHttpServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // SUB-1 = 2 x SUB-2 + 3 x RAW-A, SUB-2 = 4 x RAW-B
+        TestDatabase.load(
+                "INSERT INTO part (sku, description, price, stock) VALUES ('SUB-1', 'Top', 12.5, 0), "
+                        + "('SUB-2', 'Middle', 0, 0), ('RAW-A', 'Screw', 0.5, 10), ('RAW-B', 'Nut', 0.25, 8)",
+                "INSERT INTO bom VALUES ('1', 'SUB-1', NULL, 1, 1), ('2', 'SUB-2', 'SUB-1', 2, 0), "
+                        + "('3', 'RAW-A', 'SUB-1', 3, 0), ('4', 'RAW-B', 'SUB-2', 4, 0)");
+        server = new MrpHttpServer(MrpService.get(), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /** Status code and body of one request. */
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Response request(String method, String pathAndQuery) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getPort() + pathAndQuery);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        try {
+            conn.setRequestMethod(method);
+            int status = conn.getResponseCode();
+            InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (in != null) {
+                try (InputStream stream = in) {
+                    byte[] buffer = new byte[4096];
+                    int n;
+                    while ((n = stream.read(buffer)) > 0) {
+                        body.write(buffer, 0, n);
+                    }
+                }
+            }
+            return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static String quote(String value) {
+        return MrpHttpServer.quote(new StringBuilder(), value).toString();
+    }
+
+    @Test
+    void quoteEscapesJsonSpecials() {
+        assertEquals("\"SUB-105-V01 Tested\"", quote("SUB-105-V01 Tested"));
+        assertEquals("\"Cable \\\"Y\\\" 2\\\\1\"", quote("Cable \"Y\" 2\\1"));
+        assertEquals("\"a\\nb\\tc\\u0001\"", quote("a\nb\tc\u0001"));
+        assertEquals("null", quote(null));
+    }
+
+    @Test
+    void demandExplodesToRawParts() throws IOException {
+        Response response = request("GET", "/api/demand?sku=SUB-1&qty=2");
+        assertEquals(200, response.status, response.body);
+        assertTrue(response.body.startsWith("{\"sku\":\"SUB-1\",\"qty\":2,\"lines\":["), response.body);
+        assertTrue(response.body.contains("{\"sku\":\"RAW-B\",\"need\":16,\"stock\":8,"), response.body);
+    }
+
+    @Test
+    void bundleWithShortagesIsAConflict() throws Exception {
+        Response response = request("POST", "/api/bundle?sku=SUB-1&units=1");
+        assertEquals(409, response.status, response.body);
+        assertTrue(response.body.contains("SUB-2"), response.body);
+        assertEquals(0, MrpService.get().part("SUB-1").getStock());
+    }
+
+    @Test
+    void unknownSkuIsNotFound() throws IOException {
+        assertEquals(404, request("GET", "/api/demand?sku=NOPE-1").status);
+        assertEquals(404, request("GET", "/api/parts/NOPE-1").status);
+    }
+
+    @Test
+    void malformedRequestsAreBadRequests() throws IOException {
+        Response response = request("GET", "/api/demand?sku=SUB-1&qty=two");
+        assertEquals(400, response.status);
+        assertEquals("{\"error\":\"qty must be a whole number\"}", response.body);
+        assertEquals(400, request("GET", "/api/demand").status);
+        assertEquals(400, request("GET", "/api/reports/stock?format=xls").status);
+        assertEquals(405, request("GET", "/api/bundle?sku=SUB-2").status);
+    }
+
+    @Test
+    void stockCsvUsesAPointAndThreeDecimals() throws IOException {
+        Response response = request("GET", "/api/reports/stock?format=csv");
+        assertEquals(200, response.status);
+        assertTrue(response.body.contains("\nRAW-B,Nut,0.250,8\n"), response.body);
+        assertTrue(response.body.contains("\nSUB-1,Top,12.500,0\n"), response.body);
+    }
+}
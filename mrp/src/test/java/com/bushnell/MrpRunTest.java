@@ -0,0 +1,63 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Unit tests for level-by-level MRP netting.
+ */
+class MrpRunTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory(
+                // SUB-SHARED is used by both SUB-TOP and SUB-MID and has 3 in stock
+                "INSERT INTO part VALUES ('SUB-TOP', 'Top', 0, 0), ('SUB-MID', 'Middle', 0, 0), "
+                        + "('SUB-SHARED', 'Shared', 0, 3), ('RAW-A', 'Screw', 0, 0), ('RAW-B', 'Nut', 0, 100)",
+                "INSERT INTO bom VALUES ('1', 'SUB-MID', 'SUB-TOP', 1, 0), "
+                        + "('2', 'SUB-SHARED', 'SUB-TOP', 2, 0), ('3', 'SUB-SHARED', 'SUB-MID', 2, 0), "
+                        + "('4', 'RAW-A', 'SUB-SHARED', 5, 0), ('5', 'RAW-B', 'SUB-MID', 1, 0)");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void netsSharedAssemblyStockOnce() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        MrpRun run = new MrpRun(graph);
+        run.addDemand(graph.indexOf("SUB-TOP"), 2);
+        run.run();
+
+        int shared = graph.indexOf("SUB-SHARED");
+        // 2 x 2 directly plus 2 x 2 through SUB-MID, less the 3 on hand
+        assertEquals(8, run.gross(shared));
+        assertEquals(5, run.net(shared));
+
+        Map<String, Integer> raw = run.rawRequirements();
+        assertEquals(Integer.valueOf(25), raw.get("RAW-A"));
+        assertEquals(Integer.valueOf(2), raw.get("RAW-B"));
+    }
+
+    @Test
+    void coveredDemandStopsAtTheAssembly() throws SQLException {
+        BomGraph graph = BomGraph.load(conn);
+        MrpRun run = new MrpRun(graph);
+        run.addDemand(graph.indexOf("SUB-SHARED"), 3);
+        run.run();
+
+        assertEquals(0, run.net(graph.indexOf("SUB-SHARED")));
+        assertFalse(run.rawRequirements().containsKey("RAW-A"));
+    }
+}
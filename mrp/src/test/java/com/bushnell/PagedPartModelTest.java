@@ -0,0 +1,80 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the stock report's paged queries.
+ */
+class PagedPartModelTest {
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Ties and NULLs in every sortable column, so keyset reads have to break ties on sku
+        TestDatabase.load("INSERT INTO part (sku, description, price, stock) VALUES "
+                + "('A1', 'Nut', 0.5, 3), ('A2', NULL, 0.5, 3), ('A3', 'Nut', NULL, 1), ('A4', 'Bolt', 0.25, NULL), "
+                + "('A5', NULL, NULL, 2), ('A6', 'Nut', 0.5, 3), ('A7', 'Washer', 1.0, 0)");
+    }
+
+    // The SKUs in a result set, in order
+    private static List<String> skus(ResultSet rows, PagedPartModel.Query query, Object[] last)
+            throws SQLException {
+        List<String> skus = new ArrayList<>();
+        try (ResultSet rs = rows) {
+            while (rs.next()) {
+                skus.add(rs.getString(1));
+                last[0] = query.sortValue(rs);
+            }
+        }
+        return skus;
+    }
+
+    @Test
+    void keysetReadsMatchOffsetReadsInEveryOrder() throws SQLException {
+        PagedPartModel model = new PagedPartModel(Database.get());
+        for (int column = 0; column < 4; column++) {
+            for (int direction = 0; direction < 2; direction++) {
+                model.sortBy(column); // the second call flips the direction
+                PagedPartModel.Query query = model.currentQuery();
+                String order = "column " + column + (model.isAscending() ? " asc" : " desc");
+                try (Database.Handle db = Database.get().open()) {
+                    Object[] last = new Object[1];
+                    List<String> all = skus(query.rows(db, 0, -1), query, last);
+                    assertEquals(7, all.size(), order);
+
+                    // Forwards two rows at a time from the first row
+                    List<String> forwards = skus(query.rows(db, 0, 1), query, last);
+                    while (forwards.size() < all.size()) {
+                        List<String> page = skus(query.rowsAfter(db, last[0], forwards.get(forwards.size() - 1), 2),
+                                query, last);
+                        if (page.isEmpty()) {
+                            break;
+                        }
+                        forwards.addAll(page);
+                    }
+                    assertEquals(all, forwards, order);
+
+                    // Backwards two rows at a time from the last row
+                    List<String> backwards = skus(query.rows(db, all.size() - 1, 1), query, last);
+                    while (backwards.size() < all.size()) {
+                        List<String> page = skus(query.rowsBefore(db, last[0], backwards.get(backwards.size() - 1), 2),
+                                query, last);
+                        if (page.isEmpty()) {
+                            break;
+                        }
+                        backwards.addAll(page);
+                    }
+                    Collections.reverse(backwards);
+                    assertEquals(all, backwards, order);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for compare-and-set part updates.
+ */
+class PartUpdateTest {
+    private Database.Handle db;
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        TestDatabase.load("INSERT INTO part (sku, description, price, stock) VALUES ('RAW-1', 'Screw', 1.5, 10)");
+        db = Database.get().open();
+        conn = db.connection();
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    // Another operator's write, bumping the version through the trigger
+    private void concurrently(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    void staleStockEditIsAppliedAsDeltaOnTopOfConcurrentChange() throws SQLException {
+        SkuCatalog.Entry seen = SkuCatalog.read(conn, "RAW-1");
+        concurrently("UPDATE part SET stock = stock - 3 WHERE sku = 'RAW-1'"); // a bundle used 3
+
+        PartUpdate update = PartUpdate.apply(db, seen, 1.5, 15, "count");
+        assertEquals(PartUpdate.Status.UPDATED, update.getStatus());
+        assertEquals(2, update.getAttempts());
+
+        SkuCatalog.Entry now = SkuCatalog.read(conn, "RAW-1");
+        assertEquals(12, now.getStock()); // 10 - 3 + 5, the bundle is not undone
+        assertEquals(seen.getVersion() + 2, now.getVersion());
+        assertEquals(5, StockLedger.history(conn, "RAW-1", 1).get(0).getDelta());
+    }
+
+    @Test
+    void competingPriceEditOrShortStockIsRefused() throws SQLException {
+        SkuCatalog.Entry seen = SkuCatalog.read(conn, "RAW-1");
+        concurrently("UPDATE part SET price = 2.0 WHERE sku = 'RAW-1'");
+        PartUpdate update = PartUpdate.apply(db, seen, 1.75, 10, "reprice");
+        assertEquals(PartUpdate.Status.CONFLICT, update.getStatus());
+        assertEquals(2.0, update.getCurrent().getPrice(), 1e-9);
+
+        // A stock-only edit still goes through: the price it writes is the current one
+        assertEquals(PartUpdate.Status.UPDATED, PartUpdate.apply(db, seen, 1.5, 11, "count").getStatus());
+        assertEquals(2.0, SkuCatalog.read(conn, "RAW-1").getPrice(), 1e-9);
+
+        seen = SkuCatalog.read(conn, "RAW-1");
+        concurrently("UPDATE part SET stock = 2 WHERE sku = 'RAW-1'");
+        assertEquals(PartUpdate.Status.INSUFFICIENT_STOCK, PartUpdate.apply(db, seen, 2.0, 5, "count").getStatus());
+        assertEquals(2, SkuCatalog.read(conn, "RAW-1").getStock());
+    }
+}
@@ -0,0 +1,82 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for schema migrations and the query plans they enable.
+ */
+class SchemaMigratorTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            for (String ddl : SchemaMigrator.SCHEMA) {
+                stmt.execute(ddl);
+            }
+            stmt.execute("INSERT INTO part VALUES ('SUB-1', 'Top', 0, 0), ('RAW-1', 'Screw', 0, 0)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void migratesOnceAndTagsPartTypes() throws SQLException {
+        assertEquals(SchemaMigrator.LATEST, SchemaMigrator.migrate(conn));
+        assertEquals(0, SchemaMigrator.migrate(conn));
+        assertEquals(SchemaMigrator.LATEST, SchemaMigrator.version(conn));
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO part (sku, description, price, stock) VALUES ('PCA-7 Raw', 'Board', 0, 0)");
+        }
+        assertEquals("SUB", partType("SUB-1"));
+        assertEquals("RAW", partType("RAW-1"));
+        assertEquals("PCA", partType("PCA-7 Raw")); // filled in by the insert trigger
+    }
+
+    @Test
+    void hotQueriesUseCoveringIndexes() throws SQLException {
+        SchemaMigrator.migrate(conn);
+
+        assertTrue(plan("SELECT sku, quantity FROM bom WHERE parent_sku = 'SUB-1'")
+                .contains("COVERING INDEX idx_bom_parent"));
+        assertTrue(plan("SELECT sku FROM part WHERE part_type = 'SUB' ORDER BY sku")
+                .contains("COVERING INDEX idx_part_type"));
+        assertTrue(plan("SELECT stock FROM part WHERE sku = 'SUB-1'").contains("USING INDEX"));
+        assertTrue(plan("SELECT SUM(delta) FROM stock_movement WHERE sku = 'SUB-1' AND movement_id > 0")
+                .contains("COVERING INDEX idx_movement_sku"));
+    }
+
+    private String partType(String sku) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT part_type FROM part WHERE sku = '" + sku + "'")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private String plan(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
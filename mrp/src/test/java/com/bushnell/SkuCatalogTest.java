@@ -0,0 +1,77 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for keeping the shared catalog and graph in step with the database.
+ */
+class SkuCatalogTest {
+    @BeforeEach
+    void setUp() throws SQLException {
+        // SUB-1 = 2 x RAW-A
+        TestDatabase.load(
+                "INSERT INTO part (sku, description, price, stock) VALUES ('SUB-1', 'Top', 0, 0), "
+                        + "('RAW-A', 'Screw', 0.5, 10), ('RAW-B', 'Nut', 0.25, 8)",
+                "INSERT INTO bom VALUES ('1', 'RAW-A', 'SUB-1', 2, 0)");
+    }
+
+    // Another operator's process, writing to the same file without going through the pool
+    private static void elsewhere(String sql) throws SQLException {
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + Database.get().getPath());
+             Statement stmt = other.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    void anotherProcessesStockChangeIsSeen() throws SQLException {
+        SkuCatalog catalog = SkuCatalog.get();
+        assertEquals(10, catalog.entry("RAW-A").getStock());
+        BomGraph graph = BomGraph.get();
+        assertEquals(10, graph.stock(graph.indexOf("RAW-A")));
+        SkuCatalog.Entry untouched = catalog.entry("RAW-B");
+
+        elsewhere("UPDATE part SET stock = 4 WHERE sku = 'RAW-A'");
+        assertEquals(4, catalog.entry("RAW-A").getStock());
+        assertEquals(4, BomGraph.get().stock(BomGraph.get().indexOf("RAW-A")));
+        assertSame(untouched, catalog.entry("RAW-B")); // only the changed row was re-read
+
+        elsewhere("DELETE FROM part WHERE sku = 'RAW-B'");
+        assertNull(catalog.entry("RAW-B"));
+    }
+
+    @Test
+    void anotherProcessesBomChangeReloadsTheGraph() throws SQLException {
+        BomGraph graph = BomGraph.get();
+        int top = graph.indexOf("SUB-1");
+        assertEquals(1, graph.endChild(top) - graph.firstChild(top));
+
+        elsewhere("INSERT INTO bom VALUES ('2', 'RAW-B', 'SUB-1', 1, 0)");
+        graph = BomGraph.get();
+        top = graph.indexOf("SUB-1");
+        assertEquals(2, graph.endChild(top) - graph.firstChild(top));
+    }
+
+    @Test
+    void ownWritesAreNotReadTwice() throws SQLException {
+        SkuCatalog catalog = SkuCatalog.get();
+        SkuCatalog.Entry untouched = catalog.entry("RAW-B");
+        BomGraph.get();
+
+        Bundler.bundle("SUB-1", 1);
+        assertEquals(8, catalog.entry("RAW-A").getStock());
+        assertEquals(1, catalog.entry("SUB-1").getStock());
+        assertSame(untouched, catalog.entry("RAW-B")); // no full reload after the commit
+    }
+}
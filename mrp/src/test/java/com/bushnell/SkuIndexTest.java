@@ -0,0 +1,38 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the type-ahead SKU index.
+ */
+class SkuIndexTest {
+    private final SkuIndex index = SkuIndex.build(
+            Arrays.asList("PCA-110-V01 Raw", "RSI-118-V01 Raw", "SUB-101-V01 Tested", "SUB-105-V01 Tested"),
+            Arrays.asList("Main board", "Screw, M3", null, "Arm assembly with main board"));
+
+    @Test
+    void skuPrefixMatchesComeBeforeWordMatches() {
+        assertEquals(Arrays.asList("SUB-101-V01 Tested", "SUB-105-V01 Tested"), index.search("sub", 10));
+        assertEquals(Arrays.asList("SUB-105-V01 Tested"), index.search("SUB-105", 10));
+        // "main" only appears in descriptions
+        assertEquals(Arrays.asList("PCA-110-V01 Raw", "SUB-105-V01 Tested"), index.search("Main", 10));
+        // Later terms narrow the first one anywhere in the SKU or description
+        assertEquals(Arrays.asList("SUB-105-V01 Tested"), index.search("main arm", 10));
+        assertEquals(Collections.emptyList(), index.search("nothing", 10));
+    }
+
+    @Test
+    void blankQueryListsFirstSkusAndLimitApplies() {
+        List<String> first = index.search("  ", 3);
+        assertEquals(Arrays.asList("PCA-110-V01 Raw", "RSI-118-V01 Raw", "SUB-101-V01 Tested"), first);
+        assertEquals(1, index.search("v01", 1).size());
+        assertTrue(SkuIndex.EMPTY.search("sub", 10).isEmpty());
+    }
+}
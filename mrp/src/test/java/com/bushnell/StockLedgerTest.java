@@ -0,0 +1,74 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the stock movement ledger.
+ */
+class StockLedgerTest {
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.inMemory("INSERT INTO part VALUES ('SUB-1', 'Top', 0, 2), ('RAW-1', 'Screw', 0, 10)");
+        SchemaMigrator.migrate(conn); // existing stock becomes the opening snapshot
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void replaysSnapshotPlusMovements() throws SQLException {
+        StockLedger.record(conn, Arrays.asList(
+                new StockLedger.Movement("SUB-1", 1, StockLedger.Kind.BUILD, "bundle"),
+                new StockLedger.Movement("RAW-1", -4, StockLedger.Kind.CONSUME, "bundle")));
+        StockLedger.record(conn, Arrays.asList(
+                new StockLedger.Movement("RAW-1", 20, StockLedger.Kind.RECEIPT, "PO 1")));
+
+        assertEquals(3, StockLedger.onHand(conn, "SUB-1"));
+        assertEquals(26, StockLedger.onHand(conn, "RAW-1"));
+        assertEquals(0, StockLedger.onHand(conn, "NEW-1"));
+
+        assertEquals(2, StockLedger.snapshot(conn));
+        assertEquals(0, StockLedger.snapshot(conn)); // nothing new since
+        assertEquals(26, StockLedger.onHand(conn, "RAW-1"));
+
+        List<StockLedger.Movement> history = StockLedger.history(conn, "RAW-1", 10);
+        assertEquals(2, history.size());
+        assertEquals(StockLedger.Kind.RECEIPT, history.get(0).getKind()); // newest first
+        assertEquals(-4, history.get(1).getDelta());
+    }
+
+    @Test
+    void snapshotsRollForwardAutomaticallyAndReconcileCatchesDirectWrites() throws SQLException {
+        List<StockLedger.Movement> ones = new ArrayList<>();
+        for (int i = 0; i < StockLedger.SNAPSHOT_INTERVAL; i++) {
+            ones.add(new StockLedger.Movement("RAW-1", 1, StockLedger.Kind.RECEIPT, null));
+        }
+        StockLedger.record(conn, ones);
+        assertEquals(0, StockLedger.snapshot(conn)); // record() already rolled forward
+        assertEquals(10 + StockLedger.SNAPSHOT_INTERVAL, StockLedger.onHand(conn, "RAW-1"));
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE part SET stock = 5 WHERE sku = 'SUB-1'");
+            stmt.execute("UPDATE part SET stock = 10 + " + StockLedger.SNAPSHOT_INTERVAL + " WHERE sku = 'RAW-1'");
+        }
+        List<StockLedger.Movement> adjustments = StockLedger.reconcile(conn, "count");
+        assertEquals(1, adjustments.size());
+        assertEquals(3, adjustments.get(0).getDelta());
+        assertEquals(5, StockLedger.onHand(conn, "SUB-1"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.bushnell;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for printing the stock report a page of rows at a time.
+ */
+class StockReportPrintableTest {
+    @BeforeEach
+    void setUp() throws SQLException {
+        TestDatabase.load("INSERT INTO part (sku, description, price, stock) VALUES ('RAW-1', 'Screw', 0.5, 10), "
+                + "('RAW-2', 'Nut', 0.25, 6), ('RAW-3', 'Washer', 0.1, 0)");
+    }
+
+    private static int print(Printable printable, int pageIndex) throws PrinterException {
+        BufferedImage image = new BufferedImage(612, 792, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            return printable.print(g, new PageFormat(), pageIndex);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    @Test
+    void printsEveryRowAndThenStops() throws PrinterException {
+        PageFormat format = new PageFormat();
+        // Room for the header and two rows a page: three parts take two pages
+        int rowHeight = (int) (format.getImageableHeight() / 3);
+        Printable printable = new StockReportPrintable(Database.get(),
+                new PagedPartModel(Database.get()).currentQuery(), new Font("Dialog", Font.PLAIN, 10),
+                rowHeight, 150, 400, 80, 80);
+
+        assertEquals(Printable.PAGE_EXISTS, print(printable, 0));
+        assertEquals(Printable.PAGE_EXISTS, print(printable, 0)); // printers ask twice
+        assertEquals(Printable.PAGE_EXISTS, print(printable, 1));
+        assertEquals(Printable.NO_SUCH_PAGE, print(printable, 2));
+    }
+
+    @Test
+    void emptyReportStillPrintsItsHeader() throws SQLException, PrinterException {
+        TestDatabase.load();
+        Printable printable = new StockReportPrintable(Database.get(),
+                new PagedPartModel(Database.get()).currentQuery(), new Font("Dialog", Font.PLAIN, 10),
+                22, 150, 400, 80, 80);
+        assertEquals(Printable.PAGE_EXISTS, print(printable, 0));
+        assertEquals(Printable.NO_SUCH_PAGE, print(printable, 1));
+    }
+}
@@ -0,0 +1,74 @@
+package com.bushnell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Test databases.
+ *
+ * {@link #inMemory} gives a private in-memory database with the original part
+ * and bom tables, for tests that work on a connection. Tests that go through
+ * {@link Database#get()}, such as {@link Bundler} and the HTTP server, share
+ * one throwaway file instead: the pool is a process-wide singleton, so
+ * {@link #load} empties that file before each test.
+ */
+final class TestDatabase {
+    private static final File FILE;
+
+    static {
+        try {
+            FILE = File.createTempFile("mrp-test-", ".db");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        FILE.deleteOnExit();
+        System.setProperty("mrp.db", FILE.getAbsolutePath());
+    }
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Opens an in-memory database with the part and bom tables as shipped,
+     * before any migration, and runs {@code statements} against it.
+     *
+     * @param statements inserts that set up the test's parts and BOM
+     * @return the open connection; the caller closes it
+     */
+    static Connection inMemory(String... statements) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            for (String ddl : SchemaMigrator.SCHEMA) {
+                stmt.execute(ddl);
+            }
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Replaces every part, bom and ledger row, then drops the cached catalog
+     * and graph so they are re-read from the new rows.
+     *
+     * @param statements inserts to run against the migrated schema
+     */
+    static void load(String... statements) throws SQLException {
+        try (Database.Handle db = Database.get().open();
+             Statement stmt = db.connection().createStatement()) {
+            for (String table : new String[]{"stock_movement", "stock_snapshot", "bom", "part"}) {
+                stmt.execute("DELETE FROM " + table);
+            }
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+        SkuCatalog.get().invalidate();
+    }
+}